@@ -0,0 +1,54 @@
+package bench.jmh;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import old.MappedShiftGrid;
+import old.ShiftGrid;
+import old.TableShiftGrid;
+
+/**
+ * Loading the grid: parsing the OSTN02 text with readTable, which is timed
+ * one load at a time as it takes seconds, and mapping the compiled grid.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+public class GridLoadBenchmark {
+
+	private String table;
+	private String grid;
+
+	@Setup
+	public void setUp() throws IOException {
+		table = Grids.table();
+		grid = Grids.grid();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 1)
+	@Measurement(iterations = 3)
+	public ShiftGrid readTable() {
+		return TableShiftGrid.readTable(table, null);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@Warmup(iterations = 3, time = 1)
+	@Measurement(iterations = 5, time = 1)
+	public double mappedOpen() throws IOException {
+		return MappedShiftGrid.open(grid).getEastShift(350, 620);
+	}
+}
@@ -0,0 +1,49 @@
+package bench.jmh;
+
+import java.io.File;
+import java.io.IOException;
+
+import bench.SyntheticGrid;
+import bench.Workload;
+
+/**
+ * The grid and workloads the JMH benchmarks run over. The OSTN02 directory is
+ * given by the ostn02.dir system property, e.g. -jvmArgs -Dostn02.dir=OSTN02;
+ * without it a synthetic grid is generated (see SyntheticGrid).
+ */
+final class Grids {
+
+	/** The points in each workload, and so the operations per invocation. */
+	static final int POINTS = 100000;
+
+	private Grids() {
+	}
+
+	static File directory() throws IOException {
+		String dir = System.getProperty("ostn02.dir");
+		return dir != null ? new File(dir) : SyntheticGrid.defaultDirectory();
+	}
+
+	static String table() throws IOException {
+		return new File(directory(), SyntheticGrid.TABLE).getPath();
+	}
+
+	static String grid() throws IOException {
+		return new File(directory(), SyntheticGrid.GRID).getPath();
+	}
+
+	/**
+	 * @param name
+	 *            single, uniform or clustered.
+	 */
+	static Workload workload(String name) {
+		if (name.equals("single")) {
+			return Workload.single(POINTS);
+		} else if (name.equals("uniform")) {
+			return Workload.uniform(POINTS, 1);
+		} else if (name.equals("clustered")) {
+			return Workload.clustered(POINTS, 2);
+		}
+		throw new IllegalArgumentException("Unknown workload: " + name);
+	}
+}
@@ -0,0 +1,270 @@
+package bench.jmh;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bench.Workload;
+import old.AngleParser;
+import old.BatchEngine;
+import old.GPSConverter;
+import old.MappedShiftGrid;
+import old.TiledShiftGrid;
+
+/**
+ * Benchmarks every conversion stage separately (stringToDecimal and
+ * AngleParser, gratToGrid, ETRS89toOSGB36, convertToOSGB36 from numbers and
+ * from text and its inverse) over a single repeated point, points spread
+ * uniformly over GB, and points clustered around cities. Scalar and batch
+ * entry points are both measured, as is conversion through a TiledShiftGrid
+ * with a small memory budget, and the projection and conversion with each
+ * projection tier (EXACT_PROJECTION and FAST_PROJECTION) and on each
+ * BatchEngine; the vector engine is only there in a build with the vector
+ * profile (mvn -Pvector package), and otherwise fails. Every invocation converts the whole workload,
+ * and the scores are per point; run with -prof gc for the allocation per
+ * point (gc.alloc.rate.norm) alongside the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(Grids.POINTS)
+public class StageBenchmark {
+
+	@Param({ "single", "uniform", "clustered" })
+	public String workload;
+
+	private Workload w;
+	private GPSConverter c;
+	private GPSConverter tiledConverter;
+	private TiledShiftGrid tiled;
+	private final int n = Grids.POINTS;
+	private final double[] eastings = new double[n];
+	private final double[] northings = new double[n];
+	private final double[] etrsEastings = new double[n];
+	private final double[] etrsNorthings = new double[n];
+	private final double[] latitudes = new double[n];
+	private final double[] longitudes = new double[n];
+	private final double[] heights = new double[n];
+	private final double[] orthometric = new double[n];
+	private final int[] datums = new int[n];
+	private final int[] status = new int[n];
+	private final double[] input = new double[2];
+
+	@Setup
+	public void setUp() throws IOException {
+		w = Grids.workload(workload);
+		String grid = Grids.grid();
+		c = new GPSConverter(MappedShiftGrid.open(grid));
+		// The tiled grid within a 2MB budget (52 of its 50km tiles):
+		tiled = TiledShiftGrid.open(grid, 2 << 20, TiledShiftGrid.DEFAULT_TILE_SIZE);
+		tiledConverter = new GPSConverter(tiled);
+		for (int i = 0; i < n; i++) {
+			heights[i] = 50 + (i % 500);
+		}
+		c.gratToGrid(w.latitudes, w.longitudes, etrsEastings, etrsNorthings, 0, n,
+				GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+		c.ETRS89toOSGB36(etrsEastings, etrsNorthings, eastings, northings, 0, n);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		System.out.println(String.format(
+				"tiles: %d hits, %d misses, %d evictions, %d of %d loaded",
+				tiled.getHits(), tiled.getMisses(), tiled.getEvictions(),
+				tiled.getLoadedTiles(), tiled.getMaxTiles()));
+		tiled.close();
+	}
+
+	@Benchmark
+	public double stringToDecimal() {
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			sum += c.stringToDecimal(w.dms[i]);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double angleParser() {
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			sum += AngleParser.parse(w.dmsLongitudes[i], AngleParser.LONGITUDE);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int convertToOSGB36Text() {
+		return c.convertToOSGB36(w.dms, w.dmsLongitudes, latitudes, longitudes, status,
+				0, n, GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+	}
+
+	@Benchmark
+	public double gratToGrid() {
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			sum += c.gratToGrid(w.latitudes[i], w.longitudes[i], GPSConverter.GRS80,
+					GPSConverter.NATIONAL_GRID)[0];
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public void gratToGridBatch() {
+		c.gratToGrid(w.latitudes, w.longitudes, latitudes, longitudes, 0, n,
+				GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+	}
+
+	@Benchmark
+	public double ETRS89toOSGB36() {
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			input[0] = etrsEastings[i];
+			input[1] = etrsNorthings[i];
+			sum += c.ETRS89toOSGB36(input)[0];
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public void ETRS89toOSGB36Batch() {
+		c.ETRS89toOSGB36(etrsEastings, etrsNorthings, latitudes, longitudes, 0, n);
+	}
+
+	@Benchmark
+	public int ETRS89toOSGB36Status() {
+		return c.ETRS89toOSGB36(etrsEastings, etrsNorthings, latitudes, longitudes,
+				status, 0, n);
+	}
+
+	@Benchmark
+	public double convertToOSGB36() {
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			sum += c.convertToOSGB36(w.latitudes[i], w.longitudes[i],
+					GPSConverter.GRS80, GPSConverter.NATIONAL_GRID)[0];
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public void convertToOSGB36Batch() {
+		c.convertToOSGB36(w.latitudes, w.longitudes, latitudes, longitudes, 0, n,
+				GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+	}
+
+	@Benchmark
+	public void convertToOSGB36Height() {
+		c.convertToOSGB36(w.latitudes, w.longitudes, heights, latitudes, longitudes,
+				orthometric, datums, 0, n);
+	}
+
+	@Benchmark
+	public void convertToOSGB36Tiled() {
+		tiledConverter.convertToOSGB36(w.latitudes, w.longitudes, latitudes,
+				longitudes, 0, n, GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+	}
+
+	@Benchmark
+	public void gratToGridTier(Tier t) {
+		c.gratToGrid(w.latitudes, w.longitudes, latitudes, longitudes, 0, n,
+				GPSConverter.GRS80, GPSConverter.NATIONAL_GRID, t.value);
+	}
+
+	@Benchmark
+	public int convertToOSGB36Tier(Tier t) {
+		return c.convertToOSGB36(w.latitudes, w.longitudes, latitudes, longitudes, status,
+				0, n, GPSConverter.GRS80, GPSConverter.NATIONAL_GRID, t.value);
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+	public void gratToGridEngine(Engine e) {
+		e.converter.gratToGrid(w.latitudes, w.longitudes, latitudes, longitudes, 0, n,
+				GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+	public void convertToOSGB36Engine(Engine e) {
+		e.converter.convertToOSGB36(w.latitudes, w.longitudes, latitudes, longitudes, 0,
+				n, GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+	}
+
+	@Benchmark
+	public void convertFromOSGB36Batch() {
+		c.convertFromOSGB36(eastings, northings, latitudes, longitudes, 0, n,
+				GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+	}
+
+	/**
+	 * The projection tier of the tiered benchmarks, so that only they are run
+	 * once per tier.
+	 */
+	@State(Scope.Benchmark)
+	public static class Tier {
+
+		@Param({ "exact", "fast" })
+		public String tier;
+
+		int value;
+
+		@Setup
+		public void setUp() {
+			if (tier.equals("exact")) {
+				value = GPSConverter.EXACT_PROJECTION;
+			} else if (tier.equals("fast")) {
+				value = GPSConverter.FAST_PROJECTION;
+			} else {
+				throw new IllegalArgumentException("Unknown tier: " + tier);
+			}
+		}
+	}
+
+	/**
+	 * A converter on the grid running its batches on the scalar or the
+	 * vector engine, for the engine benchmarks.
+	 */
+	@State(Scope.Benchmark)
+	public static class Engine {
+
+		@Param({ "scalar", "vector" })
+		public String engine;
+
+		GPSConverter converter;
+
+		@Setup
+		public void setUp() throws IOException {
+			BatchEngine batchEngine;
+			if (engine.equals("scalar")) {
+				batchEngine = BatchEngine.SCALAR;
+			} else if (engine.equals("vector")) {
+				batchEngine = BatchEngine.load();
+				if (batchEngine == BatchEngine.SCALAR) {
+					throw new IllegalStateException("The Vector API engine is unavailable:"
+							+ " build with -Pvector");
+				}
+			} else {
+				throw new IllegalArgumentException("Unknown engine: " + engine);
+			}
+			converter = new GPSConverter(MappedShiftGrid.open(Grids.grid()), null,
+					batchEngine);
+		}
+	}
+}
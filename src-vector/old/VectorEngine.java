@@ -0,0 +1,139 @@
+package old;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ *  A BatchEngine built on the JDK Vector API, converting a lane of points
+ * (four with AVX2, eight with AVX-512) per instruction. It is only loaded
+ * through BatchEngine.load(), so that the rest of the library runs without
+ * the jdk.incubator.vector module, and lives in its own source root so 
+ * that the rest compiles without it too (build with mvn -Pvector).
+ *
+ * <p>The projection evaluates the same B-series as TransverseMercator.project,
+ * lanewise. Sine and cosine of the latitude come from Taylor polynomials
+ * about 55 degrees north, which over 45 - 65 degrees (all of Great Britain
+ * and Ireland) are accurate to a few units in the last place, i.e. well
+ * under a micrometer on the ground. Lanes with a latitude outside that range
+ * are projected by the scalar engine, as are the points left over at the end
+ * of a batch.</p>
+ *
+ * <p>The OSTN02 shift is left to the scalar engine (see shift).</p>
+ *
+ * @author Nathan Collins
+ */
+final class VectorEngine extends BatchEngine {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    private static final double DEGREES_TO_RADIANS = 0.017453292519943295;
+    // The polynomial domain, in degrees, and its centre in radians:
+    private static final double MIN_LATITUDE = 45;
+    private static final double MAX_LATITUDE = 65;
+    private static final double CENTRE = Math.toRadians(55);
+    private static final double SIN_CENTRE = Math.sin(CENTRE);
+    private static final double COS_CENTRE = Math.cos(CENTRE);
+    // Taylor coefficients of sin(x) / x and cos(x) in x^2:
+    private static final double S3 = -1.0 / 6;
+    private static final double S5 = 1.0 / 120;
+    private static final double S7 = -1.0 / 5040;
+    private static final double S9 = 1.0 / 362880;
+    private static final double C2 = -1.0 / 2;
+    private static final double C4 = 1.0 / 24;
+    private static final double C6 = -1.0 / 720;
+    private static final double C8 = 1.0 / 40320;
+    private static final double C10 = -1.0 / 3628800;
+
+    /**
+     * @throws UnsupportedOperationException - Thrown when the hardware has
+     * fewer than two double lanes, so there is nothing to gain.
+     */
+    public VectorEngine() {
+        if (LANES < 2) {
+            throw new UnsupportedOperationException("No double vector lanes");
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "vector" + LANES;
+    }
+
+    @Override
+    public void project(TransverseMercator k, double[] latitudes,
+            double[] longitudes, double[] eastings, double[] northings,
+            int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        for (int upper = offset + SPECIES.loopBound(length); i < upper; i += LANES) {
+            DoubleVector latitude = DoubleVector.fromArray(SPECIES, latitudes, i);
+            VectorMask<Double> outside = latitude.compare(VectorOperators.LT, MIN_LATITUDE)
+                    .or(latitude.compare(VectorOperators.GT, MAX_LATITUDE));
+            if (outside.anyTrue()) {
+                SCALAR.project(k, latitudes, longitudes, eastings, northings, i, LANES);
+                continue;
+            }
+            DoubleVector lat = latitude.mul(DEGREES_TO_RADIANS);
+            DoubleVector L = DoubleVector.fromArray(SPECIES, longitudes, i)
+                    .mul(DEGREES_TO_RADIANS).sub(k.long0);
+
+            // sin(lat) and cos(lat) from sin(x) and cos(x) about the centre:
+            DoubleVector x = lat.sub(CENTRE);
+            DoubleVector x2 = x.mul(x);
+            DoubleVector sinx = x.mul(x2.fma(S9, S7).mul(x2).add(S5).mul(x2).add(S3).mul(x2).add(1));
+            DoubleVector cosx = x2.fma(C10, C8).mul(x2).add(C6).mul(x2).add(C4).mul(x2).add(C2)
+                    .mul(x2).add(1);
+            DoubleVector sin = cosx.mul(SIN_CENTRE).add(sinx.mul(COS_CENTRE));
+            DoubleVector cos = cosx.mul(COS_CENTRE).sub(sinx.mul(SIN_CENTRE));
+            DoubleVector sin2 = sin.mul(sin);
+            DoubleVector cos2 = cos.mul(cos);
+            DoubleVector tan2 = sin2.div(cos2);
+
+            // B3 - B5
+            DoubleVector vi = sin2.mul(-k.e2).add(1);
+            DoubleVector v = DoubleVector.broadcast(SPECIES, k.aF0).div(vi.sqrt());
+            DoubleVector eta2 = vi.div(k.oneMinusE2).sub(1);
+
+            // B6
+            DoubleVector s2 = sin.mul(cos).mul(2);
+            DoubleVector s4 = s2.mul(2).mul(cos2.sub(sin2));
+            DoubleVector s6 = s2.mul(s2.mul(s2).mul(-4).add(3));
+            DoubleVector I = lat.sub(k.lat0).mul(k.bF0m1).sub(s2.mul(k.bF0m2))
+                    .add(s4.mul(k.bF0m3)).sub(s6.mul(k.bF0m4)).add(k.I0);
+
+            DoubleVector vsc = v.mul(sin).mul(cos);
+            DoubleVector II = vsc.div(2);
+            DoubleVector III = vsc.mul(cos2).div(24).mul(eta2.mul(9).sub(tan2).add(5));
+            DoubleVector IIIA = vsc.mul(cos2).mul(cos2).div(720)
+                    .mul(tan2.sub(58).mul(tan2).add(61));
+            DoubleVector IV = v.mul(cos);
+            DoubleVector V = IV.mul(cos2).div(6).mul(eta2.add(1).sub(tan2));
+            DoubleVector VI = IV.mul(cos2).mul(cos2).div(120)
+                    .mul(tan2.sub(18).sub(eta2.mul(58)).mul(tan2).add(eta2.mul(14)).add(5));
+
+            // B7, B8
+            DoubleVector L2 = L.mul(L);
+            L2.fma(IIIA, III).fma(L2, II).fma(L2, I).intoArray(northings, i);
+            L2.fma(VI, V).fma(L2, IV).mul(L).add(k.E0).intoArray(eastings, i);
+        }
+        if (i < end) {
+            SCALAR.project(k, latitudes, longitudes, eastings, northings, i, end - i);
+        }
+    }
+
+    /**
+     *  Shifts by the scalar engine. The bilinear step is dominated by the
+     * eight grid lookups per point, and on JDK 17 neither the Vector API
+     * gather (whose index checks are not compiled to vector code) nor a lane
+     * at a time gather beat the scalar loop, so it is not vectorised.
+     */
+    @Override
+    public void shift(ShiftGrid grid, double[] eastings, double[] northings,
+            double[] resultEastings, double[] resultNorthings, int offset,
+            int length) {
+        SCALAR.shift(grid, eastings, northings, resultEastings, resultNorthings,
+                offset, length);
+    }
+}
@@ -0,0 +1,97 @@
+package bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * A small benchmark harness. Each operation is run repeatedly for a warm-up
+ * period and then for a number of timed iterations; the best iteration gives
+ * the throughput, and the bytes allocated by the benchmark thread give the
+ * allocation per operation (the same figure as JMH's gc.alloc.rate.norm).
+ */
+public class Benchmark {
+
+	/**
+	 * A unit of benchmark work.
+	 */
+	public interface Operation {
+
+		/**
+		 * Performs a number of operations.
+		 * 
+		 * @return the number of operations performed.
+		 */
+		long run() throws Exception;
+	}
+
+	private final long warmupNanos;
+	private final long iterationNanos;
+	private final int iterations;
+	private final com.sun.management.ThreadMXBean allocation;
+
+	/**
+	 * @param warmupMillis
+	 *            how long to run each operation before timing it.
+	 * @param iterationMillis
+	 *            the minimum length of each timed iteration.
+	 * @param iterations
+	 *            the number of timed iterations.
+	 */
+	public Benchmark(long warmupMillis, long iterationMillis, int iterations) {
+		this.warmupNanos = warmupMillis * 1000000;
+		this.iterationNanos = iterationMillis * 1000000;
+		this.iterations = iterations;
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			allocation = (com.sun.management.ThreadMXBean) threads;
+		} else {
+			allocation = null;
+		}
+	}
+
+	/**
+	 * Measures an operation and prints the result.
+	 * 
+	 * @param stage
+	 *            the stage being measured.
+	 * @param workload
+	 *            the name of the workload it is run over.
+	 * @param operation
+	 *            the operation.
+	 * @return the throughput in operations per second.
+	 */
+	public double measure(String stage, String workload, Operation operation)
+			throws Exception {
+		long end = System.nanoTime() + warmupNanos;
+		do {
+			operation.run();
+		} while (System.nanoTime() < end);
+
+		double best = 0;
+		long totalOps = 0;
+		long bytes = allocatedBytes();
+		for (int i = 0; i < iterations; i++) {
+			long ops = 0;
+			long start = System.nanoTime();
+			long now;
+			do {
+				ops += operation.run();
+				now = System.nanoTime();
+			} while (now - start < iterationNanos);
+			best = Math.max(best, ops * 1e9 / (now - start));
+			totalOps += ops;
+		}
+		bytes = allocatedBytes() - bytes;
+		System.out.println(String.format("%-26s %-10s %16.1f ops/s %12s B/op",
+				stage, workload, best, bytes < 0 ? "n/a"
+						: String.format("%.1f", (double) bytes / totalOps)));
+		return best;
+	}
+
+	private long allocatedBytes() {
+		if (allocation == null) {
+			return -Long.MAX_VALUE;
+		}
+		return allocation.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
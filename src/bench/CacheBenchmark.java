@@ -0,0 +1,85 @@
+package bench;
+
+import java.io.File;
+
+import old.ConversionCache;
+import old.GPSConverter;
+import old.MappedShiftGrid;
+
+/**
+ * Compares convertToOSGB36 through a ConversionCache with the converter
+ * alone, over fleets of repeated stops that fit in the cache and that do
+ * not, and over uniformly spread points that never repeat. The hit ratio
+ * and the timed latency of hits and misses are printed for each workload,
+ * and the cached results are checked against the converter's.
+ *
+ * <pre>
+ * java bench.CacheBenchmark [-quick] [dir]
+ * </pre>
+ */
+public class CacheBenchmark {
+
+	private static final int POINTS = 1000000;
+	private static final int CAPACITY = 1 << 16;
+
+	public static void main(String[] args) throws Exception {
+		boolean quick = false;
+		File dir = null;
+		for (String arg : args) {
+			if (arg.equals("-quick")) {
+				quick = true;
+			} else {
+				dir = new File(arg);
+			}
+		}
+		if (dir == null) {
+			dir = SyntheticGrid.defaultDirectory();
+		}
+		Benchmark benchmark = quick ? new Benchmark(500, 200, 3)
+				: new Benchmark(3000, 1000, 5);
+		GPSConverter c = new GPSConverter(MappedShiftGrid.open(
+				new File(dir, SyntheticGrid.GRID).getPath()));
+		Workload[] workloads = { Workload.fleet(POINTS, 1000, 1),
+				Workload.fleet(POINTS, 200000, 2), Workload.uniform(POINTS, 3) };
+		for (Workload w : workloads) {
+			run(benchmark, c, w);
+		}
+	}
+
+	private static void run(Benchmark benchmark, final GPSConverter c,
+			final Workload w) throws Exception {
+		final int n = w.size;
+		final double[] eastings = new double[n];
+		final double[] northings = new double[n];
+		final double[] cachedEastings = new double[n];
+		final double[] cachedNorthings = new double[n];
+		benchmark.measure("convertToOSGB36[]", w.name, new Benchmark.Operation() {
+			public long run() {
+				c.convertToOSGB36(w.latitudes, w.longitudes, eastings, northings,
+						0, n, GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+				return n;
+			}
+		});
+		final ConversionCache cache = new ConversionCache(c, CAPACITY, 0);
+		benchmark.measure("ConversionCache[]", w.name, new Benchmark.Operation() {
+			public long run() {
+				cache.convertToOSGB36(w.latitudes, w.longitudes, cachedEastings,
+						cachedNorthings, 0, n, GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+				return n;
+			}
+		});
+		for (int i = 0; i < n; i++) {
+			if (eastings[i] != cachedEastings[i] || northings[i] != cachedNorthings[i]) {
+				System.err.println("Cached result differs at point " + i);
+				break;
+			}
+		}
+		ConversionCache timed = new ConversionCache(c, CAPACITY, 0,
+				ConversionCache.EVICT_LEAST_USED, true);
+		timed.convertToOSGB36(w.latitudes, w.longitudes, cachedEastings,
+				cachedNorthings, 0, n, GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+		System.out.println(String.format("  hit ratio %.3f, evictions %d, hit %.0f ns, miss %.0f ns",
+				timed.getHitRatio(), timed.getEvictions(), timed.getAverageHitNanos(),
+				timed.getAverageMissNanos()));
+	}
+}
@@ -0,0 +1,167 @@
+package bench;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+import old.ColumnReader;
+import old.ColumnWriter;
+import old.CsvReader;
+import old.CsvWriter;
+import old.GPSConverter;
+import old.MappedShiftGrid;
+
+/**
+ * Compares a bulk conversion job over text and over columns: reading UoB
+ * Mapper rows with CsvReader, converting them and writing them with
+ * CsvWriter (as UoBConverter does), against reading a column file with
+ * ColumnReader, converting it and writing a column file with ColumnWriter.
+ * Both run file to file through the status batch conversion, a block of
+ * rows at a time, and the I/O alone is also measured for each.
+ *
+ * <pre>
+ * java bench.ColumnBenchmark [-quick] [dir]
+ * </pre>
+ */
+public class ColumnBenchmark {
+
+	private static final int ROWS = 1000000;
+	private static final int BLOCK = 1 << 16;
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	public static void main(String[] args) throws Exception {
+		boolean quick = args.length > 0 && args[0].equals("-quick");
+		File dir = args.length > (quick ? 1 : 0) ? new File(args[args.length - 1])
+				: SyntheticGrid.defaultDirectory();
+		Benchmark benchmark = quick ? new Benchmark(1000, 500, 3)
+				: new Benchmark(5000, 2000, 5);
+		final GPSConverter c = new GPSConverter(MappedShiftGrid.open(
+				new File(dir, SyntheticGrid.GRID).getPath()));
+		Workload w = Workload.uniform(ROWS, 4);
+
+		File csvIn = File.createTempFile("fixes", ".csv");
+		final File csvOut = File.createTempFile("fixes-converted", ".csv");
+		File colsIn = File.createTempFile("fixes", ".cols");
+		final File colsOut = File.createTempFile("fixes-converted", ".cols");
+		for (File f : new File[] { csvIn, csvOut, colsIn, colsOut }) {
+			f.deleteOnExit();
+		}
+		CsvWriter text = new CsvWriter(new FileOutputStream(csvIn).getChannel(), BUFFER_SIZE);
+		for (int i = 0; i < ROWS; i++) {
+			text.write(i + ",2012-06-01 12:00:00,");
+			text.writeFixed(w.latitudes[i], 8);
+			text.write(',');
+			text.writeFixed(w.longitudes[i], 8);
+			text.write(",120,30,4,");
+			text.newLine();
+		}
+		text.close();
+		ColumnWriter columns = new ColumnWriter(colsIn.getPath(), new String[] {
+				"Latitude", "Longitude" }, new int[] { ColumnWriter.DOUBLE, ColumnWriter.DOUBLE });
+		for (int i = 0; i < ROWS; i += BLOCK) {
+			columns.beginBlock(Math.min(BLOCK, ROWS - i));
+			columns.put(0, w.latitudes, i);
+			columns.put(1, w.longitudes, i);
+		}
+		columns.close();
+		System.out.println(String.format("input: csv %.1f MB, columns %.1f MB",
+				csvIn.length() / 1e6, colsIn.length() / 1e6));
+
+		final String csvPath = csvIn.getPath();
+		final String colsPath = colsIn.getPath();
+		for (final boolean convert : new boolean[] { false, true }) {
+			String stage = convert ? "job" : "I/O only";
+			benchmark.measure("csv " + stage, w.name, new Benchmark.Operation() {
+				public long run() throws IOException {
+					return csv(c, csvPath, csvOut.getPath(), convert);
+				}
+			});
+			benchmark.measure("columns " + stage, w.name, new Benchmark.Operation() {
+				public long run() throws IOException {
+					return columns(c, colsPath, colsOut.getPath(), convert);
+				}
+			});
+		}
+	}
+
+	private static long csv(GPSConverter c, String in, String out, boolean convert)
+			throws IOException {
+		double[] lat = new double[BLOCK];
+		double[] lon = new double[BLOCK];
+		double[] eastings = new double[BLOCK];
+		double[] northings = new double[BLOCK];
+		int[] status = new int[BLOCK];
+		FileChannel channel = new FileInputStream(in).getChannel();
+		CsvReader reader = new CsvReader(channel, BUFFER_SIZE);
+		CsvWriter writer = new CsvWriter(new FileOutputStream(out).getChannel(), BUFFER_SIZE);
+		long rows = 0;
+		int n = 0;
+		boolean more = true;
+		while (more) {
+			more = reader.nextRow();
+			if (more) {
+				lat[n] = reader.getDouble(2);
+				lon[n] = reader.getDouble(3);
+				n++;
+			}
+			if (n == BLOCK || (!more && n > 0)) {
+				convert(c, lat, lon, eastings, northings, status, n, convert);
+				for (int i = 0; i < n; i++) {
+					writer.writeFixed(eastings[i], 3);
+					writer.write(',');
+					writer.writeFixed(northings[i], 3);
+					writer.write(',');
+					writer.write((char) ('0' + status[i]));
+					writer.newLine();
+				}
+				rows += n;
+				n = 0;
+			}
+		}
+		channel.close();
+		writer.close();
+		return rows;
+	}
+
+	private static long columns(GPSConverter c, String in, String out, boolean convert)
+			throws IOException {
+		double[] lat = new double[BLOCK];
+		double[] lon = new double[BLOCK];
+		double[] eastings = new double[BLOCK];
+		double[] northings = new double[BLOCK];
+		int[] status = new int[BLOCK];
+		ColumnReader reader = new ColumnReader(in);
+		ColumnWriter writer = new ColumnWriter(out, new String[] { "Easting",
+				"Northing", "Status" }, new int[] { ColumnWriter.DOUBLE,
+				ColumnWriter.DOUBLE, ColumnWriter.INT });
+		long rows = 0;
+		while (reader.nextBlock()) {
+			int n = reader.getRows();
+			reader.get(0, lat, 0);
+			reader.get(1, lon, 0);
+			convert(c, lat, lon, eastings, northings, status, n, convert);
+			writer.beginBlock(n);
+			writer.put(0, eastings, 0);
+			writer.put(1, northings, 0);
+			writer.put(2, status, 0);
+			rows += n;
+		}
+		reader.close();
+		writer.close();
+		return rows;
+	}
+
+	/** Converts a block, or for the I/O alone just copies it. */
+	private static void convert(GPSConverter c, double[] lat, double[] lon,
+			double[] eastings, double[] northings, int[] status, int n, boolean convert) {
+		if (convert) {
+			c.convertToOSGB36(lat, lon, eastings, northings, status, 0, n, GPSConverter.GRS80,
+					GPSConverter.NATIONAL_GRID);
+		} else {
+			System.arraycopy(lat, 0, eastings, 0, n);
+			System.arraycopy(lon, 0, northings, 0, n);
+		}
+	}
+}
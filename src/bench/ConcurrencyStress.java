@@ -0,0 +1,114 @@
+package bench;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import old.ConversionCache;
+import old.GPSConverter;
+import old.MappedShiftGrid;
+
+/**
+ * Stress tests a single GPSConverter and grid shared by many threads. Every
+ * thread converts the same points repeatedly, and every result is compared
+ * with the single-threaded results; any difference is reported and fails the
+ * run. A third of the threads convert through one shared ConversionCache,
+ * smaller than the set of points, so that they hit, miss and evict entries
+ * concurrently. Throughput is reported for each thread count so that the scaling can
+ * be checked.
+ * 
+ * <p>Usage: ConcurrencyStress [max threads] [OSTN02 directory]. The thread
+ * counts run are the powers of two up to max threads (16 by default).</p>
+ */
+public class ConcurrencyStress {
+
+	private static final int POINTS = 200000;
+	private static final int ROUNDS = 10;
+
+	public static void main(String[] args) throws Exception {
+		int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		File dir;
+		if (args.length > 1) {
+			dir = new File(args[1]);
+		} else {
+			dir = SyntheticGrid.defaultDirectory();
+		}
+		final GPSConverter c = new GPSConverter(MappedShiftGrid.open(new File(
+				dir, SyntheticGrid.GRID).getPath()));
+		final Workload w = Workload.uniform(POINTS, 7);
+		final double[] eastings = new double[POINTS];
+		final double[] northings = new double[POINTS];
+		for (int i = 0; i < POINTS; i++) {
+			double[] result = c.convertToOSGB36(w.latitudes[i], w.longitudes[i],
+					GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+			eastings[i] = result[0];
+			northings[i] = result[1];
+		}
+
+		boolean failed = false;
+		double single = 0;
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			ExecutorService pool = Executors.newFixedThreadPool(threads);
+			List<Callable<Long>> tasks = new ArrayList<Callable<Long>>();
+			final ConversionCache cache = new ConversionCache(c, POINTS / 4, 0);
+			for (int t = 0; t < threads; t++) {
+				final int mode = t % 3;
+				tasks.add(new Callable<Long>() {
+					public Long call() {
+						double[] e = new double[POINTS];
+						double[] n = new double[POINTS];
+						long mismatches = 0;
+						for (int round = 0; round < ROUNDS; round++) {
+							if (mode == 0) {
+								c.convertToOSGB36(w.latitudes, w.longitudes, e, n, 0,
+										POINTS, GPSConverter.GRS80,
+										GPSConverter.NATIONAL_GRID);
+							} else if (mode == 2) {
+								cache.convertToOSGB36(w.latitudes, w.longitudes, e, n, 0,
+										POINTS, GPSConverter.GRS80,
+										GPSConverter.NATIONAL_GRID);
+							} else {
+								for (int i = 0; i < POINTS; i++) {
+									double[] result = c.convertToOSGB36(w.latitudes[i],
+											w.longitudes[i], GPSConverter.GRS80,
+											GPSConverter.NATIONAL_GRID);
+									e[i] = result[0];
+									n[i] = result[1];
+								}
+							}
+							for (int i = 0; i < POINTS; i++) {
+								if (e[i] != eastings[i] || n[i] != northings[i]) {
+									mismatches++;
+								}
+							}
+						}
+						return mismatches;
+					}
+				});
+			}
+			long start = System.nanoTime();
+			long mismatches = 0;
+			for (Future<Long> result : pool.invokeAll(tasks)) {
+				mismatches += result.get();
+			}
+			long time = System.nanoTime() - start;
+			pool.shutdown();
+			double rate = (double) threads * ROUNDS * POINTS * 1e9 / time;
+			if (threads == 1) {
+				single = rate;
+			}
+			System.out.println(String.format(
+					"%3d threads: %12.0f points/s  scaling %5.2f  mismatches %d",
+					threads, rate, rate / single, mismatches));
+			failed |= mismatches != 0;
+		}
+		if (failed) {
+			System.err.println("Results differed between threads!");
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+
+import old.CsvReader;
+import old.CsvWriter;
+
+/**
+ * Compares the cost of parsing and formatting UoB Mapper rows the old way
+ * (readLine, String.split, Double.valueOf and String concatenation) with the
+ * byte-level CsvReader and CsvWriter, leaving out the conversion itself so
+ * that only the text handling is measured.
+ */
+public class CsvBenchmark {
+
+	private static final int ROWS = 100000;
+	public static volatile Object sink;
+
+	public static void main(String[] args) throws Exception {
+		boolean quick = args.length > 0 && args[0].equals("-quick");
+		Benchmark benchmark = quick ? new Benchmark(300, 200, 3)
+				: new Benchmark(2000, 1000, 5);
+		Workload w = Workload.uniform(ROWS, 3);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < ROWS; i++) {
+			sb.append(i).append(",2012-06-01 12:00:00,").append(w.latitudes[i])
+					.append(',').append(w.longitudes[i]).append(",120,30,4,,\n");
+		}
+		final byte[] file = sb.toString().getBytes("US-ASCII");
+
+		benchmark.measure("split/concat", "uniform", new Benchmark.Operation() {
+			public long run() throws IOException {
+				BufferedReader in = new BufferedReader(new InputStreamReader(
+						new ByteArrayInputStream(file), "US-ASCII"));
+				StringBuilder out = new StringBuilder(file.length * 2);
+				String temp = in.readLine();
+				while (temp != null) {
+					String[] values = temp.split(",");
+					Double lat = Double.valueOf(values[2]);
+					Double lon = Double.valueOf(values[3]);
+					temp += (lat * 10000) + "," + (lon * 10000);
+					out.append(temp).append('\n');
+					temp = in.readLine();
+				}
+				sink = out;
+				return ROWS;
+			}
+		});
+		benchmark.measure("CsvReader/CsvWriter", "uniform", new Benchmark.Operation() {
+			public long run() throws IOException {
+				CsvReader reader = new CsvReader(ByteBuffer.wrap(file));
+				CsvWriter writer = new CsvWriter(file.length * 2);
+				while (reader.nextRow()) {
+					double lat = reader.getDouble(2);
+					double lon = reader.getDouble(3);
+					reader.copyRow(writer);
+					writer.writeFixed(lat * 10000, 3);
+					writer.write(',');
+					writer.writeFixed(lon * 10000, 3);
+					writer.newLine();
+				}
+				sink = writer;
+				return ROWS;
+			}
+		});
+	}
+}
@@ -0,0 +1,93 @@
+package bench;
+
+import java.io.File;
+
+import old.BatchEngine;
+import old.GPSConverter;
+import old.MappedShiftGrid;
+import old.ShiftGrid;
+
+/**
+ * Compares the batch engines: the scalar engine against the one returned by
+ * BatchEngine.load(), which is the Vector API engine when built with the
+ * vector profile (mvn -Pvector package) and run with --add-modules
+ * jdk.incubator.vector. Both the projection alone and the
+ * whole conversion are measured, and the largest difference between the two
+ * engines' results is reported.
+ *
+ * <pre>
+ * java --add-modules jdk.incubator.vector bench.EngineBenchmark [-quick] [dir]
+ * </pre>
+ */
+public class EngineBenchmark {
+
+	private static final int POINTS = 100000;
+
+	public static void main(String[] args) throws Exception {
+		boolean quick = false;
+		File dir = null;
+		for (String arg : args) {
+			if (arg.equals("-quick")) {
+				quick = true;
+			} else {
+				dir = new File(arg);
+			}
+		}
+		if (dir == null) {
+			dir = SyntheticGrid.defaultDirectory();
+		}
+		ShiftGrid grid = MappedShiftGrid.open(new File(dir, SyntheticGrid.GRID).getPath());
+		Benchmark benchmark = quick ? new Benchmark(200, 100, 3)
+				: new Benchmark(2000, 1000, 5);
+		BatchEngine vector = BatchEngine.load();
+		if (vector == BatchEngine.SCALAR) {
+			System.out.println("The Vector API is unavailable: build with -Pvector"
+					+ " and run with --add-modules jdk.incubator.vector");
+		}
+		BatchEngine[] engines = { BatchEngine.SCALAR, vector };
+		Workload[] workloads = { Workload.uniform(POINTS, 1),
+				Workload.clustered(POINTS, 2) };
+		for (Workload w : workloads) {
+			double[][] results = new double[engines.length][];
+			for (int e = 0; e < engines.length; e++) {
+				results[e] = run(benchmark, new GPSConverter(grid, null, engines[e]),
+						engines[e].getName(), w);
+			}
+			double difference = 0;
+			for (int i = 0; i < results[0].length; i++) {
+				difference = Math.max(difference, Math.abs(results[0][i] - results[1][i]));
+			}
+			System.out.println("  largest difference: " + difference + " m");
+		}
+	}
+
+	/**
+	 * Measures one engine over a workload.
+	 *
+	 * @return the converted Eastings followed by the Northings.
+	 */
+	private static double[] run(Benchmark benchmark, final GPSConverter c,
+			String engine, final Workload w) throws Exception {
+		final int n = w.size;
+		final double[] eastings = new double[n];
+		final double[] northings = new double[n];
+		benchmark.measure("gratToGrid[] " + engine, w.name, new Benchmark.Operation() {
+			public long run() {
+				c.gratToGrid(w.latitudes, w.longitudes, eastings, northings, 0,
+						n, GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+				return n;
+			}
+		});
+		benchmark.measure("convertToOSGB36[] " + engine, w.name, new Benchmark.Operation() {
+			public long run() {
+				c.convertToOSGB36(w.latitudes, w.longitudes, eastings, northings,
+						0, n, GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+				return n;
+			}
+		});
+		double[] results = new double[2 * n];
+		System.arraycopy(eastings, 0, results, 0, n);
+		System.arraycopy(northings, 0, results, n, n);
+		return results;
+	}
+}
@@ -0,0 +1,128 @@
+package bench;
+
+import java.io.File;
+
+import old.CellShiftGrid;
+import old.FixedPointShiftGrid;
+import old.GPSConverter;
+import old.MappedShiftGrid;
+import old.ShiftGrid;
+import old.TableShiftGrid;
+
+/**
+ * Compares the grid representations: the double table, the memory-mapped
+ * compiled grid, the fixed-point heap grid and the cell grid built over the
+ * mapped grid (GPSConverter.CELL_LAYOUT). The heap each grid takes is
+ * printed, then the OSTN02 shift is measured over every grid, and the largest
+ * difference between each grid's results and the table's is reported.
+ * With -grid only the named grid is measured, so that the JIT sees a single
+ * grid class as it would in production.
+ *
+ * <pre>
+ * java bench.GridBenchmark [-quick] [-grid table|mapped|fixed|cell] [dir]
+ * </pre>
+ */
+public class GridBenchmark {
+
+	private static final int POINTS = 100000;
+
+	public static void main(String[] args) throws Exception {
+		boolean quick = false;
+		String only = null;
+		File dir = null;
+		for (int a = 0; a < args.length; a++) {
+			if (args[a].equals("-quick")) {
+				quick = true;
+			} else if (args[a].equals("-grid") && a + 1 < args.length) {
+				only = args[++a];
+			} else {
+				dir = new File(args[a]);
+			}
+		}
+		if (dir == null) {
+			dir = SyntheticGrid.defaultDirectory();
+		}
+		final String table = new File(dir, SyntheticGrid.TABLE).getPath();
+		final String compiled = new File(dir, SyntheticGrid.GRID).getPath();
+		Benchmark benchmark = quick ? new Benchmark(200, 100, 3)
+				: new Benchmark(2000, 1000, 5);
+
+		long before = usedHeap();
+		ShiftGrid tableGrid = TableShiftGrid.readTable(table, null);
+		long tableBytes = usedHeap() - before;
+		before = usedHeap();
+		ShiftGrid fixedGrid = FixedPointShiftGrid.read(compiled);
+		long fixedBytes = usedHeap() - before;
+		ShiftGrid mappedGrid = MappedShiftGrid.open(compiled);
+		before = usedHeap();
+		ShiftGrid cellGrid = CellShiftGrid.of(mappedGrid);
+		long cellBytes = usedHeap() - before;
+		ShiftGrid[] grids = { tableGrid, mappedGrid, fixedGrid, cellGrid };
+		String[] names = { "table", "mapped", "fixed", "cell" };
+		System.out.println(String.format("heap: table %.1f MB, fixed %.1f MB, cell %.1f MB",
+				tableBytes / 1e6, fixedBytes / 1e6, cellBytes / 1e6));
+
+		Workload[] workloads = { Workload.uniform(POINTS, 1),
+				Workload.clustered(POINTS, 2) };
+		for (Workload w : workloads) {
+			double[] expected = null;
+			for (int g = 0; g < grids.length; g++) {
+				boolean measured = only == null || only.equals(names[g]);
+				if (!measured && g != 0) {
+					continue;
+				}
+				double[] results = run(measured ? benchmark : null,
+						new GPSConverter(grids[g]), names[g], w);
+				if (expected == null) {
+					expected = results;
+					continue;
+				}
+				double difference = 0;
+				for (int i = 0; i < results.length; i++) {
+					difference = Math.max(difference, Math.abs(results[i] - expected[i]));
+				}
+				System.out.println("  largest difference from table: " + difference + " m");
+			}
+		}
+	}
+
+	/**
+	 * Measures the shift over one grid, or just converts once when benchmark
+	 * is null.
+	 *
+	 * @return the shifted Eastings followed by the Northings.
+	 */
+	private static double[] run(Benchmark benchmark, final GPSConverter c,
+			String grid, Workload w) throws Exception {
+		final int n = w.size;
+		final double[] etrsEastings = new double[n];
+		final double[] etrsNorthings = new double[n];
+		final double[] eastings = new double[n];
+		final double[] northings = new double[n];
+		c.gratToGrid(w.latitudes, w.longitudes, etrsEastings, etrsNorthings, 0, n,
+				GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+		Benchmark.Operation shift = new Benchmark.Operation() {
+			public long run() {
+				c.ETRS89toOSGB36(etrsEastings, etrsNorthings, eastings, northings, 0, n);
+				return n;
+			}
+		};
+		if (benchmark != null) {
+			benchmark.measure("ETRS89toOSGB36[] " + grid, w.name, shift);
+		} else {
+			shift.run();
+		}
+		double[] results = new double[2 * n];
+		System.arraycopy(eastings, 0, results, 0, n);
+		System.arraycopy(northings, 0, results, n, n);
+		return results;
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,112 @@
+package bench;
+
+import java.io.File;
+
+import old.ConverterMetrics;
+import old.GPSConverter;
+import old.MappedShiftGrid;
+import old.ShiftGrid;
+
+/**
+ * Measures what ConverterMetrics costs the conversions: a converter without
+ * metrics, one whose metrics are disabled and one recording them, over the
+ * scalar convertToOSGB36, small batches of 16 points (where the per-call
+ * timing weighs most) and whole workloads. Each is measured several times,
+ * in turn, and the best throughput of each converter taken; the overhead of
+ * each against the converter without metrics is then printed. A second
+ * converter without metrics gives the noise of the runs, which the overhead
+ * of disabled metrics should be within.
+ *
+ * <pre>
+ * java bench.MetricsBenchmark [-quick] [dir]
+ * </pre>
+ */
+public class MetricsBenchmark {
+
+	private static final int POINTS = 100000;
+	private static final int SMALL_BATCH = 16;
+	private static final int ROUNDS = 3;
+	private static final String[] NAMES = { "none", "none again", "disabled", "enabled" };
+
+	public static void main(String[] args) throws Exception {
+		boolean quick = false;
+		File dir = null;
+		for (String arg : args) {
+			if (arg.equals("-quick")) {
+				quick = true;
+			} else {
+				dir = new File(arg);
+			}
+		}
+		if (dir == null) {
+			dir = SyntheticGrid.defaultDirectory();
+		}
+		ShiftGrid grid = MappedShiftGrid.open(new File(dir, SyntheticGrid.GRID).getPath());
+		Benchmark benchmark = quick ? new Benchmark(500, 200, 3)
+				: new Benchmark(2000, 1000, 5);
+		ConverterMetrics disabled = new ConverterMetrics();
+		disabled.setEnabled(false);
+		GPSConverter[] converters = { new GPSConverter(grid, null, null, null),
+				new GPSConverter(grid, null, null, null),
+				new GPSConverter(grid, null, null, disabled),
+				new GPSConverter(grid, null, null, new ConverterMetrics()) };
+		Workload[] workloads = { Workload.uniform(POINTS, 1),
+				Workload.clustered(POINTS, 2) };
+		for (final Workload w : workloads) {
+			final int n = w.size;
+			final double[] eastings = new double[n];
+			final double[] northings = new double[n];
+			double[][] results = new double[3][converters.length];
+			for (int r = 0; r < ROUNDS * converters.length; r++) {
+				// Rotating the order so that none is favoured by running first:
+				int i = (r + r / converters.length) % converters.length;
+				final GPSConverter c = converters[i];
+				results[0][i] = Math.max(results[0][i], benchmark.measure(
+						"convertToOSGB36 " + NAMES[i], w.name, new Benchmark.Operation() {
+					public long run() {
+						double sum = 0;
+						for (int j = 0; j < n; j++) {
+							sum += c.convertToOSGB36(w.latitudes[j], w.longitudes[j],
+									GPSConverter.GRS80, GPSConverter.NATIONAL_GRID)[0];
+						}
+						return sum != 0 ? n : 0;
+					}
+				}));
+				results[1][i] = Math.max(results[1][i], benchmark.measure(
+						"convertToOSGB36[16] " + NAMES[i], w.name, new Benchmark.Operation() {
+					public long run() {
+						for (int j = 0; j + SMALL_BATCH <= n; j += SMALL_BATCH) {
+							c.convertToOSGB36(w.latitudes, w.longitudes, eastings, northings,
+									j, SMALL_BATCH, GPSConverter.GRS80,
+									GPSConverter.NATIONAL_GRID);
+						}
+						return n / SMALL_BATCH * SMALL_BATCH;
+					}
+				}));
+				results[2][i] = Math.max(results[2][i], benchmark.measure(
+						"convertToOSGB36[] " + NAMES[i], w.name, new Benchmark.Operation() {
+					public long run() {
+						c.convertToOSGB36(w.latitudes, w.longitudes, eastings, northings,
+								0, n, GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+						return n;
+					}
+				}));
+			}
+			String[] stages = { "scalar", "batches of " + SMALL_BATCH, "whole batch" };
+			for (int s = 0; s < stages.length; s++) {
+				System.out.println(String.format(
+						"%s %s: noise %+.1f%%, disabled %+.1f%%, enabled %+.1f%%", w.name,
+						stages[s], overhead(results[s][0], results[s][1]),
+						overhead(results[s][0], results[s][2]),
+						overhead(results[s][0], results[s][3])));
+			}
+		}
+	}
+
+	/**
+	 * @return the time per point added, as a percentage of the baseline.
+	 */
+	private static double overhead(double baseline, double throughput) {
+		return (baseline / throughput - 1) * 100;
+	}
+}
@@ -0,0 +1,108 @@
+package bench;
+
+import java.io.File;
+
+import old.CrsRegistry;
+import old.GPSConverter;
+import old.MappedShiftGrid;
+import old.Pipeline;
+
+/**
+ * Compares CrsRegistry pipelines with the hard-coded GPSConverter methods
+ * they replace (ETRS89 to OSGB36 and to ITM), checking that the results are
+ * identical, and measures the systems that only the registry offers, as 
+ * well as the cost of looking up a cached pipeline.
+ *
+ * <pre>
+ * java bench.RegistryBenchmark [-quick] [dir]
+ * </pre>
+ */
+public class RegistryBenchmark {
+
+	private static final int POINTS = 100000;
+
+	public static void main(String[] args) throws Exception {
+		boolean quick = false;
+		File dir = null;
+		for (String arg : args) {
+			if (arg.equals("-quick")) {
+				quick = true;
+			} else {
+				dir = new File(arg);
+			}
+		}
+		if (dir == null) {
+			dir = SyntheticGrid.defaultDirectory();
+		}
+		Benchmark benchmark = quick ? new Benchmark(500, 200, 3)
+				: new Benchmark(3000, 1000, 5);
+		final GPSConverter c = new GPSConverter(MappedShiftGrid.open(
+				new File(dir, SyntheticGrid.GRID).getPath()));
+		final CrsRegistry registry = new CrsRegistry(c);
+		final Workload w = Workload.uniform(POINTS, 1);
+		final int n = w.size;
+		final double[] eastings = new double[n];
+		final double[] northings = new double[n];
+		final double[] pipelineEastings = new double[n];
+		final double[] pipelineNorthings = new double[n];
+
+		benchmark.measure("convertToOSGB36[]", w.name, new Benchmark.Operation() {
+			public long run() {
+				c.convertToOSGB36(w.latitudes, w.longitudes, eastings, northings,
+						0, n, GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+				return n;
+			}
+		});
+		measure(benchmark, registry.getPipeline(CrsRegistry.ETRS89,
+				CrsRegistry.OSGB36_NATIONAL_GRID), w, pipelineEastings, pipelineNorthings);
+		compare(eastings, northings, pipelineEastings, pipelineNorthings);
+
+		benchmark.measure("gratToGrid[] ITM", w.name, new Benchmark.Operation() {
+			public long run() {
+				c.gratToGrid(w.latitudes, w.longitudes, eastings, northings, 0, n,
+						GPSConverter.GRS80, GPSConverter.ITM);
+				return n;
+			}
+		});
+		measure(benchmark, registry.getPipeline(CrsRegistry.ETRS89, CrsRegistry.ITM),
+				w, pipelineEastings, pipelineNorthings);
+		compare(eastings, northings, pipelineEastings, pipelineNorthings);
+
+		String[] targets = { CrsRegistry.UTM_30, CrsRegistry.IRISH_GRID,
+				CrsRegistry.ETRS89_LAEA };
+		for (String target : targets) {
+			measure(benchmark, registry.getPipeline(CrsRegistry.ETRS89, target), w,
+					pipelineEastings, pipelineNorthings);
+		}
+		benchmark.measure("getPipeline", "-", new Benchmark.Operation() {
+			public long run() {
+				for (int i = 0; i < 1000; i++) {
+					registry.getPipeline(CrsRegistry.ETRS89, CrsRegistry.ITM);
+				}
+				return 1000;
+			}
+		});
+	}
+
+	private static void measure(Benchmark benchmark, final Pipeline pipeline,
+			final Workload w, final double[] eastings, final double[] northings)
+			throws Exception {
+		benchmark.measure("Pipeline " + pipeline, w.name, new Benchmark.Operation() {
+			public long run() {
+				pipeline.transform(w.latitudes, w.longitudes, eastings, northings, 0,
+						w.size);
+				return w.size;
+			}
+		});
+	}
+
+	private static void compare(double[] eastings, double[] northings,
+			double[] pipelineEastings, double[] pipelineNorthings) {
+		for (int i = 0; i < eastings.length; i++) {
+			if (eastings[i] != pipelineEastings[i] || northings[i] != pipelineNorthings[i]) {
+				System.err.println("Pipeline result differs at point " + i);
+				return;
+			}
+		}
+	}
+}
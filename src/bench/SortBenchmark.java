@@ -0,0 +1,84 @@
+package bench;
+
+import java.io.File;
+
+import old.GPSConverter;
+import old.MappedShiftGrid;
+import old.ShiftGrid;
+import old.TableShiftGrid;
+
+/**
+ * Compares the OSTN02 shift in the caller's order with the spatially sorted
+ * batch (ETRS89toOSGB36Sorted), on the table and the mapped grid, over a
+ * national dataset in random order and over the same points clustered around
+ * cities. Each point is checked to convert identically both ways.
+ *
+ * <pre>
+ * java bench.SortBenchmark [-quick] [dir]
+ * </pre>
+ */
+public class SortBenchmark {
+
+	private static final int POINTS = 1000000;
+
+	public static void main(String[] args) throws Exception {
+		boolean quick = false;
+		File dir = null;
+		for (String arg : args) {
+			if (arg.equals("-quick")) {
+				quick = true;
+			} else {
+				dir = new File(arg);
+			}
+		}
+		if (dir == null) {
+			dir = SyntheticGrid.defaultDirectory();
+		}
+		Benchmark benchmark = quick ? new Benchmark(500, 200, 3)
+				: new Benchmark(3000, 1000, 5);
+		ShiftGrid[] grids = {
+				TableShiftGrid.readTable(new File(dir, SyntheticGrid.TABLE).getPath(), null),
+				MappedShiftGrid.open(new File(dir, SyntheticGrid.GRID).getPath()) };
+		String[] names = { "table", "mapped" };
+		Workload[] workloads = { Workload.uniform(POINTS, 1),
+				Workload.clustered(POINTS, 2) };
+		for (int g = 0; g < grids.length; g++) {
+			GPSConverter c = new GPSConverter(grids[g]);
+			for (Workload w : workloads) {
+				run(benchmark, c, names[g], w);
+			}
+		}
+	}
+
+	private static void run(Benchmark benchmark, final GPSConverter c,
+			String grid, Workload w) throws Exception {
+		final int n = w.size;
+		final double[] etrsEastings = new double[n];
+		final double[] etrsNorthings = new double[n];
+		final double[] eastings = new double[n];
+		final double[] northings = new double[n];
+		c.gratToGrid(w.latitudes, w.longitudes, etrsEastings, etrsNorthings, 0, n,
+				GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+		benchmark.measure("ETRS89toOSGB36[] " + grid, w.name, new Benchmark.Operation() {
+			public long run() {
+				c.ETRS89toOSGB36(etrsEastings, etrsNorthings, eastings, northings, 0, n);
+				return n;
+			}
+		});
+		final double[] sortedEastings = new double[n];
+		final double[] sortedNorthings = new double[n];
+		benchmark.measure("ETRS89toOSGB36Sorted " + grid, w.name, new Benchmark.Operation() {
+			public long run() {
+				c.ETRS89toOSGB36Sorted(etrsEastings, etrsNorthings, sortedEastings,
+						sortedNorthings, 0, n);
+				return n;
+			}
+		});
+		for (int i = 0; i < n; i++) {
+			if (eastings[i] != sortedEastings[i] || northings[i] != sortedNorthings[i]) {
+				System.err.println("Sorted result differs at point " + i);
+				return;
+			}
+		}
+	}
+}
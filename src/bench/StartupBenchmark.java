@@ -0,0 +1,114 @@
+package bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import old.FixedPointShiftGrid;
+import old.GPSConverter;
+import old.MappedShiftGrid;
+import old.ShiftGrid;
+import old.TableShiftGrid;
+
+/**
+ * Measures the time to the first conversion in a new JVM, as paid by every
+ * short-lived job, for each way of loading the grid: parsing the OSTN02
+ * text (what loadGrid falls back to), reading the compiled grid onto the
+ * heap (which verifies its checksum), and mapping the compiled grid with and
+ * without verifying it. Each run starts a JVM that loads the grid, builds
+ * its validity map and converts one point; the wall time from starting the
+ * process to receiving the result, and the time spent inside main, are
+ * reported as the median of the runs.
+ *
+ * <p>Options for the child JVMs are passed with -J, e.g. to measure with an
+ * AppCDS archive dumped by a run with -J-XX:ArchiveClassesAtExit=app.jsa:</p>
+ *
+ * <pre>
+ * java bench.StartupBenchmark [-runs n] [-J&lt;jvm option&gt;]... [dir]
+ * </pre>
+ */
+public class StartupBenchmark {
+
+	private static final String[] MODES = { "text", "heap", "mapped", "mapped+verify" };
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 3 && args[0].equals("-child")) {
+			child(args[1], new File(args[2]));
+			return;
+		}
+		int runs = 5;
+		List<String> options = new ArrayList<String>();
+		File dir = null;
+		for (int a = 0; a < args.length; a++) {
+			if (args[a].equals("-runs") && a + 1 < args.length) {
+				runs = Integer.parseInt(args[++a]);
+			} else if (args[a].startsWith("-J")) {
+				options.add(args[a].substring(2));
+			} else {
+				dir = new File(args[a]);
+			}
+		}
+		if (dir == null) {
+			dir = SyntheticGrid.defaultDirectory();
+		}
+		String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+		for (String mode : MODES) {
+			double[] wall = new double[runs];
+			double[] main = new double[runs];
+			for (int r = 0; r < runs; r++) {
+				List<String> command = new ArrayList<String>();
+				command.add(java);
+				command.addAll(options);
+				command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"),
+						StartupBenchmark.class.getName(), "-child", mode, dir.getPath()));
+				long start = System.nanoTime();
+				Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+				BufferedReader in = new BufferedReader(new InputStreamReader(
+						process.getInputStream(), "US-ASCII"));
+				String line = in.readLine();
+				wall[r] = (System.nanoTime() - start) / 1e6;
+				while (in.readLine() != null) {
+				}
+				if (process.waitFor() != 0 || line == null || !line.startsWith("first ")) {
+					throw new IllegalStateException(mode + " failed: " + line);
+				}
+				main[r] = Double.parseDouble(line.split(" ")[1]);
+			}
+			System.out.println(String.format("%-32s %-10s %8.1f ms wall %8.1f ms in main",
+					"first conversion " + mode, "startup", median(wall), median(main)));
+		}
+	}
+
+	/**
+	 * Loads the grid in one way, converts a point and prints the time taken
+	 * in milliseconds.
+	 */
+	private static void child(String mode, File dir) throws Exception {
+		long start = System.nanoTime();
+		String compiled = new File(dir, SyntheticGrid.GRID).getPath();
+		ShiftGrid grid;
+		if (mode.equals("text")) {
+			grid = FixedPointShiftGrid.of(TableShiftGrid.readTable(
+					new File(dir, SyntheticGrid.TABLE).getPath(), null));
+		} else if (mode.equals("heap")) {
+			grid = FixedPointShiftGrid.read(compiled);
+		} else {
+			grid = MappedShiftGrid.open(compiled, mode.equals("mapped+verify"));
+		}
+		grid.getValidity();
+		GPSConverter c = new GPSConverter(grid);
+		double[] result = c.convertToOSGB36(52.5, -1.5, GPSConverter.GRS80,
+				GPSConverter.NATIONAL_GRID);
+		double millis = (System.nanoTime() - start) / 1e6;
+		System.out.println("first " + millis + " " + result[0] + " " + result[1]);
+	}
+
+	private static double median(double[] values) {
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+}
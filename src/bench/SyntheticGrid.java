@@ -0,0 +1,134 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+import old.MappedShiftGrid;
+import old.ShiftGrid;
+import old.TableShiftGrid;
+
+/**
+ * Generates an OSTN02-shaped grid so that the benchmarks can run without the
+ * licensed OSTN02_OSGM02_GB.txt file. The shifts are smooth fields over the
+ * same ranges as the real data (east shift 86-104m, north shift -82 to -40m,
+ * geoid height 40-60m), with zero shifts and a zero datum flag outside a
+ * rough outline of Great Britain, and are given to the millimeter.
+ */
+public class SyntheticGrid {
+
+	public static final String TABLE = "OSTN02_OSGM02_GB.txt";
+	public static final String GRID = "OSTN02_OSGM02_GB.bin";
+
+	/**
+	 * @param args
+	 *            the directory to write the synthetic OSTN02 text file and
+	 *            compiled grid into.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: SyntheticGrid <directory>");
+			System.exit(1);
+		}
+		write(new File(args[0]), 0);
+		System.out.println("Synthetic grid written to: " + args[0]);
+	}
+
+	/**
+	 * Returns the default synthetic grid directory in the temporary
+	 * directory, writing the grid if it is missing or was compiled in an older
+	 * format.
+	 */
+	public static File defaultDirectory() throws IOException {
+		File dir = new File(System.getProperty("java.io.tmpdir"), "synthetic-ostn02");
+		File grid = new File(dir, GRID);
+		boolean current = grid.exists();
+		if (current) {
+			try {
+				MappedShiftGrid.open(grid.getPath());
+			} catch (IOException ex) {
+				current = false;
+			}
+		}
+		if (!current) {
+			System.out.println("Generating synthetic grid in: " + dir);
+			write(dir, 0);
+		}
+		return dir;
+	}
+
+	/**
+	 * Writes a synthetic OSTN02_OSGM02_GB.txt and the compiled grid made from
+	 * it into a directory.
+	 * 
+	 * @param dir
+	 *            the directory to write into, created if necessary.
+	 * @param seed
+	 *            the seed for the small-scale noise in the shifts.
+	 */
+	public static void write(File dir, long seed) throws IOException {
+		dir.mkdirs();
+		File table = new File(dir, TABLE);
+		Random random = new Random(seed);
+		BufferedWriter out = new BufferedWriter(new FileWriter(table), 1 << 16);
+		try {
+			StringBuilder sb = new StringBuilder(64);
+			int record = 1;
+			for (int y = 0; y < ShiftGrid.ROWS; y++) {
+				for (int x = 0; x < ShiftGrid.COLUMNS; x++) {
+					int flag = inside(x, y) ? 1 : 0;
+					int se = 0;
+					int sn = 0;
+					int sg = 0;
+					if (flag != 0) {
+						se = (int) (86000 + 18000.0 * x / ShiftGrid.COLUMNS
+								+ 1500 * Math.sin(y / 97.0)) + random.nextInt(10);
+						sn = (int) (-82000 + 42000.0 * y / ShiftGrid.ROWS
+								+ 1200 * Math.cos(x / 55.0)) + random.nextInt(10);
+						sg = (int) (50000 + 10000 * Math.sin(x / 200.0 + y / 300.0));
+					}
+					sb.setLength(0);
+					sb.append(record++).append(',').append(x * 1000).append(',')
+							.append(y * 1000).append(',');
+					appendMillimeters(sb, se).append(',');
+					appendMillimeters(sb, sn).append(',');
+					appendMillimeters(sb, sg).append(',').append(flag);
+					out.write(sb.toString());
+					out.newLine();
+				}
+			}
+		} finally {
+			out.close();
+		}
+		TableShiftGrid grid = TableShiftGrid.readTable(table.getPath(), null);
+		MappedShiftGrid.write(grid, new File(dir, GRID).getPath());
+	}
+
+	/**
+	 * A rough outline of Great Britain: an ellipse along the length of the
+	 * island, on the 1km grid indexes.
+	 */
+	private static boolean inside(int x, int y) {
+		double dx = (x - 350) / 300.0;
+		double dy = (y - 620) / 600.0;
+		return dx * dx + dy * dy <= 1;
+	}
+
+	private static StringBuilder appendMillimeters(StringBuilder sb, int mm) {
+		if (mm < 0) {
+			sb.append('-');
+			mm = -mm;
+		}
+		int fraction = mm % 1000;
+		sb.append(mm / 1000).append('.');
+		if (fraction < 100) {
+			sb.append('0');
+		}
+		if (fraction < 10) {
+			sb.append('0');
+		}
+		return sb.append(fraction);
+	}
+}
@@ -0,0 +1,151 @@
+package bench;
+
+import java.io.File;
+
+import old.GPSConverter;
+import old.MappedShiftGrid;
+import old.ProjectionLattice;
+
+/**
+ * Compares the projection tiers, EXACT_PROJECTION and FAST_PROJECTION, and
+ * checks the error bound of the fast tier. The error is first measured over
+ * a dense scan of the whole lattice, four points across every cell (which
+ * includes the middle of each cell, where the interpolation is furthest from
+ * the nodes), for every ellipsoid and projection, and then over the whole
+ * conversion of each workload. The throughput of the projection and of the
+ * whole conversion is then measured for each tier. Exits with status 1 if
+ * any error exceeds ProjectionLattice.MAX_ERROR.
+ *
+ * <pre>
+ * java bench.TierBenchmark [-quick] [dir]
+ * </pre>
+ */
+public class TierBenchmark {
+
+	private static final int POINTS = 100000;
+	private static final int STEPS = 4;
+	private static final int[] TIERS = { GPSConverter.EXACT_PROJECTION,
+			GPSConverter.FAST_PROJECTION };
+	private static final String[] NAMES = { "exact", "fast" };
+
+	public static void main(String[] args) throws Exception {
+		boolean quick = false;
+		File dir = null;
+		for (String arg : args) {
+			if (arg.equals("-quick")) {
+				quick = true;
+			} else {
+				dir = new File(arg);
+			}
+		}
+		if (dir == null) {
+			dir = SyntheticGrid.defaultDirectory();
+		}
+		final GPSConverter c = new GPSConverter(MappedShiftGrid.open(
+				new File(dir, SyntheticGrid.GRID).getPath()));
+		Benchmark benchmark = quick ? new Benchmark(200, 100, 3)
+				: new Benchmark(2000, 1000, 5);
+		boolean failed = false;
+
+		int columns = ProjectionLattice.COLUMNS * STEPS;
+		int rows = ProjectionLattice.ROWS * STEPS;
+		double[] lat = new double[columns * rows];
+		double[] lon = new double[lat.length];
+		for (int y = 0; y < rows; y++) {
+			for (int x = 0; x < columns; x++) {
+				double step = 1.0 / (ProjectionLattice.CELLS_PER_DEGREE * STEPS);
+				lat[x + y * columns] = ProjectionLattice.MIN_LATITUDE + y * step;
+				lon[x + y * columns] = ProjectionLattice.MIN_LONGITUDE + x * step;
+			}
+		}
+		String[] ellipsoids = { "Airy 1830", "GRS80" };
+		String[] projections = { "National Grid", "ITM" };
+		for (int e = 0; e < ellipsoids.length; e++) {
+			for (int p = 0; p < projections.length; p++) {
+				double error = projectionError(c, lat, lon, e, p);
+				failed |= error > ProjectionLattice.MAX_ERROR;
+				System.out.println(String.format("fast projection error %s %s: %.3f m"
+						+ " over %d points", ellipsoids[e], projections[p], error, lat.length));
+			}
+		}
+
+		Workload[] workloads = { Workload.uniform(POINTS, 1), Workload.clustered(POINTS, 2) };
+		for (final Workload w : workloads) {
+			final int n = w.size;
+			final double[] eastings = new double[n];
+			final double[] northings = new double[n];
+			final int[] status = new int[n];
+			double[] exact = new double[2 * n];
+			int[] exactStatus = new int[n];
+			c.convertToOSGB36(w.latitudes, w.longitudes, eastings, northings, exactStatus,
+					0, n, GPSConverter.GRS80, GPSConverter.NATIONAL_GRID,
+					GPSConverter.EXACT_PROJECTION);
+			System.arraycopy(eastings, 0, exact, 0, n);
+			System.arraycopy(northings, 0, exact, n, n);
+			c.convertToOSGB36(w.latitudes, w.longitudes, eastings, northings, status,
+					0, n, GPSConverter.GRS80, GPSConverter.NATIONAL_GRID,
+					GPSConverter.FAST_PROJECTION);
+			double error = 0;
+			int differing = 0;
+			for (int i = 0; i < n; i++) {
+				if (status[i] != exactStatus[i]) {
+					differing++;
+				} else if (!Double.isNaN(exact[i])) {
+					error = Math.max(error, Math.max(Math.abs(eastings[i] - exact[i]),
+							Math.abs(northings[i] - exact[n + i])));
+				}
+			}
+			failed |= error > ProjectionLattice.MAX_ERROR;
+			System.out.println(String.format("fast conversion error %s: %.3f m,"
+					+ " %d of %d statuses differ", w.name, error, differing, n));
+
+			for (int t = 0; t < TIERS.length; t++) {
+				final int tier = TIERS[t];
+				benchmark.measure("gratToGrid[] " + NAMES[t], w.name, new Benchmark.Operation() {
+					public long run() {
+						c.gratToGrid(w.latitudes, w.longitudes, eastings, northings, 0,
+								n, GPSConverter.GRS80, GPSConverter.NATIONAL_GRID, tier);
+						return n;
+					}
+				});
+				benchmark.measure("convertToOSGB36[] " + NAMES[t], w.name,
+						new Benchmark.Operation() {
+					public long run() {
+						c.convertToOSGB36(w.latitudes, w.longitudes, eastings, northings,
+								status, 0, n, GPSConverter.GRS80,
+								GPSConverter.NATIONAL_GRID, tier);
+						return n;
+					}
+				});
+			}
+		}
+		if (failed) {
+			System.out.println("Error bound of " + ProjectionLattice.MAX_ERROR
+					+ " m exceeded!");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @return the largest difference in meters between the exact and fast
+	 *         projections of the points.
+	 */
+	private static double projectionError(GPSConverter c, double[] lat, double[] lon,
+			int ellipsoid, int projection) {
+		int n = lat.length;
+		double[] exactEastings = new double[n];
+		double[] exactNorthings = new double[n];
+		double[] eastings = new double[n];
+		double[] northings = new double[n];
+		c.gratToGrid(lat, lon, exactEastings, exactNorthings, 0, n, ellipsoid,
+				projection, GPSConverter.EXACT_PROJECTION);
+		c.gratToGrid(lat, lon, eastings, northings, 0, n, ellipsoid, projection,
+				GPSConverter.FAST_PROJECTION);
+		double error = 0;
+		for (int i = 0; i < n; i++) {
+			error = Math.max(error, Math.max(Math.abs(eastings[i] - exactEastings[i]),
+					Math.abs(northings[i] - exactNorthings[i])));
+		}
+		return error;
+	}
+}
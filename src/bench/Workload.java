@@ -0,0 +1,118 @@
+package bench;
+
+import java.util.Random;
+
+/**
+ * A set of points to benchmark a conversion stage over, held as latitude and
+ * longitude in both decimal and DD:MM:SS.SSSS form.
+ */
+public class Workload {
+
+	// The extent of the GB land area, in degrees:
+	private static final double MIN_LAT = 50.0;
+	private static final double MAX_LAT = 58.5;
+	private static final double MIN_LONG = -5.5;
+	private static final double MAX_LONG = 1.5;
+	// City centres for the clustered workload:
+	private static final double[][] CITIES = { { 51.5074, -0.1278 },
+			{ 52.4862, -1.8904 }, { 53.4808, -2.2426 }, { 53.8008, -1.5491 },
+			{ 55.8642, -4.2518 }, { 55.9533, -3.1883 }, { 51.4545, -2.5879 },
+			{ 54.9783, -1.6178 } };
+	// Roughly 10km in degrees of latitude:
+	private static final double CITY_RADIUS = 0.09;
+
+	public final String name;
+	public final int size;
+	public final double[] latitudes;
+	public final double[] longitudes;
+	/** The latitudes as DD:MM:SS.SSSS text. */
+	public final String[] dms;
+	/** The longitudes as DD:MM:SS.SSSS text, negative west of Greenwich. */
+	public final String[] dmsLongitudes;
+
+	private Workload(String name, int size) {
+		this.name = name;
+		this.size = size;
+		latitudes = new double[size];
+		longitudes = new double[size];
+		dms = new String[size];
+		dmsLongitudes = new String[size];
+	}
+
+	/**
+	 * The same point repeated: the OS worked example.
+	 */
+	public static Workload single(int size) {
+		Workload w = new Workload("single", size);
+		for (int i = 0; i < size; i++) {
+			w.set(i, 52.657570305555556, 1.7179215833333334);
+		}
+		return w;
+	}
+
+	/**
+	 * Points spread uniformly over the GB land area.
+	 */
+	public static Workload uniform(int size, long seed) {
+		Workload w = new Workload("uniform", size);
+		Random random = new Random(seed);
+		for (int i = 0; i < size; i++) {
+			w.set(i, MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT),
+					MIN_LONG + random.nextDouble() * (MAX_LONG - MIN_LONG));
+		}
+		return w;
+	}
+
+	/**
+	 * Points clustered around a handful of cities, about 10km across, in the
+	 * order they might arrive from a fleet of devices.
+	 */
+	public static Workload clustered(int size, long seed) {
+		Workload w = new Workload("clustered", size);
+		Random random = new Random(seed);
+		for (int i = 0; i < size; i++) {
+			double[] city = CITIES[random.nextInt(CITIES.length)];
+			w.set(i, city[0] + random.nextGaussian() * CITY_RADIUS,
+					city[1] + random.nextGaussian() * CITY_RADIUS * 1.6);
+		}
+		return w;
+	}
+
+	/**
+	 * Fixes reported from a fixed set of stops spread over the GB land area,
+	 * quantised to 1e-5 degrees as many devices report them, so that every
+	 * stop repeats exactly.
+	 */
+	public static Workload fleet(int size, int stops, long seed) {
+		Workload w = new Workload("fleet" + stops, size);
+		Random random = new Random(seed);
+		double[][] positions = new double[stops][2];
+		for (int s = 0; s < stops; s++) {
+			positions[s][0] = Math.round((MIN_LAT + random.nextDouble()
+					* (MAX_LAT - MIN_LAT)) * 1e5) / 1e5;
+			positions[s][1] = Math.round((MIN_LONG + random.nextDouble()
+					* (MAX_LONG - MIN_LONG)) * 1e5) / 1e5;
+		}
+		for (int i = 0; i < size; i++) {
+			double[] stop = positions[random.nextInt(stops)];
+			w.set(i, stop[0], stop[1]);
+		}
+		return w;
+	}
+
+	private void set(int i, double latitude, double longitude) {
+		latitudes[i] = latitude;
+		longitudes[i] = longitude;
+		dms[i] = toDMS(latitude);
+		dmsLongitudes[i] = toDMS(longitude);
+	}
+
+	private static String toDMS(double value) {
+		double abs = Math.abs(value);
+		int degrees = (int) abs;
+		int minutes = (int) ((abs - degrees) * 60);
+		double seconds = (abs - degrees - minutes / 60.0) * 3600;
+		return (value < 0 ? "-" : "") + degrees + ":" + minutes + ":"
+				+ String.format("%.4f", seconds);
+	}
+}
@@ -0,0 +1,292 @@
+package old;
+
+import java.nio.ByteBuffer;
+
+/**
+ *  Parses Latitudes and Longitudes written in degrees, minutes and seconds or
+ * in decimal degrees, in a single pass over the text and without allocating.
+ * Malformed text gives NaN rather than an exception, and the batch form
+ * marks it ConversionStatus.INVALID_INPUT, so one bad value does not stop an
+ * import.
+ *
+ * <p>Accepted forms include "52:39:27.2531", "-1:43:4.5177", "52 39 27.25",
+ * "52&deg;39'27.25\"N", "N52:39:27.25", "1:43:4.5177 W", "52:39.454" and
+ * "52.657570". The fields are separated by colons, spaces or the degree,
+ * minute and second symbols; only the last field may have a fraction, and
+ * minutes and seconds must be less than 60. The sign may be given by a
+ * leading '-' or '+' or by a leading or trailing hemisphere letter (N, S, E
+ * or W, in either case), but not both. The sign applies to the whole value,
+ * so "-2:12:0.4806" is -(2 + 12 / 60 + 0.4806 / 3600).</p>
+ *
+ * <p>The text may be a CharSequence or a range of bytes (ASCII, Latin-1 or
+ * UTF-8), e.g. a field located by a CsvReader; the prime symbols are only
+ * recognised in a CharSequence. Every field is parsed exactly as 
+ * Double.parseDouble would, so positive values give the same result as 
+ * GPSConverter.stringToDecimal always did; only fields with more digits 
+ * than a double holds exactly (about 16) are handed to Double.parseDouble,
+ * and allocate.</p>
+ *
+ * @author Nathan Collins
+ */
+public final class AngleParser {
+
+    /** Any angle: all hemisphere letters are accepted and the range is not checked. */
+    public static final int ANGLE = 0;
+    /** A Latitude: N or S, and at most 90 degrees. */
+    public static final int LATITUDE = 1;
+    /** A Longitude: E or W, and at most 180 degrees. */
+    public static final int LONGITUDE = 2;
+    private static final double[] MAXIMA = { Double.POSITIVE_INFINITY, 90, 180 };
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+        1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+    private static final int DEGREE = 0xB0;
+    private static final int UTF8_LEAD = 0xC2;
+    private static final int PRIME = 0x2032;
+    private static final int DOUBLE_PRIME = 0x2033;
+
+    private AngleParser() {
+    }
+
+    /**
+     * @param text - The text to parse, or null.
+     * @param axis - ANGLE, LATITUDE or LONGITUDE.
+     * @return - The angle in decimal degrees, or NaN if the text is null,
+     * malformed or out of range for the axis.
+     */
+    public static double parse(CharSequence text, int axis) {
+        if (text == null) {
+            return Double.NaN;
+        }
+        return parse(text, null, 0, text.length(), axis);
+    }
+
+    /**
+     * @param text - The text holding the angle.
+     * @param start - The index of the first character.
+     * @param end - The index after the last character.
+     * @param axis - ANGLE, LATITUDE or LONGITUDE.
+     * @return - The angle in decimal degrees, or NaN if the text is
+     * malformed or out of range for the axis.
+     */
+    public static double parse(CharSequence text, int start, int end, int axis) {
+        return parse(text, null, start, end, axis);
+    }
+
+    /**
+     * @param buffer - The buffer holding the text.
+     * @param start - The index of the first byte.
+     * @param end - The index after the last byte.
+     * @param axis - ANGLE, LATITUDE or LONGITUDE.
+     * @return - The angle in decimal degrees, or NaN if the text is
+     * malformed or out of range for the axis.
+     */
+    public static double parse(ByteBuffer buffer, int start, int end, int axis) {
+        return parse(null, buffer, start, end, axis);
+    }
+
+    /**
+     *  Parses a batch of angles, e.g. a column of an import, ready for the
+     * batch conversions.
+     *
+     * @param texts - The text of each angle; null entries are malformed.
+     * @param values - Receives the angles in decimal degrees, NaN when
+     * malformed.
+     * @param status - Receives ConversionStatus.OK or INVALID_INPUT.
+     * @param offset - The index of the first angle in every array.
+     * @param length - The number of angles to parse.
+     * @param axis - ANGLE, LATITUDE or LONGITUDE.
+     * @return - The number of malformed angles.
+     */
+    public static int parse(CharSequence[] texts, double[] values, int[] status,
+            int offset, int length, int axis) {
+        int failed = 0;
+        for (int i = offset; i < offset + length; i++) {
+            double value = parse(texts[i], axis);
+            values[i] = value;
+            if (value != value) {
+                status[i] = ConversionStatus.INVALID_INPUT;
+                failed++;
+            } else {
+                status[i] = ConversionStatus.OK;
+            }
+        }
+        return failed;
+    }
+
+    /**
+     *  Parses text from either a CharSequence or a ByteBuffer, whichever is
+     * not null, so that both are read by the same code.
+     */
+    private static double parse(CharSequence chars, ByteBuffer bytes, int start,
+            int end, int axis) {
+        while (start < end && charAt(chars, bytes, start) == ' ') {
+            start++;
+        }
+        while (end > start && charAt(chars, bytes, end - 1) == ' ') {
+            end--;
+        }
+        if (start == end) {
+            return Double.NaN;
+        }
+        // Sign or hemisphere:
+        boolean negative = false;
+        boolean signed = false;
+        int c = charAt(chars, bytes, start);
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            signed = true;
+            start++;
+        } else {
+            int hemisphere = hemisphere(c, axis);
+            if (hemisphere != 0) {
+                negative = hemisphere < 0;
+                signed = true;
+                start++;
+                while (start < end && charAt(chars, bytes, start) == ' ') {
+                    start++;
+                }
+            }
+        }
+        if (start < end) {
+            int hemisphere = hemisphere(charAt(chars, bytes, end - 1), axis);
+            if (hemisphere != 0) {
+                if (signed) {
+                    return Double.NaN;
+                }
+                negative = hemisphere < 0;
+                end--;
+                while (end > start && charAt(chars, bytes, end - 1) == ' ') {
+                    end--;
+                }
+            }
+        }
+        // Degrees, minutes and seconds:
+        double degrees = 0;
+        double minutes = 0;
+        double seconds = 0;
+        int i = start;
+        for (int field = 0; field < 3; field++) {
+            int fieldStart = i;
+            long mantissa = 0;
+            int digits = 0;
+            int scale = 0;
+            boolean point = false;
+            boolean any = false;
+            boolean dropped = false;
+            for (; i < end; i++) {
+                c = charAt(chars, bytes, i);
+                if (c >= '0' && c <= '9') {
+                    any = true;
+                    if (digits < 18) {
+                        mantissa = mantissa * 10 + (c - '0');
+                        if (mantissa != 0) {
+                            digits++;
+                        }
+                        if (point) {
+                            scale--;
+                        }
+                    } else if (!point) {
+                        return Double.NaN;
+                    } else {
+                        dropped = true;
+                    }
+                } else if (c == '.' && !point) {
+                    point = true;
+                } else {
+                    break;
+                }
+            }
+            if (!any) {
+                return Double.NaN;
+            }
+            double value;
+            if (dropped || mantissa >= 1L << 53 || -scale >= POWERS_OF_TEN.length) {
+                // Not exact as a double quotient, so left to the JDK:
+                value = Double.parseDouble(text(chars, bytes, fieldStart, i));
+            } else if (scale == 0) {
+                value = mantissa;
+            } else {
+                value = mantissa / POWERS_OF_TEN[-scale];
+            }
+            if (field == 0) {
+                degrees = value;
+            } else if (field == 1) {
+                minutes = value;
+            } else {
+                seconds = value;
+            }
+            if (i == end) {
+                break;
+            }
+            // Separator: a colon, or a symbol and/or spaces.
+            int separator = i;
+            c = charAt(chars, bytes, i);
+            if (c == ':') {
+                i++;
+            } else {
+                if (c == UTF8_LEAD && bytes != null && i + 1 < end
+                        && charAt(chars, bytes, i + 1) == DEGREE) {
+                    i++;
+                    c = DEGREE;
+                }
+                if (c == DEGREE || c == 'd' || c == '\'' || c == '"' || c == PRIME
+                        || c == DOUBLE_PRIME) {
+                    i++;
+                }
+                while (i < end && charAt(chars, bytes, i) == ' ') {
+                    i++;
+                }
+                if (i == end && i > separator) {
+                    break;
+                }
+            }
+            if (i == separator || i == end || point) {
+                return Double.NaN;
+            }
+            if (field == 2) {
+                return Double.NaN;
+            }
+        }
+        if (minutes >= 60 || seconds >= 60) {
+            return Double.NaN;
+        }
+        double value = degrees + minutes / 60 + seconds / 3600;
+        if (value > MAXIMA[axis]) {
+            return Double.NaN;
+        }
+        return negative ? -value : value;
+    }
+
+    private static int charAt(CharSequence chars, ByteBuffer bytes, int index) {
+        return chars != null ? chars.charAt(index) : bytes.get(index) & 0xFF;
+    }
+
+    /** @return - The text of a field of digits, for Double.parseDouble. */
+    private static String text(CharSequence chars, ByteBuffer bytes, int start, int end) {
+        if (chars != null) {
+            return chars.subSequence(start, end).toString();
+        }
+        char[] text = new char[end - start];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (char) (bytes.get(start + i) & 0xFF);
+        }
+        return new String(text);
+    }
+
+    /** @return - 1 for a positive hemisphere letter, -1 negative, 0 neither. */
+    private static int hemisphere(int c, int axis) {
+        switch (c) {
+        case 'N': case 'n':
+            return axis == LONGITUDE ? 0 : 1;
+        case 'S': case 's':
+            return axis == LONGITUDE ? 0 : -1;
+        case 'E': case 'e':
+            return axis == LATITUDE ? 0 : 1;
+        case 'W': case 'w':
+            return axis == LATITUDE ? 0 : -1;
+        default:
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package old;
+
+/**
+ *  Runs the two per-point stages of a batch conversion - the transverse
+ * Mercator projection and the OSTN02 shift - over arrays of points. A
+ * GPSConverter created with an engine hands its batch methods to it (see
+ * GPSConverter(ShiftGrid, ConversionListener, BatchEngine)).
+ *
+ * <p>SCALAR converts one point at a time with exactly the arithmetic of the
+ * scalar methods. load() returns an engine built on the JDK Vector API
+ * (jdk.incubator.vector) when it was built (from src-vector, with the Maven
+ * profile vector) and the module is available, which projects a lane of 
+ * points per instruction, and otherwise SCALAR. Its projection uses
+ * polynomial sine and cosine, so results may differ from the scalar methods
+ * in the last bits (well under a micrometer); its shifts are identical.</p>
+ *
+ * <p>Engines are stateless and may be shared between threads.</p>
+ *
+ * @author Nathan Collins
+ */
+public abstract class BatchEngine {
+
+    /** The engine that converts one point at a time. */
+    public static final BatchEngine SCALAR = new ScalarEngine();
+    private static final String VECTOR_ENGINE = "old.VectorEngine";
+
+    /**
+     *  Returns the fastest engine available: the Vector API engine if it is
+     * on the class path, the jdk.incubator.vector module is present (run 
+     * with --add-modules jdk.incubator.vector) and the hardware has at least
+     * two double lanes, otherwise SCALAR.
+     *
+     * @return - The engine.
+     */
+    public static BatchEngine load() {
+        try {
+            return (BatchEngine) Class.forName(VECTOR_ENGINE)
+                    .getDeclaredConstructor().newInstance();
+        } catch (Exception ex) {
+            // The vector engine was not built, or is unsupported on this
+            // hardware.
+            return SCALAR;
+        } catch (LinkageError err) {
+            // The Vector API module is not present.
+            return SCALAR;
+        }
+    }
+
+    /**
+     * @return - A short name for the engine, e.g. for benchmark reports.
+     */
+    public abstract String getName();
+
+    /**
+     *  Projects a batch of latitudes and longitudes to Eastings and
+     * Northings. The output arrays may be the input arrays.
+     *
+     * @param kernel - The projection.
+     * @param latitudes - The latitudes in degrees.
+     * @param longitudes - The longitudes in degrees.
+     * @param eastings - Receives the Eastings.
+     * @param northings - Receives the Northings.
+     * @param offset - The index of the first point in every array.
+     * @param length - The number of points to project.
+     */
+    public abstract void project(TransverseMercator kernel, double[] latitudes,
+            double[] longitudes, double[] eastings, double[] northings,
+            int offset, int length);
+
+    /**
+     *  Applies the bilinearly interpolated OSTN02 shifts to a batch of ETRS89
+     * Eastings and Northings. Points are not checked against the validity 
+     * map, so every point must already have passed it (GPSConverter checks
+     * the batch first). The output arrays may be the input arrays.
+     *
+     * @param grid - The OSTN02 grid.
+     * @param eastings - The ETRS89 Eastings.
+     * @param northings - The ETRS89 Northings.
+     * @param resultEastings - Receives the OSGB36 Eastings.
+     * @param resultNorthings - Receives the OSGB36 Northings.
+     * @param offset - The index of the first point in every array.
+     * @param length - The number of points to shift.
+     */
+    public abstract void shift(ShiftGrid grid, double[] eastings,
+            double[] northings, double[] resultEastings, double[] resultNorthings,
+            int offset, int length);
+
+    /**
+     *  Converts one point at a time, exactly as the scalar GPSConverter
+     * methods do.
+     */
+    private static final class ScalarEngine extends BatchEngine {
+
+        @Override
+        public String getName() {
+            return "scalar";
+        }
+
+        @Override
+        public void project(TransverseMercator kernel, double[] latitudes,
+                double[] longitudes, double[] eastings, double[] northings,
+                int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                kernel.project(latitudes[i], longitudes[i], eastings, i, northings, i);
+            }
+        }
+
+        @Override
+        public void shift(ShiftGrid grid, double[] eastings, double[] northings,
+                double[] resultEastings, double[] resultNorthings, int offset,
+                int length) {
+            for (int i = offset; i < offset + length; i++) {
+                grid.shift(eastings[i], northings[i], resultEastings, i,
+                        resultNorthings, i);
+            }
+        }
+    }
+}
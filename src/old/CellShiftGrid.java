@@ -0,0 +1,130 @@
+package old;
+
+/**
+ *  A grid laid out by cell rather than by node, for the fastest OSTN02
+ * shift. Each 1km cell holds the bilinear coefficients of its east and north
+ * shifts, in millimeters, next to each other:
+ * <pre>
+ * shift(t, u) = a + b * t + c * u + d * t * u
+ * </pre>
+ * where t and u are the position of the point across the cell (0 to 1), so
+ * a cell's eight coefficients are one 32-byte block and a point is shifted
+ * from a single fetch with three multiply-adds per axis. The cell is found
+ * from the point's Easting and Northing, so no cell origins are stored.
+ *
+ * <p>The price is memory: every node's shifts are repeated in the four
+ * cells around it, so the coefficients take 28MB on the heap, against 11MB
+ * for a FixedPointShiftGrid or 14MB of shared page cache for a
+ * MappedShiftGrid. The geoid heights, datum flags and validity map are
+ * read from the grid the cells were built from, which is kept. See
+ * GPSConverter.loadGrid(ConversionListener, ConverterMetrics, int) to choose
+ * between the layouts.</p>
+ *
+ * <p>The results agree with the node grid to well under a micrometer. The
+ * coefficient array is never written once built, so the grid may be read by
+ * any number of threads at once.</p>
+ *
+ * @author Nathan Collins
+ */
+public class CellShiftGrid extends ShiftGrid {
+
+    private static final int CELL_COLUMNS = ValidityMap.CELL_COLUMNS;
+    private static final int CELL_ROWS = ValidityMap.CELL_ROWS;
+    private static final int STRIDE = 8;
+    private static final double SCALE = MappedShiftGrid.SCALE;
+    private final ShiftGrid nodes;
+    /** a, b, c, d of the east shift then of the north shift, per cell. */
+    private final int[] coefficients;
+
+    private CellShiftGrid(ShiftGrid nodes, int[] coefficients) {
+        this.nodes = nodes;
+        this.coefficients = coefficients;
+    }
+
+    @Override
+    public double getEastShift(int x, int y) {
+        return nodes.getEastShift(x, y);
+    }
+
+    @Override
+    public double getNorthShift(int x, int y) {
+        return nodes.getNorthShift(x, y);
+    }
+
+    @Override
+    public double getGeoidShift(int x, int y) {
+        return nodes.getGeoidShift(x, y);
+    }
+
+    @Override
+    public int getDatumFlag(int x, int y) {
+        return nodes.getDatumFlag(x, y);
+    }
+
+    @Override
+    protected ValidityMap createValidity() {
+        return nodes.getValidity();
+    }
+
+    @Override
+    protected void shift(double easting, double northing,
+            double[] eastings, int eastAt, double[] northings, int northAt) {
+        int eastIndex = (int) easting / 1000;
+        int northIndex = (int) northing / 1000;
+        int i = (eastIndex + northIndex * CELL_COLUMNS) * STRIDE;
+
+        double t = (easting - eastIndex * SPACING) / 1000;
+        double u = (northing - northIndex * SPACING) / 1000;
+
+        int[] k = coefficients;
+        double se = k[i] + t * k[i + 1] + u * (k[i + 2] + t * k[i + 3]);
+        double sn = k[i + 4] + t * k[i + 5] + u * (k[i + 6] + t * k[i + 7]);
+
+        eastings[eastAt] = easting + se / SCALE;
+        northings[northAt] = northing + sn / SCALE;
+    }
+
+    /**
+     *  Builds the cells of a grid, rounding its shifts to the millimeter.
+     *
+     * @param grid - The grid to build from, e.g. a MappedShiftGrid. It is
+     * kept for the geoid heights and datum flags.
+     * @return - The cell grid.
+     */
+    public static CellShiftGrid of(ShiftGrid grid) {
+        int[] coefficients = new int[CELL_COLUMNS * CELL_ROWS * STRIDE];
+        // Two rows of node shifts at a time, each node read once:
+        int[] below = new int[COLUMNS * 2];
+        int[] above = new int[COLUMNS * 2];
+        readRow(grid, 0, below);
+        for (int y = 0; y < CELL_ROWS; y++) {
+            readRow(grid, y + 1, above);
+            for (int x = 0; x < CELL_COLUMNS; x++) {
+                int i = (x + y * CELL_COLUMNS) * STRIDE;
+                for (int axis = 0; axis < 2; axis++) {
+                    int s00 = below[2 * x + axis];
+                    int s10 = below[2 * (x + 1) + axis];
+                    int s01 = above[2 * x + axis];
+                    int s11 = above[2 * (x + 1) + axis];
+                    int at = i + axis * 4;
+                    coefficients[at] = s00;
+                    coefficients[at + 1] = s10 - s00;
+                    coefficients[at + 2] = s01 - s00;
+                    coefficients[at + 3] = s11 - s10 - s01 + s00;
+                }
+            }
+            int[] swap = below;
+            below = above;
+            above = swap;
+        }
+        return new CellShiftGrid(grid, coefficients);
+    }
+
+    /** Reads the east and north shifts of a row of nodes in millimeters. */
+    private static void readRow(ShiftGrid grid, int y, int[] row) {
+        for (int x = 0; x < COLUMNS; x++) {
+            row[2 * x] = (int) Math.round(grid.getEastShift(x, y) * SCALE);
+            row[2 * x + 1] = (int) Math.round(grid.getNorthShift(x, y) * SCALE);
+        }
+    }
+}
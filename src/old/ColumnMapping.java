@@ -0,0 +1,98 @@
+package old;
+
+/**
+ *  Says which columns of an input hold the Latitude, the Longitude and,
+ * optionally, the ellipsoidal height, so that files other than the UoB
+ * Mapper's can be converted (see UoBConverter -columns). Each column is
+ * given by its name in the header or by its zero-based index, e.g.
+ * "lat,lon" or "2,3,5".
+ *
+ * @author Nathan Collins
+ */
+public final class ColumnMapping {
+
+    /** The columns of a UoB Mapper file, which has no heights. */
+    public static final ColumnMapping UOB = new ColumnMapping("Latitude", "Longitude", null);
+    private final String latitude;
+    private final String longitude;
+    private final String height;
+
+    /**
+     * @param latitude - The name or index of the Latitude column.
+     * @param longitude - The name or index of the Longitude column.
+     * @param height - The name or index of the height column, or null if
+     * there are no heights.
+     */
+    public ColumnMapping(String latitude, String longitude, String height) {
+        if (latitude == null || longitude == null) {
+            throw new IllegalArgumentException("The Latitude and Longitude columns are required");
+        }
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.height = height;
+    }
+
+    /**
+     *  Parses a mapping written as "latitude,longitude" or
+     * "latitude,longitude,height".
+     *
+     * @param spec - The mapping.
+     * @return - The mapping.
+     * @throws IllegalArgumentException - Thrown when there are not two or
+     * three columns.
+     */
+    public static ColumnMapping parse(String spec) {
+        String[] columns = spec.split(",", -1);
+        if (columns.length < 2 || columns.length > 3) {
+            throw new IllegalArgumentException("Invalid column mapping: " + spec);
+        }
+        for (String column : columns) {
+            if (column.isEmpty()) {
+                throw new IllegalArgumentException("Invalid column mapping: " + spec);
+            }
+        }
+        return new ColumnMapping(columns[0], columns[1],
+                columns.length == 3 ? columns[2] : null);
+    }
+
+    /** @return - Whether a height column is mapped. */
+    public boolean hasHeight() {
+        return height != null;
+    }
+
+    /**
+     *  Finds the mapped columns among the names of an input's columns.
+     *
+     * @param names - The column names, e.g. the fields of a CSV header.
+     * @return - The indexes of the Latitude, Longitude and height columns;
+     * the last is -1 when no height column is mapped.
+     * @throws IllegalArgumentException - Thrown when a column is not found.
+     */
+    public int[] resolve(String[] names) {
+        return new int[] { find(latitude, names), find(longitude, names),
+                height == null ? -1 : find(height, names) };
+    }
+
+    private static int find(String column, String[] names) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].trim().equals(column)) {
+                return i;
+            }
+        }
+        try {
+            int index = Integer.parseInt(column);
+            if (index >= 0 && index < names.length) {
+                return index;
+            }
+        } catch (NumberFormatException ex) {
+            // Not an index either.
+        }
+        throw new IllegalArgumentException("No column " + column + " among "
+                + String.join(",", names));
+    }
+
+    @Override
+    public String toString() {
+        return latitude + "," + longitude + (height == null ? "" : "," + height);
+    }
+}
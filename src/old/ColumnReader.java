@@ -0,0 +1,198 @@
+package old;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ *  Reads a columnar binary file written by ColumnWriter a block at a time.
+ * Each block is memory-mapped as it is reached and its columns are copied
+ * into the caller's arrays in one bulk get, ready for the batch conversions,
+ * so files of any size are read without parsing and without allocating per
+ * row. Only the block being read is mapped.
+ *
+ * @author Nathan Collins
+ */
+public final class ColumnReader implements Closeable {
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long size;
+    private final String[] names;
+    private final int[] types;
+    private final int[] offsets;
+    private long position;
+    private MappedByteBuffer block;
+    private int rows;
+
+    /**
+     *  Opens a file and reads its header.
+     *
+     * @param path - The path of the file.
+     * @throws IOException - Thrown when the file cannot be read or is not a
+     * column file.
+     */
+    public ColumnReader(String path) throws IOException {
+        file = new RandomAccessFile(path, "r");
+        try {
+            channel = file.getChannel();
+            size = channel.size();
+            ByteBuffer start = read(0, 12);
+            if (start.getInt(0) != ColumnWriter.MAGIC) {
+                throw new IOException("Not a column file: " + path);
+            }
+            if (start.getInt(4) != ColumnWriter.VERSION) {
+                throw new IOException("Unsupported column file version "
+                        + start.getInt(4) + ": " + path);
+            }
+            int columns = start.getInt(8);
+            if (columns < 0 || columns > 4096) {
+                throw new IOException("Corrupt column file header: " + path);
+            }
+            names = new String[columns];
+            types = new int[columns];
+            offsets = new int[columns];
+            long at = 12;
+            for (int c = 0; c < columns; c++) {
+                ByteBuffer column = read(at, 8);
+                types[c] = column.getInt(0);
+                int length = column.getInt(4);
+                if (length < 0 || length > 4096
+                        || (types[c] != ColumnWriter.DOUBLE && types[c] != ColumnWriter.INT)) {
+                    throw new IOException("Corrupt column file header: " + path);
+                }
+                ByteBuffer name = read(at + 8, length);
+                names[c] = new String(name.array(), 0, length, StandardCharsets.US_ASCII);
+                at += 8 + length;
+            }
+            position = (at + 7) & ~7L;
+        } catch (IOException ex) {
+            file.close();
+            throw ex;
+        }
+    }
+
+    /** @return - The number of columns. */
+    public int getColumnCount() {
+        return names.length;
+    }
+
+    /**
+     * @param column - The index of a column.
+     * @return - The name of the column.
+     */
+    public String getName(int column) {
+        return names[column];
+    }
+
+    /**
+     * @param column - The index of a column.
+     * @return - ColumnWriter.DOUBLE or ColumnWriter.INT.
+     */
+    public int getType(int column) {
+        return types[column];
+    }
+
+    /** @return - The names of every column, in order. */
+    public String[] getNames() {
+        return names.clone();
+    }
+
+    /**
+     *  Moves to the next block.
+     *
+     * @return - false at the end of the file.
+     * @throws IOException - Thrown when the file cannot be read or ends part
+     * way through a block.
+     */
+    public boolean nextBlock() throws IOException {
+        block = null;
+        if (position >= size) {
+            return false;
+        }
+        ByteBuffer header = read(position, ColumnWriter.BLOCK_HEADER_SIZE);
+        int count = header.getInt(0);
+        if (count < 0) {
+            throw new IOException("Corrupt block at " + position);
+        }
+        long length = ColumnWriter.BLOCK_HEADER_SIZE;
+        for (int c = 0; c < types.length; c++) {
+            offsets[c] = (int) length;
+            length += ColumnWriter.columnSize(types[c], count);
+        }
+        if (length > Integer.MAX_VALUE || position + length > size) {
+            throw new IOException("Truncated block at " + position);
+        }
+        block = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        block.order(ByteOrder.LITTLE_ENDIAN);
+        rows = count;
+        position += length;
+        return true;
+    }
+
+    /** @return - The number of rows in the current block. */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     *  Reads a column of doubles of the current block.
+     *
+     * @param column - The index of the column.
+     * @param values - Receives the values from offset, one per row.
+     * @param offset - The index of the first value.
+     */
+    public void get(int column, double[] values, int offset) {
+        check(column, ColumnWriter.DOUBLE);
+        block.position(offsets[column]);
+        block.asDoubleBuffer().get(values, offset, rows);
+    }
+
+    /**
+     *  Reads a column of ints of the current block.
+     *
+     * @param column - The index of the column.
+     * @param values - Receives the values from offset, one per row.
+     * @param offset - The index of the first value.
+     */
+    public void get(int column, int[] values, int offset) {
+        check(column, ColumnWriter.INT);
+        block.position(offsets[column]);
+        block.asIntBuffer().get(values, offset, rows);
+    }
+
+    @Override
+    public void close() throws IOException {
+        block = null;
+        file.close();
+    }
+
+    private void check(int column, int type) {
+        if (block == null) {
+            throw new IllegalStateException("No current block");
+        }
+        if (types[column] != type) {
+            throw new IllegalArgumentException("Column " + names[column]
+                    + " is not of type " + type);
+        }
+    }
+
+    /** Reads a few bytes of the file, e.g. a header. */
+    private ByteBuffer read(long at, int length) throws IOException {
+        if (at + length > size) {
+            throw new IOException("Unexpected end of file at " + at);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, at + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file at " + at);
+            }
+        }
+        return buffer;
+    }
+}
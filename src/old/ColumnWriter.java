@@ -0,0 +1,194 @@
+package old;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ *  Writes a columnar binary file of points, for bulk jobs where formatting
+ * and parsing text would cost more than the conversion (see ColumnReader and
+ * UoBConverter). Each column is a named array of doubles or ints, and the
+ * rows are written in blocks: every block is memory-mapped as it is started
+ * and each column is copied into it in one bulk put, so nothing is formatted
+ * and nothing is allocated per row.
+ *
+ * <p>File layout (little-endian, the byte order of the hardware the jobs
+ * run on, so columns are copied without swapping):</p>
+ * <pre>
+ * int  magic       "OSCL"
+ * int  version     1
+ * int  columns
+ * per column:
+ *   int  type      DOUBLE or INT
+ *   int  length    of the name in bytes
+ *   byte[length]   name (ASCII)
+ * padding to a multiple of 8 bytes
+ * per block:
+ *   int  rows
+ *   int  0
+ *   per column: the column's rows values, padded to a multiple of 8 bytes
+ * </pre>
+ * The number of blocks is not recorded, so a file may be written as a
+ * stream; it ends at the end of the last block. A block's columns are laid
+ * out as the buffers of an Arrow record batch are, so a block may be handed
+ * to Arrow with a copy rather than a conversion.
+ *
+ * @author Nathan Collins
+ */
+public final class ColumnWriter implements Closeable {
+
+    public static final int MAGIC = 0x4F53434C;
+    public static final int VERSION = 1;
+    /** A column of doubles. */
+    public static final int DOUBLE = 0;
+    /** A column of ints, e.g. ConversionStatus codes. */
+    public static final int INT = 1;
+    static final int BLOCK_HEADER_SIZE = 8;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int[] types;
+    private long position;
+    private MappedByteBuffer block;
+    private int rows;
+    private int[] offsets;
+    private int written;
+
+    /**
+     *  Creates a file, replacing any file of the same name, and writes its
+     * header.
+     *
+     * @param path - The path of the file.
+     * @param names - The names of the columns.
+     * @param types - The type of each column: DOUBLE or INT.
+     * @throws IOException - Thrown when the file cannot be written.
+     */
+    public ColumnWriter(String path, String[] names, int[] types) throws IOException {
+        if (names.length != types.length) {
+            throw new IllegalArgumentException(names.length + " names for "
+                    + types.length + " columns");
+        }
+        for (int type : types) {
+            if (type != DOUBLE && type != INT) {
+                throw new IllegalArgumentException("Invalid column type: " + type);
+            }
+        }
+        this.types = types.clone();
+        this.offsets = new int[types.length];
+        file = new RandomAccessFile(path, "rw");
+        channel = file.getChannel();
+        channel.truncate(0);
+        int size = 12;
+        byte[][] bytes = new byte[names.length][];
+        for (int c = 0; c < names.length; c++) {
+            bytes[c] = names[c].getBytes(StandardCharsets.US_ASCII);
+            size += 8 + bytes[c].length;
+        }
+        ByteBuffer header = ByteBuffer.allocate(align(size)).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(names.length);
+        for (int c = 0; c < names.length; c++) {
+            header.putInt(types[c]).putInt(bytes[c].length).put(bytes[c]);
+        }
+        header.clear();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        position = header.capacity();
+    }
+
+    /**
+     *  Starts a block of rows. Every column of the block must then be put
+     * before the next block is started or the file is closed.
+     *
+     * @param rows - The number of rows in the block.
+     * @throws IOException - Thrown when the file cannot be extended.
+     */
+    public void beginBlock(int rows) throws IOException {
+        endBlock();
+        long size = BLOCK_HEADER_SIZE;
+        for (int c = 0; c < types.length; c++) {
+            offsets[c] = (int) size;
+            size += columnSize(types[c], rows);
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Block of " + rows + " rows is too large");
+        }
+        block = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+        block.order(ByteOrder.LITTLE_ENDIAN);
+        block.putInt(0, rows);
+        block.putInt(4, 0);
+        this.rows = rows;
+        position += size;
+        written = 0;
+    }
+
+    /**
+     *  Writes a column of doubles of the current block.
+     *
+     * @param column - The index of the column.
+     * @param values - The values, from offset, one per row of the block.
+     * @param offset - The index of the first value.
+     */
+    public void put(int column, double[] values, int offset) {
+        check(column, DOUBLE);
+        block.position(offsets[column]);
+        block.asDoubleBuffer().put(values, offset, rows);
+        written++;
+    }
+
+    /**
+     *  Writes a column of ints of the current block.
+     *
+     * @param column - The index of the column.
+     * @param values - The values, from offset, one per row of the block.
+     * @param offset - The index of the first value.
+     */
+    public void put(int column, int[] values, int offset) {
+        check(column, INT);
+        block.position(offsets[column]);
+        block.asIntBuffer().put(values, offset, rows);
+        written++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            endBlock();
+        } finally {
+            block = null;
+            file.close();
+        }
+    }
+
+    private void check(int column, int type) {
+        if (block == null) {
+            throw new IllegalStateException("No block has been started");
+        }
+        if (types[column] != type) {
+            throw new IllegalArgumentException("Column " + column + " is not of type " + type);
+        }
+    }
+
+    private void endBlock() {
+        if (block != null && written < types.length) {
+            throw new IllegalStateException("Only " + written + " of " + types.length
+                    + " columns were written");
+        }
+    }
+
+    static long columnSize(int type, int rows) {
+        return align((long) rows * (type == DOUBLE ? 8 : 4));
+    }
+
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+}
@@ -0,0 +1,37 @@
+package old;
+
+/**
+ *  A ConversionListener that writes to the console: messages to System.out,
+ * errors to System.err and, if verbose, every projection term to System.out.
+ * 
+ * @author Nathan Collins
+ */
+public class ConsoleListener implements ConversionListener {
+
+    private final boolean verbose;
+
+    /**
+     * @param verbose - true to print the projection terms of every point.
+     */
+    public ConsoleListener(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    public void projected(ProjectionTerms terms) {
+        if (verbose) {
+            System.out.println(terms);
+        }
+    }
+
+    public void message(String message) {
+        System.out.println(message);
+    }
+
+    public void error(String message, Throwable cause) {
+        if (cause == null) {
+            System.err.println(message);
+        } else {
+            System.err.println(message + " " + cause);
+        }
+    }
+}
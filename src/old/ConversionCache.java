@@ -0,0 +1,374 @@
+package old;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  A bounded memoising cache in front of a GPSConverter's convertToOSGB36,
+ * for feeds that report the same positions over and over (depots, stops,
+ * devices that quantise their fixes). A hit is a hash, two array reads and a
+ * key comparison, against the projection series and eight grid lookups of a
+ * conversion.
+ *
+ * <p>Entries are keyed on the latitude and longitude and on the ellipsoid and
+ * projection. With a resolution of 0 the key is the exact coordinate, so the
+ * results are identical to the converter's. With a resolution above 0 each
+ * coordinate is first snapped to the nearest multiple of the resolution (in
+ * degrees) and the snapped point is converted, so all fixes within half a
+ * resolution share one entry; the results then differ from the converter's
+ * by up to that much, e.g. about 0.6m for 1e-5 degrees.</p>
+ *
+ * <p>The table is open-addressed over a power of two number of slots, the
+ * capacity, held in primitive arrays so that entries are neither boxed nor
+ * allocated and the garbage collector never has to trace them. Each slot is
+ * 1 << SLOT_SHIFT longs, a 64 byte cache line. A key may be stored in any of
+ * the PROBES slots following its hash; when all of them are taken, one is 
+ * evicted according to the eviction policy: EVICT_OLDEST replaces the entry
+ * added longest ago, EVICT_LEAST_USED the one hit longest ago. Recency is 
+ * tracked per miss rather than per lookup, as in TiledShiftGrid, so hits do
+ * not write to shared state unless the entry has not been hit since the 
+ * last miss.</p>
+ *
+ * <p>The cache may be used by any number of threads at once without
+ * locking. Each slot has a sequence number that is odd while the slot is 
+ * being written; a reader that sees it change treats the lookup as a miss,
+ * and a writer that finds the slot busy does not store its result. Two 
+ * threads missing on the same key at once both convert it. The counters are
+ * LongAdders and may be read at any time. Latencies are only measured when
+ * the cache is created timed, since reading the clock costs about as much 
+ * as a hit.</p>
+ *
+ * @author Nathan Collins
+ */
+public class ConversionCache {
+
+    public static final int EVICT_OLDEST = 0;
+    public static final int EVICT_LEAST_USED = 1;
+    /** The number of slots a key may be stored in. */
+    public static final int PROBES = 4;
+    // Entry field offsets, with the slot padded to a 64 byte cache line:
+    private static final int SEQUENCE = 0;
+    private static final int LATITUDE = 1;
+    private static final int LONGITUDE = 2;
+    private static final int SYSTEM = 3;
+    private static final int EASTING = 4;
+    private static final int NORTHING = 5;
+    private static final int SLOT_SHIFT = 3;
+    // The outcomes of a lookup:
+    private static final int HIT = 0;
+    private static final int MISS = 1;
+    private static final int EVICTED = 2;
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+    private final GPSConverter converter;
+    private final double resolution;
+    private final int eviction;
+    private final boolean timed;
+    // The entries, 1 << SLOT_SHIFT longs per slot (see the offsets above):
+    private final long[] table;
+    // Per slot hints, read and written without synchronization: the hash of
+    // the entry (0 if empty) and its recency stamp. A stale hint only costs
+    // a wasted comparison or a worse eviction choice.
+    private final int[] tags;
+    private final long[] stamps;
+    private final int mask;
+    // Read and written without synchronization, like the hints:
+    private long clock;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder hitNanos = new LongAdder();
+    private final LongAdder missNanos = new LongAdder();
+
+    /**
+     *  Creates an untimed cache that evicts the least recently used entry.
+     *
+     * @param converter - Converts the points that miss.
+     * @param capacity - The most entries to hold, rounded up to a power of
+     * two.
+     * @param resolution - The quantum to snap coordinates to (degrees), or 0
+     * to key on the exact coordinates.
+     */
+    public ConversionCache(GPSConverter converter, int capacity, double resolution) {
+        this(converter, capacity, resolution, EVICT_LEAST_USED, false);
+    }
+
+    /**
+     * @param converter - Converts the points that miss.
+     * @param capacity - The most entries to hold, rounded up to a power of
+     * two.
+     * @param resolution - The quantum to snap coordinates to (degrees), or 0
+     * to key on the exact coordinates.
+     * @param eviction - EVICT_OLDEST or EVICT_LEAST_USED.
+     * @param timed - Whether to measure the latency of every lookup.
+     */
+    public ConversionCache(GPSConverter converter, int capacity, double resolution,
+            int eviction, boolean timed) {
+        if (capacity < PROBES || capacity > 1 << 24) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        if (!(resolution >= 0)) {
+            throw new IllegalArgumentException("Invalid resolution: " + resolution);
+        }
+        if (eviction != EVICT_OLDEST && eviction != EVICT_LEAST_USED) {
+            throw new IllegalArgumentException("Invalid eviction policy: " + eviction);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.converter = converter;
+        this.resolution = resolution;
+        this.eviction = eviction;
+        this.timed = timed;
+        this.table = new long[size << SLOT_SHIFT];
+        this.tags = new int[size];
+        this.stamps = new long[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     *  Converts a Latitude and Longitude to an OSGB36 grid reference, from
+     * the cache if it holds the point.
+     *
+     * @see GPSConverter#convertToOSGB36(double, double, int, int)
+     */
+    public double[] convertToOSGB36(double latitude, double longitude,
+            int ellipsoid, int projection) {
+        double[] results = new double[2];
+        long start = timed ? System.nanoTime() : 0;
+        int outcome = convert(latitude, longitude, ellipsoid, projection,
+                results, 0, results, 1);
+        if (outcome == HIT) {
+            hits.increment();
+            if (timed) {
+                hitNanos.add(System.nanoTime() - start);
+            }
+        } else {
+            misses.increment();
+            if (outcome == EVICTED) {
+                evictions.increment();
+            }
+            if (timed) {
+                missNanos.add(System.nanoTime() - start);
+            }
+        }
+        return results;
+    }
+
+    /**
+     *  Converts a batch of Latitude and Longitude values to OSGB36 grid
+     * references, taking each point from the cache if it holds it. Nothing 
+     * is allocated, and the counters are updated once per batch.
+     *
+     * @see GPSConverter#convertToOSGB36(double[], double[], double[], double[], int, int, int, int)
+     */
+    public void convertToOSGB36(double[] latitudes, double[] longitudes,
+            double[] eastings, double[] northings, int offset, int length,
+            int ellipsoid, int projection) {
+        long batchMisses = 0;
+        long batchEvictions = 0;
+        long batchHitNanos = 0;
+        long batchMissNanos = 0;
+        for (int i = offset; i < offset + length; i++) {
+            long start = timed ? System.nanoTime() : 0;
+            int outcome = convert(latitudes[i], longitudes[i], ellipsoid,
+                    projection, eastings, i, northings, i);
+            if (outcome != HIT) {
+                batchMisses++;
+                if (outcome == EVICTED) {
+                    batchEvictions++;
+                }
+            }
+            if (timed) {
+                long nanos = System.nanoTime() - start;
+                if (outcome == HIT) {
+                    batchHitNanos += nanos;
+                } else {
+                    batchMissNanos += nanos;
+                }
+            }
+        }
+        hits.add(length - batchMisses);
+        misses.add(batchMisses);
+        evictions.add(batchEvictions);
+        if (timed) {
+            hitNanos.add(batchHitNanos);
+            missNanos.add(batchMissNanos);
+        }
+    }
+
+    /**
+     *  Looks a point up, converting and storing it if it is not held.
+     * 
+     * @return - HIT, MISS or EVICTED (a miss that replaced an entry).
+     */
+    private int convert(double latitude, double longitude, int ellipsoid,
+            int projection, double[] eastings, int eastAt, double[] northings,
+            int northAt) {
+        long latitudeKey;
+        long longitudeKey;
+        if (resolution > 0) {
+            latitudeKey = Math.round(latitude / resolution);
+            longitudeKey = Math.round(longitude / resolution);
+        } else {
+            latitudeKey = Double.doubleToLongBits(latitude);
+            longitudeKey = Double.doubleToLongBits(longitude);
+        }
+        int system = ellipsoid << 8 | projection;
+        int tag = hash(latitudeKey, longitudeKey, system);
+        int home = tag & mask;
+
+        for (int probe = 0; probe < PROBES; probe++) {
+            int slot = (home + probe) & mask;
+            int t = tags[slot];
+            if (t == 0) {
+                break;
+            }
+            if (t != tag) {
+                continue;
+            }
+            int base = slot << SLOT_SHIFT;
+            long sequence = (long) SLOTS.getAcquire(table, base + SEQUENCE);
+            if (table[base + LATITUDE] == latitudeKey 
+                    && table[base + LONGITUDE] == longitudeKey
+                    && table[base + SYSTEM] == system) {
+                double easting = Double.longBitsToDouble(table[base + EASTING]);
+                double northing = Double.longBitsToDouble(table[base + NORTHING]);
+                // Check that the slot was not rewritten during the reads:
+                VarHandle.acquireFence();
+                if ((sequence & 1) == 0 && table[base + SEQUENCE] == sequence) {
+                    if (eviction == EVICT_LEAST_USED) {
+                        long now = clock;
+                        if (stamps[slot] != now) {
+                            stamps[slot] = now;
+                        }
+                    }
+                    eastings[eastAt] = easting;
+                    northings[northAt] = northing;
+                    return HIT;
+                }
+            }
+        }
+
+        // Convert into the output arrays so that nothing is allocated:
+        if (resolution > 0) {
+            latitude = latitudeKey * resolution;
+            longitude = longitudeKey * resolution;
+        }
+        converter.convertToOSGB36(latitude, longitude, ellipsoid, projection,
+                eastings, eastAt, northings, northAt);
+        return store(home, tag, latitudeKey, longitudeKey, system, eastings[eastAt],
+                northings[northAt]) ? EVICTED : MISS;
+    }
+
+    /**
+     *  Stores an entry in the first free slot after its home slot, or over
+     * the entry the eviction policy picks. The tag is set once the entry is
+     * complete, so a reader never matches a half-written entry by its tag;
+     * the sequence number guards against the slot being overwritten while a
+     * reader compares it.
+     * 
+     * @return - Whether an entry was replaced.
+     */
+    private boolean store(int home, int tag, long latitudeKey, long longitudeKey,
+            int system, double easting, double northing) {
+        // Under contention increments may be lost, which only blurs recency.
+        long now = ++clock;
+        int victim = home;
+        long oldest = Long.MAX_VALUE;
+        boolean full = true;
+        for (int probe = 0; probe < PROBES; probe++) {
+            int slot = (home + probe) & mask;
+            if (tags[slot] == 0) {
+                victim = slot;
+                full = false;
+                break;
+            }
+            // Both policies use the stamp: it is only updated on hits when 
+            // evicting the least used.
+            if (stamps[slot] < oldest) {
+                oldest = stamps[slot];
+                victim = slot;
+            }
+        }
+        int base = victim << SLOT_SHIFT;
+        long sequence = (long) SLOTS.getVolatile(table, base + SEQUENCE);
+        if ((sequence & 1) != 0
+                || !SLOTS.compareAndSet(table, base + SEQUENCE, sequence, sequence + 1)) {
+            // Another thread is writing the slot: leave it to that thread.
+            return false;
+        }
+        table[base + LATITUDE] = latitudeKey;
+        table[base + LONGITUDE] = longitudeKey;
+        table[base + SYSTEM] = system;
+        table[base + EASTING] = Double.doubleToRawLongBits(easting);
+        table[base + NORTHING] = Double.doubleToRawLongBits(northing);
+        SLOTS.setRelease(table, base + SEQUENCE, sequence + 2);
+        stamps[victim] = now;
+        tags[victim] = tag;
+        return full;
+    }
+
+    /** Mixes the key into a hash (the MurmurHash3 finaliser). */
+    private static int hash(long latitude, long longitude, int system) {
+        long h = latitude * 0x9E3779B97F4A7C15L + longitude;
+        h = (h ^ system) * 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        // 0 marks an empty slot:
+        return (int) h == 0 ? 1 : (int) h;
+    }
+
+    /** Removes every entry. The counters are not reset. */
+    public void clear() {
+        for (int i = 0; i < tags.length; i++) {
+            tags[i] = 0;
+        }
+    }
+
+    /** @return - The most entries the cache holds. */
+    public int getCapacity() {
+        return tags.length;
+    }
+
+    /** @return - The number of lookups answered from the cache. */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /** @return - The number of lookups that had to convert the point. */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /** @return - The number of entries replaced to make room. */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /** @return - The fraction of lookups that hit, or 0 before any lookup. */
+    public double getHitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * @return - The mean time of a hit in nanoseconds, including reading the
+     * clock, or NaN if the cache is not timed or nothing has hit.
+     */
+    public double getAverageHitNanos() {
+        long h = hits.sum();
+        return timed && h > 0 ? (double) hitNanos.sum() / h : Double.NaN;
+    }
+
+    /**
+     * @return - The mean time of a miss (including the conversion) in
+     * nanoseconds, or NaN if the cache is not timed or nothing has missed.
+     */
+    public double getAverageMissNanos() {
+        long m = misses.sum();
+        return timed && m > 0 ? (double) missNanos.sum() / m : Double.NaN;
+    }
+}
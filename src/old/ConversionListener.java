@@ -0,0 +1,35 @@
+package old;
+
+/**
+ *  Receives diagnostics from a GPSConverter and the grid loaders. A listener
+ * is optional: when none is installed the converter does no diagnostic work 
+ * at all, so the intermediate projection terms are only calculated for a 
+ * converter that has one.
+ * 
+ * @see ConsoleListener
+ * @author Nathan Collins
+ */
+public interface ConversionListener {
+
+    /**
+     *  Called after each point is projected by gratToGrid.
+     * 
+     * @param terms - The intermediate B1 - B8 terms of the projection.
+     */
+    void projected(ProjectionTerms terms);
+
+    /**
+     *  Called with progress messages, such as when the OSTN02 table is read.
+     * 
+     * @param message - The message.
+     */
+    void message(String message);
+
+    /**
+     *  Called when a conversion or grid load fails.
+     * 
+     * @param message - A description of the failure.
+     * @param cause - The exception that caused it, or null.
+     */
+    void error(String message, Throwable cause);
+}
@@ -0,0 +1,45 @@
+package old;
+
+/**
+ *  The per-point status codes written by the batch conversions that take a
+ * status array, e.g. GPSConverter.ETRS89toOSGB36(double[], double[], 
+ * double[], double[], int[], int, int). A point that is not OK has NaN 
+ * results rather than an exception, so one bad fix does not stop a batch.
+ *
+ * @author Nathan Collins
+ */
+public final class ConversionStatus {
+
+    /** The point was converted. */
+    public static final int OK = 0;
+    /** The point is off the 700 x 1250km OSTN02 grid, or not a number. */
+    public static final int OUTSIDE_GRID = 1;
+    /** 
+     * The point is on the grid, but in a cell with a corner outside the 
+     * OSTN02 model (datum flag VerticalDatum.OUTSIDE), e.g. out at sea.
+     */
+    public static final int OUTSIDE_MODEL = 2;
+    /** The text of the point could not be parsed, see AngleParser. */
+    public static final int INVALID_INPUT = 3;
+    /** 
+     * The inverse OSTN02 shift did not settle within 
+     * GPSConverter.MAX_SHIFT_ITERATIONS, see GPSConverter.OSGB36toETRS89.
+     */
+    public static final int NOT_CONVERGED = 4;
+    private static final String[] NAMES = {
+        "OK", "Outside grid", "Outside model", "Invalid input", "Not converged" };
+
+    private ConversionStatus() {
+    }
+
+    /**
+     * @param status - A status code.
+     * @return - The name of the status, e.g. "Outside grid" for 1.
+     */
+    public static String getName(int status) {
+        if (status < 0 || status >= NAMES.length) {
+            return "Unknown status " + status;
+        }
+        return NAMES[status];
+    }
+}
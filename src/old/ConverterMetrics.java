@@ -0,0 +1,387 @@
+package old;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ *  Counts what a GPSConverter does and how long its stages take: the points
+ * converted, the points outside the OSTN02 boundary or with malformed text,
+ * grid loads, and a LatencyHistogram per stage (the projection, the OSTN02
+ * shift and I/O such as parsing and writing files). A converter records into
+ * the metrics it was created with (see GPSConverter(ShiftGrid,
+ * ConversionListener, BatchEngine, ConverterMetrics)); one instance may be
+ * shared by any number of converters and threads.
+ *
+ * <p>Recording costs nothing on the hot path when it is off: a converter
+ * without metrics only tests a null field, and one whose metrics are
+ * disabled (setEnabled(false), also settable over JMX) a volatile flag.
+ * When on, counters are LongAdders and the batch conversions time each
+ * stage once per call, so the cost is a few nanoseconds per batch. Scalar
+ * conversions are counted but not timed. bench.MetricsBenchmark measures
+ * both against a converter without metrics.</p>
+ *
+ * <p>The values may be pulled at any time through snapshot(), or published
+ * as an MBean through register().</p>
+ *
+ * @author Nathan Collins
+ */
+public class ConverterMetrics implements ConverterMetricsMBean {
+
+    /** The transverse Mercator projection stage. */
+    public static final int PROJECTION = 0;
+    /** The OSTN02 shift stage. */
+    public static final int SHIFT = 1;
+    /** Reading, parsing, formatting and writing points. */
+    public static final int IO = 2;
+    private static final String[] STAGES = { "projection", "shift", "io" };
+    private volatile boolean enabled = true;
+    private final LongAdder points = new LongAdder();
+    private final LongAdder outsideGrid = new LongAdder();
+    private final LongAdder outsideModel = new LongAdder();
+    private final LongAdder invalidInput = new LongAdder();
+    private final LongAdder gridLoads = new LongAdder();
+    private final LongAdder gridLoadNanos = new LongAdder();
+    private final LatencyHistogram[] latencies = new LatencyHistogram[STAGES.length];
+    private final LongAdder[] stagePoints = new LongAdder[STAGES.length];
+
+    public ConverterMetrics() {
+        for (int i = 0; i < STAGES.length; i++) {
+            latencies[i] = new LatencyHistogram();
+            stagePoints[i] = new LongAdder();
+        }
+    }
+
+    /** @return - Whether anything is being recorded. */
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param enabled - Whether to record. Converters check this once per
+     * call, so a call in progress may still record.
+     */
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     *  Records one call of a stage.
+     *
+     * @param stage - PROJECTION, SHIFT or IO.
+     * @param nanos - How long the call took.
+     * @param points - The number of points it processed.
+     */
+    public void record(int stage, long nanos, int points) {
+        latencies[stage].record(nanos);
+        stagePoints[stage].add(points);
+    }
+
+    /**
+     * @param count - The number of points converted to OSGB36.
+     */
+    public void countPoints(int count) {
+        points.add(count);
+    }
+
+    /**
+     * @param status - The ConversionStatus of a point that was not converted.
+     */
+    public void countStatus(int status) {
+        switch (status) {
+        case ConversionStatus.OUTSIDE_GRID:
+            outsideGrid.increment();
+            break;
+        case ConversionStatus.OUTSIDE_MODEL:
+            outsideModel.increment();
+            break;
+        case ConversionStatus.INVALID_INPUT:
+            invalidInput.increment();
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     *  Counts the failures in a range of a status array.
+     *
+     * @param status - The ConversionStatus of each point.
+     * @param offset - The index of the first point.
+     * @param length - The number of points.
+     */
+    public void countStatus(int[] status, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (status[i] != ConversionStatus.OK) {
+                countStatus(status[i]);
+            }
+        }
+    }
+
+    /**
+     * @param nanos - How long loading an OSTN02 grid took.
+     */
+    public void recordGridLoad(long nanos) {
+        gridLoads.increment();
+        gridLoadNanos.add(nanos);
+    }
+
+    /**
+     * @param stage - PROJECTION, SHIFT or IO.
+     * @return - The live histogram of the stage's call latencies.
+     */
+    public LatencyHistogram getLatency(int stage) {
+        return latencies[stage];
+    }
+
+    /** @return - The values as they are now. */
+    public Snapshot snapshot() {
+        LatencyHistogram.Snapshot[] stages = new LatencyHistogram.Snapshot[STAGES.length];
+        long[] perStage = new long[STAGES.length];
+        for (int i = 0; i < STAGES.length; i++) {
+            stages[i] = latencies[i].snapshot();
+            perStage[i] = stagePoints[i].sum();
+        }
+        return new Snapshot(points.sum(), outsideGrid.sum(), outsideModel.sum(),
+                invalidInput.sum(), gridLoads.sum(), gridLoadNanos.sum(), stages,
+                perStage);
+    }
+
+    @Override
+    public void reset() {
+        points.reset();
+        outsideGrid.reset();
+        outsideModel.reset();
+        invalidInput.reset();
+        gridLoads.reset();
+        gridLoadNanos.reset();
+        for (int i = 0; i < STAGES.length; i++) {
+            latencies[i].reset();
+            stagePoints[i].reset();
+        }
+    }
+
+    /**
+     *  Registers the metrics with the platform MBean server, under the name
+     * old:type=ConverterMetrics,name=&lt;name&gt;.
+     *
+     * @param name - Distinguishes these metrics from others in the process.
+     * @return - The name registered.
+     * @throws JMException - Thrown when the name is invalid or already taken.
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("old:type=ConverterMetrics,name="
+                + ObjectName.quote(name));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(this, objectName);
+        return objectName;
+    }
+
+    // MBean attributes:
+
+    @Override
+    public long getPointsConverted() {
+        return points.sum();
+    }
+
+    @Override
+    public long getOutsideGrid() {
+        return outsideGrid.sum();
+    }
+
+    @Override
+    public long getOutsideModel() {
+        return outsideModel.sum();
+    }
+
+    @Override
+    public long getInvalidInput() {
+        return invalidInput.sum();
+    }
+
+    @Override
+    public double getOutsideBoundaryRate() {
+        long converted = points.sum();
+        return converted == 0 ? 0
+                : (double) (outsideGrid.sum() + outsideModel.sum()) / converted;
+    }
+
+    @Override
+    public long getGridLoads() {
+        return gridLoads.sum();
+    }
+
+    @Override
+    public double getGridLoadMillis() {
+        return gridLoadNanos.sum() / 1e6;
+    }
+
+    @Override
+    public long getProjectionCount() {
+        return latencies[PROJECTION].snapshot().getCount();
+    }
+
+    @Override
+    public double getProjectionNanosPerPoint() {
+        return nanosPerPoint(PROJECTION);
+    }
+
+    @Override
+    public long getProjectionP99Nanos() {
+        return latencies[PROJECTION].snapshot().getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getProjectionMaxNanos() {
+        return latencies[PROJECTION].snapshot().getMax();
+    }
+
+    @Override
+    public long getShiftCount() {
+        return latencies[SHIFT].snapshot().getCount();
+    }
+
+    @Override
+    public double getShiftNanosPerPoint() {
+        return nanosPerPoint(SHIFT);
+    }
+
+    @Override
+    public long getShiftP99Nanos() {
+        return latencies[SHIFT].snapshot().getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getShiftMaxNanos() {
+        return latencies[SHIFT].snapshot().getMax();
+    }
+
+    @Override
+    public long getIoCount() {
+        return latencies[IO].snapshot().getCount();
+    }
+
+    @Override
+    public double getIoNanosPerPoint() {
+        return nanosPerPoint(IO);
+    }
+
+    @Override
+    public long getIoP99Nanos() {
+        return latencies[IO].snapshot().getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getIoMaxNanos() {
+        return latencies[IO].snapshot().getMax();
+    }
+
+    private double nanosPerPoint(int stage) {
+        long processed = stagePoints[stage].sum();
+        return processed == 0 ? 0
+                : (double) latencies[stage].snapshot().getTotal() / processed;
+    }
+
+    /**
+     *  The values of a ConverterMetrics at one moment.
+     */
+    public static final class Snapshot {
+
+        private final long points;
+        private final long outsideGrid;
+        private final long outsideModel;
+        private final long invalidInput;
+        private final long gridLoads;
+        private final long gridLoadNanos;
+        private final LatencyHistogram.Snapshot[] stages;
+        private final long[] stagePoints;
+
+        Snapshot(long points, long outsideGrid, long outsideModel, long invalidInput,
+                long gridLoads, long gridLoadNanos, LatencyHistogram.Snapshot[] stages,
+                long[] stagePoints) {
+            this.points = points;
+            this.outsideGrid = outsideGrid;
+            this.outsideModel = outsideModel;
+            this.invalidInput = invalidInput;
+            this.gridLoads = gridLoads;
+            this.gridLoadNanos = gridLoadNanos;
+            this.stages = stages;
+            this.stagePoints = stagePoints;
+        }
+
+        /** @return - The points converted to OSGB36, including failures. */
+        public long getPoints() {
+            return points;
+        }
+
+        public long getOutsideGrid() {
+            return outsideGrid;
+        }
+
+        public long getOutsideModel() {
+            return outsideModel;
+        }
+
+        public long getInvalidInput() {
+            return invalidInput;
+        }
+
+        /**
+         * @return - The fraction of the points converted that were outside
+         * the grid or the model, or 0 if there were none.
+         */
+        public double getOutsideBoundaryRate() {
+            return points == 0 ? 0 : (double) (outsideGrid + outsideModel) / points;
+        }
+
+        public long getGridLoads() {
+            return gridLoads;
+        }
+
+        /** @return - The total time spent loading grids. */
+        public long getGridLoadNanos() {
+            return gridLoadNanos;
+        }
+
+        /**
+         * @param stage - PROJECTION, SHIFT or IO.
+         * @return - The latencies of the stage's calls.
+         */
+        public LatencyHistogram.Snapshot getLatency(int stage) {
+            return stages[stage];
+        }
+
+        /**
+         * @param stage - PROJECTION, SHIFT or IO.
+         * @return - The stage's total time divided by the points it processed,
+         * or 0 if it processed none.
+         */
+        public double getNanosPerPoint(int stage) {
+            return stagePoints[stage] == 0 ? 0
+                    : (double) stages[stage].getTotal() / stagePoints[stage];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("points=").append(points)
+                    .append(" outsideGrid=").append(outsideGrid)
+                    .append(" outsideModel=").append(outsideModel)
+                    .append(" invalidInput=").append(invalidInput)
+                    .append(" gridLoads=").append(gridLoads)
+                    .append(String.format(" gridLoadMillis=%.1f", gridLoadNanos / 1e6));
+            for (int i = 0; i < stages.length; i++) {
+                if (stages[i].getCount() != 0) {
+                    sb.append(String.format("%n  %s: %.1fns/point, %s", STAGES[i],
+                            getNanosPerPoint(i), stages[i]));
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package old;
+
+/**
+ *  The JMX view of a ConverterMetrics (see ConverterMetrics.register).
+ * Latencies are per call of a stage, in nanoseconds; NanosPerPoint divides a
+ * stage's total time by the points it processed.
+ *
+ * @author Nathan Collins
+ */
+public interface ConverterMetricsMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getPointsConverted();
+
+    long getOutsideGrid();
+
+    long getOutsideModel();
+
+    long getInvalidInput();
+
+    double getOutsideBoundaryRate();
+
+    long getGridLoads();
+
+    double getGridLoadMillis();
+
+    long getProjectionCount();
+
+    double getProjectionNanosPerPoint();
+
+    long getProjectionP99Nanos();
+
+    long getProjectionMaxNanos();
+
+    long getShiftCount();
+
+    double getShiftNanosPerPoint();
+
+    long getShiftP99Nanos();
+
+    long getShiftMaxNanos();
+
+    long getIoCount();
+
+    double getIoNanosPerPoint();
+
+    long getIoP99Nanos();
+
+    long getIoMaxNanos();
+
+    /** Clears every counter and histogram. */
+    void reset();
+}
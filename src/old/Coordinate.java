@@ -0,0 +1,26 @@
+package old;
+
+/**
+ *  A latitude and longitude fed to a StreamingConverter, tagged with an id 
+ * chosen by the caller (e.g. a message offset) so that the converted 
+ * GridReference can be matched back to it.
+ * 
+ * @author Nathan Collins
+ */
+public final class Coordinate {
+
+    public final long id;
+    public final double latitude;
+    public final double longitude;
+
+    public Coordinate(long id, double latitude, double longitude) {
+        this.id = id;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    @Override
+    public String toString() {
+        return id + ": " + latitude + "," + longitude;
+    }
+}
@@ -0,0 +1,50 @@
+package old;
+
+/**
+ *  A coordinate reference system, defined by the steps that take ETRS89 
+ * latitudes and longitudes to its coordinates: e.g. the National Grid 
+ * projection and then the OSTN02 shift for OSGB36, or a Helmert 
+ * transformation to the local datum and then a projection for the Irish 
+ * Grid. ETRS89 itself has no steps. See CrsRegistry for the systems that 
+ * are built in, and for adding more.
+ * 
+ * <p>Instances are immutable and may be shared between threads.</p>
+ *
+ * @author Nathan Collins
+ */
+public final class CoordinateSystem {
+
+    private final String code;
+    private final String name;
+    private final Transformation[] steps;
+
+    /**
+     * @param code - The code the system is registered under, e.g. 
+     * "EPSG:27700".
+     * @param name - A readable name.
+     * @param steps - The steps from ETRS89 latitude and longitude, in order.
+     */
+    public CoordinateSystem(String code, String name, Transformation... steps) {
+        this.code = code;
+        this.name = name;
+        this.steps = steps.clone();
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** @return - The steps from ETRS89 latitude and longitude, in order. */
+    Transformation[] getSteps() {
+        return steps;
+    }
+
+    @Override
+    public String toString() {
+        return code + " (" + name + ")";
+    }
+}
@@ -0,0 +1,145 @@
+package old;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ *  A registry of coordinate reference systems that builds the conversion
+ * between any two of them (see Pipeline). Each pipeline is built the first
+ * time it is asked for and then cached, so asking again costs one map 
+ * lookup. New systems are added with register, as a list of ellipsoids, 
+ * projections and transformations (see CoordinateSystem), with no changes
+ * to GPSConverter.
+ * 
+ * <p>Built in are ETRS89 (latitude and longitude), OSGB36 National Grid 
+ * (through OSTN02), Irish Transverse Mercator, ETRS89 / UTM zones 29 - 31,
+ * the Irish Grid and ETRS89-LAEA. The National Grid and ITM pipelines use
+ * the same precomputed projections as GPSConverter, so they give identical
+ * results. The Irish Grid is reached by the published seven parameter 
+ * Helmert transformation between ETRS89 and TM75 (good to about a meter); a 
+ * system using a shift grid for it can be registered once the grid is 
+ * available.</p>
+ * 
+ * <p>The registry may be used by any number of threads at once.</p>
+ *
+ * @author Nathan Collins
+ */
+public class CrsRegistry {
+
+    public static final String ETRS89 = "EPSG:4258";
+    public static final String OSGB36_NATIONAL_GRID = "EPSG:27700";
+    public static final String ITM = "EPSG:2157";
+    public static final String UTM_29 = "EPSG:25829";
+    public static final String UTM_30 = "EPSG:25830";
+    public static final String UTM_31 = "EPSG:25831";
+    public static final String IRISH_GRID = "EPSG:29903";
+    public static final String ETRS89_LAEA = "EPSG:3035";
+    private final ConcurrentMap<String, CoordinateSystem> systems =
+            new ConcurrentHashMap<String, CoordinateSystem>();
+    // Pipelines by source and then target code, so a lookup allocates nothing:
+    private final ConcurrentMap<String, ConcurrentMap<String, Pipeline>> pipelines =
+            new ConcurrentHashMap<String, ConcurrentMap<String, Pipeline>>();
+
+    /**
+     *  Creates a registry holding the built in systems.
+     * 
+     * @param converter - The converter whose OSTN02 grid is used for OSGB36.
+     */
+    public CrsRegistry(GPSConverter converter) {
+        register(new CoordinateSystem(ETRS89, "ETRS89"));
+        register(new CoordinateSystem(OSGB36_NATIONAL_GRID, "OSGB36 / British National Grid",
+                GPSConverter.kernel(GPSConverter.GRS80, GPSConverter.NATIONAL_GRID),
+                new OSTN02Shift(converter)));
+        register(new CoordinateSystem(ITM, "IRENET95 / Irish Transverse Mercator",
+                GPSConverter.kernel(GPSConverter.GRS80, GPSConverter.ITM)));
+        for (int zone = 29; zone <= 31; zone++) {
+            register(new CoordinateSystem("EPSG:258" + zone, "ETRS89 / UTM zone " + zone + "N",
+                    new TransverseMercator(Ellipsoid.GRS80, 0.9996, 0, 6 * zone - 183,
+                            500000, 0)));
+        }
+        register(new CoordinateSystem(IRISH_GRID, "TM75 / Irish Grid",
+                new HelmertTransformation(Ellipsoid.GRS80, Ellipsoid.AIRY_MODIFIED,
+                        -482.5, 130.6, -564.6, 1.042, 0.214, 0.631, -8.15),
+                new TransverseMercator(Ellipsoid.AIRY_MODIFIED, 1.000035, 53.5, -8,
+                        200000, 250000)));
+        register(new CoordinateSystem(ETRS89_LAEA, "ETRS89-extended / LAEA Europe",
+                new LambertAzimuthalEqualArea(Ellipsoid.GRS80, 52, 10, 4321000, 3210000)));
+    }
+
+    /**
+     *  Returns the registry over the default converter (see 
+     * GPSConverter.getDefault), creating it the first time this is called.
+     * 
+     * @return - The shared registry.
+     */
+    public static CrsRegistry getDefault() {
+        return DefaultRegistry.INSTANCE;
+    }
+
+    /**
+     *  Holds the default registry, so that it is created on first use.
+     */
+    private static class DefaultRegistry {
+
+        static final CrsRegistry INSTANCE = new CrsRegistry(GPSConverter.getDefault());
+    }
+
+    /**
+     *  Adds a coordinate system.
+     * 
+     * @param system - The system.
+     * @throws IllegalArgumentException - Thrown when a system is already 
+     * registered under its code.
+     */
+    public void register(CoordinateSystem system) {
+        if (systems.putIfAbsent(system.getCode(), system) != null) {
+            throw new IllegalArgumentException("Coordinate system already registered: "
+                    + system.getCode());
+        }
+    }
+
+    /**
+     * @param code - The code of a system, e.g. "EPSG:27700".
+     * @return - The system.
+     * @throws IllegalArgumentException - Thrown when no system is registered
+     * under the code.
+     */
+    public CoordinateSystem get(String code) {
+        CoordinateSystem system = systems.get(code);
+        if (system == null) {
+            throw new IllegalArgumentException("Unknown coordinate system: " + code);
+        }
+        return system;
+    }
+
+    /**
+     *  Returns the conversion from one system to another, building it the 
+     * first time it is asked for.
+     * 
+     * @param source - The code of the system to convert from.
+     * @param target - The code of the system to convert to.
+     * @return - The pipeline.
+     * @throws IllegalArgumentException - Thrown when either system is not 
+     * registered.
+     */
+    public Pipeline getPipeline(String source, String target) {
+        ConcurrentMap<String, Pipeline> targets = pipelines.get(source);
+        if (targets == null) {
+            get(source);
+            targets = new ConcurrentHashMap<String, Pipeline>();
+            ConcurrentMap<String, Pipeline> existing = pipelines.putIfAbsent(source, targets);
+            if (existing != null) {
+                targets = existing;
+            }
+        }
+        Pipeline pipeline = targets.get(target);
+        if (pipeline == null) {
+            pipeline = new Pipeline(get(source), get(target));
+            Pipeline existing = targets.putIfAbsent(target, pipeline);
+            if (existing != null) {
+                pipeline = existing;
+            }
+        }
+        return pipeline;
+    }
+}
@@ -0,0 +1,304 @@
+package old;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ *  Reads comma separated values a row at a time directly from bytes, without
+ * creating a String per row or field. Fields are located as byte ranges of
+ * the underlying buffer and parsed in place, so reading a file of numbers
+ * allocates nothing per row.
+ *
+ * <p>The input is either a ByteBuffer holding the whole of the data (e.g. a
+ * memory-mapped file) or a channel that is read through an internal buffer.
+ * Rows end with "\n" or "\r\n". Quoting is not supported: the UoB Mapper and
+ * OSTN02 files contain only plain fields.</p>
+ *
+ * @author Nathan Collins
+ */
+public final class CsvReader {
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+        1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+    private final ReadableByteChannel channel;
+    private ByteBuffer buffer;
+    private boolean eof;
+    private int next;
+    private int rowStart;
+    private int rowEnd;
+    private int fields;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+
+    /**
+     *  Reads the rows between the buffer's position and limit.
+     *
+     * @param buffer - The data to read.
+     */
+    public CsvReader(ByteBuffer buffer) {
+        this.channel = null;
+        this.buffer = buffer;
+        this.next = buffer.position();
+        this.eof = true;
+    }
+
+    /**
+     *  Reads the rows of a channel through a buffer of the given size, which
+     * grows if a single row does not fit.
+     *
+     * @param channel - The channel to read.
+     * @param bufferSize - The initial buffer size in bytes.
+     */
+    public CsvReader(ReadableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.buffer.limit(0);
+        this.next = 0;
+    }
+
+    /**
+     *  Moves to the next row.
+     *
+     * @return - false at the end of the data.
+     * @throws IOException - Thrown when the channel cannot be read.
+     */
+    public boolean nextRow() throws IOException {
+        int end = findNewLine(next);
+        while (end < 0) {
+            if (eof) {
+                if (next >= buffer.limit()) {
+                    return false;
+                }
+                end = buffer.limit();
+                break;
+            }
+            int searched = buffer.limit() - next;
+            fill();
+            end = findNewLine(next + searched);
+        }
+        rowStart = next;
+        next = end + 1;
+        if (end > rowStart && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        rowEnd = end;
+        split();
+        return true;
+    }
+
+    /** @return - The number of fields in the current row. */
+    public int getFieldCount() {
+        return fields;
+    }
+
+    /**
+     *  Parses a field of the current row as a double. The result is always
+     * identical to Double.parseDouble of the same text.
+     *
+     * @param field - The field index.
+     * @return - The value of the field.
+     * @throws NumberFormatException - Thrown when Double.parseDouble would
+     *         reject the text.
+     */
+    public double getDouble(int field) {
+        checkField(field);
+        return parseDouble(buffer, starts[field], ends[field]);
+    }
+
+    /**
+     *  Parses a field of the current row as an angle in degrees, minutes and
+     * seconds or decimal degrees (see AngleParser).
+     *
+     * @param field - The field index.
+     * @param axis - AngleParser.ANGLE, LATITUDE or LONGITUDE.
+     * @return - The angle in decimal degrees, or NaN if the field is 
+     * malformed.
+     */
+    public double getAngle(int field, int axis) {
+        checkField(field);
+        return AngleParser.parse(buffer, starts[field], ends[field], axis);
+    }
+
+    /**
+     * @param field - The field index.
+     * @return - The text of a field of the current row. This allocates, so is
+     * intended for headers and error messages.
+     */
+    public String getField(int field) {
+        checkField(field);
+        return text(starts[field], ends[field]);
+    }
+
+    /**
+     * @return - The text of the current row, without its line ending. This
+     * allocates, so is intended for headers and error messages.
+     */
+    public String getRow() {
+        return text(rowStart, rowEnd);
+    }
+
+    /**
+     *  Writes the current row, without its line ending, to a CsvWriter.
+     *
+     * @param out - The writer.
+     */
+    public void copyRow(CsvWriter out) throws IOException {
+        out.write(buffer, rowStart, rowEnd);
+    }
+
+    /**
+     *  Parses a decimal number from bytes of a buffer without allocating.
+     * Numbers with up to 18 significant digits and a power of ten of 22 or
+     * less - all coordinates and OSTN02 values - are converted with a single
+     * correctly rounded multiplication or division, which gives exactly the
+     * double that Double.parseDouble would. Anything else, e.g. an exponent,
+     * "NaN" or a "d" suffix, is handed to Double.parseDouble, so the same 
+     * text is accepted. Leading and trailing ASCII spaces and control 
+     * characters are ignored, as String.trim() ignores them.
+     *
+     * @param buffer - The buffer holding the text.
+     * @param start - The index of the first byte.
+     * @param end - The index after the last byte.
+     * @return - The value.
+     * @throws NumberFormatException - Thrown when Double.parseDouble would
+     *         reject the text.
+     */
+    public static double parseDouble(ByteBuffer buffer, int start, int end) {
+        while (start < end && (buffer.get(start) & 0xff) <= ' ') {
+            start++;
+        }
+        while (end > start && (buffer.get(end - 1) & 0xff) <= ' ') {
+            end--;
+        }
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+        boolean any = false;
+        for (; i < end; i++) {
+            int b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                any = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                    if (point) {
+                        scale--;
+                    }
+                } else if (!point) {
+                    // Too many digits for the fast path.
+                    return slowParse(buffer, start, end);
+                } else if (b != '0') {
+                    return slowParse(buffer, start, end);
+                }
+            } else if (b == '.' && !point) {
+                point = true;
+            } else {
+                // An exponent, or text only Double.parseDouble can judge:
+                return slowParse(buffer, start, end);
+            }
+        }
+        if (!any) {
+            return slowParse(buffer, start, end);
+        }
+        double value;
+        if (scale == 0) {
+            value = mantissa;
+        } else if (-scale < POWERS_OF_TEN.length && mantissa < (1L << 53)) {
+            value = mantissa / POWERS_OF_TEN[-scale];
+        } else {
+            return slowParse(buffer, start, end);
+        }
+        return negative ? -value : value;
+    }
+
+    private static double slowParse(ByteBuffer buffer, int start, int end) {
+        return Double.parseDouble(text(buffer, start, end));
+    }
+
+    private void checkField(int field) {
+        if (field < 0 || field >= fields) {
+            throw new IndexOutOfBoundsException("Row has " + fields
+                    + " fields, no field " + field + ": " + getRow());
+        }
+    }
+
+    private int findNewLine(int from) {
+        int limit = buffer.limit();
+        for (int i = from; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void split() {
+        fields = 0;
+        int start = rowStart;
+        for (int i = rowStart; i <= rowEnd; i++) {
+            if (i == rowEnd || buffer.get(i) == ',') {
+                if (fields == starts.length) {
+                    int[] s = new int[fields * 2];
+                    int[] e = new int[fields * 2];
+                    System.arraycopy(starts, 0, s, 0, fields);
+                    System.arraycopy(ends, 0, e, 0, fields);
+                    starts = s;
+                    ends = e;
+                }
+                starts[fields] = start;
+                ends[fields] = i;
+                fields++;
+                start = i + 1;
+            }
+        }
+    }
+
+    /**
+     *  Moves the unread bytes to the start of the buffer and reads more after
+     * them, growing the buffer if it is full.
+     */
+    private void fill() throws IOException {
+        int remaining = buffer.limit() - next;
+        if (remaining == buffer.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+            buffer.position(next);
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            buffer.position(next);
+            buffer.compact();
+        }
+        next = 0;
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                eof = true;
+                break;
+            }
+        }
+        buffer.flip();
+    }
+
+    private String text(int start, int end) {
+        return text(buffer, start, end);
+    }
+
+    private static String text(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
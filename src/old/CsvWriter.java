@@ -0,0 +1,198 @@
+package old;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ *  Writes comma separated values straight into a byte buffer, formatting
+ * numbers in place rather than through Strings. Output is flushed to a
+ * channel when the buffer fills, or, for a writer without a channel, the
+ * buffer grows and its contents are taken with toByteArray (used to build
+ * converted blocks in memory).
+ *
+ * @author Nathan Collins
+ */
+public final class CsvWriter implements Closeable {
+
+    private static final long[] POWERS_OF_TEN = {
+        1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L };
+    private final WritableByteChannel channel;
+    private byte[] bytes;
+    private int count;
+
+    /**
+     * @param channel - The channel to write to.
+     * @param bufferSize - The buffer size in bytes.
+     */
+    public CsvWriter(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.bytes = new byte[bufferSize];
+    }
+
+    /**
+     *  Creates a writer that collects its output in memory.
+     *
+     * @param initialSize - The initial buffer size in bytes.
+     */
+    public CsvWriter(int initialSize) {
+        this(null, initialSize);
+    }
+
+    /**
+     *  Writes bytes from a buffer.
+     *
+     * @param buffer - The buffer holding the bytes.
+     * @param start - The index of the first byte.
+     * @param end - The index after the last byte.
+     */
+    public void write(ByteBuffer buffer, int start, int end) throws IOException {
+        int length = end - start;
+        ensure(length);
+        if (buffer.hasArray()) {
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + start, bytes,
+                    count, length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                bytes[count + i] = buffer.get(start + i);
+            }
+        }
+        count += length;
+    }
+
+    /**
+     *  Writes bytes from an array.
+     */
+    public void write(byte[] b, int offset, int length) throws IOException {
+        ensure(length);
+        System.arraycopy(b, offset, bytes, count, length);
+        count += length;
+    }
+
+    /**
+     *  Writes a String, which must be ASCII (e.g. a header row).
+     */
+    public void write(String s) throws IOException {
+        ensure(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            bytes[count++] = (byte) s.charAt(i);
+        }
+    }
+
+    /**
+     *  Writes a single character, such as ','.
+     */
+    public void write(char c) throws IOException {
+        ensure(1);
+        bytes[count++] = (byte) c;
+    }
+
+    /**
+     *  Ends the current row with "\n".
+     */
+    public void newLine() throws IOException {
+        write('\n');
+    }
+
+    /**
+     *  Writes a number rounded to a fixed number of decimal places, e.g.
+     * 386306.384 with 3 places (millimeters). Values that do not fit a long
+     * once scaled, and NaN and infinities, are written by Double.toString.
+     *
+     * @param value - The value to write.
+     * @param decimals - The number of decimal places, 0 to 8.
+     */
+    public void writeFixed(double value, int decimals) throws IOException {
+        double scaled = Math.abs(value) * POWERS_OF_TEN[decimals];
+        if (!(scaled < 9e18)) {
+            write(Double.toString(value));
+            return;
+        }
+        long units = Math.round(scaled);
+        ensure(21 + decimals);
+        if (value < 0 && units != 0) {
+            bytes[count++] = '-';
+        }
+        long whole = units / POWERS_OF_TEN[decimals];
+        long fraction = units - whole * POWERS_OF_TEN[decimals];
+        writeDigits(whole);
+        if (decimals > 0) {
+            bytes[count++] = '.';
+            int end = count + decimals;
+            for (int i = end - 1; i >= count; i--) {
+                bytes[i] = (byte) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            count = end;
+        }
+    }
+
+    /**
+     * @return - The number of bytes written and not yet flushed.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return - A copy of the bytes written and not yet flushed.
+     */
+    public byte[] toByteArray() {
+        byte[] copy = new byte[count];
+        System.arraycopy(bytes, 0, copy, 0, count);
+        return copy;
+    }
+
+    /**
+     *  Writes the buffered bytes to the channel.
+     */
+    public void flush() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        ByteBuffer out = ByteBuffer.wrap(bytes, 0, count);
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        count = 0;
+    }
+
+    /**
+     *  Flushes the buffer and closes the channel.
+     */
+    public void close() throws IOException {
+        flush();
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private void writeDigits(long value) {
+        int length = 1;
+        for (long v = value / 10; v != 0; v /= 10) {
+            length++;
+        }
+        int end = count + length;
+        for (int i = end - 1; i >= count; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        count = end;
+    }
+
+    private void ensure(int length) throws IOException {
+        if (count + length <= bytes.length) {
+            return;
+        }
+        if (channel != null) {
+            flush();
+            if (length <= bytes.length) {
+                return;
+            }
+        }
+        byte[] larger = new byte[Math.max(bytes.length * 2, count + length)];
+        System.arraycopy(bytes, 0, larger, 0, count);
+        bytes = larger;
+    }
+}
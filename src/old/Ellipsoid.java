@@ -0,0 +1,58 @@
+package old;
+
+/**
+ *  A reference ellipsoid, given by its semi-major and semi-minor axes.
+ * Instances are immutable and may be shared between threads.
+ *
+ * @author Nathan Collins
+ */
+public final class Ellipsoid {
+
+    /** Airy 1830, the ellipsoid of OSGB36. */
+    public static final Ellipsoid AIRY_1830 = new Ellipsoid("Airy 1830",
+            6377563.396, 6356256.910);
+    /** Airy Modified 1849, the ellipsoid of the Irish Grid (TM75). */
+    public static final Ellipsoid AIRY_MODIFIED = new Ellipsoid("Airy Modified 1849",
+            6377340.189, 6356034.447);
+    /** GRS80, the ellipsoid of ETRS89. */
+    public static final Ellipsoid GRS80 = new Ellipsoid("GRS80",
+            6378137.000, 6356752.3141);
+    private final String name;
+    private final double a;
+    private final double b;
+
+    /**
+     * @param name - The name of the ellipsoid.
+     * @param a - Semi-major axis a (meters)
+     * @param b - Semi-minor axis b (meters)
+     */
+    public Ellipsoid(String name, double a, double b) {
+        this.name = name;
+        this.a = a;
+        this.b = b;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** @return - The semi-major axis (meters). */
+    public double getA() {
+        return a;
+    }
+
+    /** @return - The semi-minor axis (meters). */
+    public double getB() {
+        return b;
+    }
+
+    /** @return - The square of the first eccentricity. */
+    public double getE2() {
+        return (a * a - b * b) / (a * a);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
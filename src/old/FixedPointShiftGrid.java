@@ -0,0 +1,155 @@
+package old;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ *  A shift grid held on the heap in fixed point: the shifts and geoid
+ * heights are whole millimeters in flat int arrays and the datum flags are
+ * bytes, so the whole grid takes about 11MB where a TableShiftGrid, which
+ * also keeps the record number, Easting and Northing of every node as
+ * doubles, takes over 60MB. The OSTN02 values are published to the
+ * millimeter, so nothing is lost.
+ *
+ * <p>The east and north shifts of a node are stored next to each other, so
+ * the four corners of a cell are read from two cache lines, and the shift is
+ * interpolated from the millimeter values directly (see shift). The results
+ * agree with the double grid to well under a micrometer.</p>
+ *
+ * <p>The arrays are never written once the grid is built, so it may be
+ * read by any number of threads at once.</p>
+ *
+ * @author Nathan Collins
+ */
+public class FixedPointShiftGrid extends ShiftGrid {
+
+    private static final double SCALE = MappedShiftGrid.SCALE;
+    /** East and north shift of node i at 2i and 2i + 1, in millimeters. */
+    private final int[] shifts;
+    /** Geoid height of each node, in millimeters. */
+    private final int[] geoid;
+    private final byte[] flags;
+    /** The validity map read with the grid, or null to build it. */
+    private final ValidityMap stored;
+
+    private FixedPointShiftGrid(int[] shifts, int[] geoid, byte[] flags,
+            ValidityMap stored) {
+        this.shifts = shifts;
+        this.geoid = geoid;
+        this.flags = flags;
+        this.stored = stored;
+    }
+
+    @Override
+    public double getEastShift(int x, int y) {
+        return shifts[(x + y * COLUMNS) << 1] / SCALE;
+    }
+
+    @Override
+    public double getNorthShift(int x, int y) {
+        return shifts[((x + y * COLUMNS) << 1) + 1] / SCALE;
+    }
+
+    @Override
+    public double getGeoidShift(int x, int y) {
+        return geoid[x + y * COLUMNS] / SCALE;
+    }
+
+    @Override
+    public int getDatumFlag(int x, int y) {
+        return flags[x + y * COLUMNS];
+    }
+
+    @Override
+    protected void shift(double easting, double northing,
+            double[] eastings, int eastAt, double[] northings, int northAt) {
+        int eastIndex = (int) easting / 1000;
+        int northIndex = (int) northing / 1000;
+        int i = (eastIndex + northIndex * COLUMNS) << 1;
+        int j = i + (COLUMNS << 1);
+
+        double t = (easting - eastIndex * SPACING) / 1000;
+        double u = (northing - northIndex * SPACING) / 1000;
+
+        double se = (1 - t) * (1 - u) * shifts[i] + t * (1 - u) * shifts[i + 2]
+                + t * u * shifts[j + 2] + (1 - t) * u * shifts[j];
+        double sn = (1 - t) * (1 - u) * shifts[i + 1] + t * (1 - u) * shifts[i + 3]
+                + t * u * shifts[j + 3] + (1 - t) * u * shifts[j + 1];
+
+        eastings[eastAt] = easting + se / SCALE;
+        northings[northAt] = northing + sn / SCALE;
+    }
+
+    /**
+     *  Converts another grid to fixed point, rounding every shift and geoid
+     * height to the nearest millimeter.
+     *
+     * @param grid - The grid to convert, e.g. a TableShiftGrid.
+     * @return - The fixed-point grid.
+     */
+    public static FixedPointShiftGrid of(ShiftGrid grid) {
+        int[] shifts = new int[RECORDS << 1];
+        int[] geoid = new int[RECORDS];
+        byte[] flags = new byte[RECORDS];
+        for (int y = 0; y < ROWS; y++) {
+            for (int x = 0; x < COLUMNS; x++) {
+                int i = x + y * COLUMNS;
+                shifts[i << 1] = (int) Math.round(grid.getEastShift(x, y) * SCALE);
+                shifts[(i << 1) + 1] = (int) Math.round(grid.getNorthShift(x, y) * SCALE);
+                geoid[i] = (int) Math.round(grid.getGeoidShift(x, y) * SCALE);
+                flags[i] = (byte) grid.getDatumFlag(x, y);
+            }
+        }
+        return new FixedPointShiftGrid(shifts, geoid, flags, null);
+    }
+
+    @Override
+    protected ValidityMap createValidity() {
+        return stored != null ? stored : super.createValidity();
+    }
+
+    /**
+     *  Reads a compiled grid file (see util.CompileGrid) onto the heap.
+     * Unlike MappedShiftGrid.open this copies the whole file, but the grid
+     * then no longer depends on the file or on the page cache. As every byte
+     * is read anyway, the file is checked against its checksum.
+     *
+     * @param path - The path of the compiled grid file.
+     * @return - The grid.
+     * @throws IOException - Thrown when the file cannot be read, is not a
+     * compiled OSTN02 grid or does not match its checksum.
+     */
+    public static FixedPointShiftGrid read(String path) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            MappedShiftGrid.checkHeader(channel, path);
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            MappedShiftGrid.verify(buffer, path);
+            int[] east = new int[RECORDS];
+            int[] north = new int[RECORDS];
+            int[] geoid = new int[RECORDS];
+            int[] flags = new int[RECORDS];
+            int[][] planes = { east, north, geoid, flags };
+            for (int plane = 0; plane < MappedShiftGrid.PLANES; plane++) {
+                buffer.position((int) MappedShiftGrid.planeOffset(plane));
+                IntBuffer ints = buffer.asIntBuffer();
+                ints.get(planes[plane]);
+            }
+            int[] shifts = new int[RECORDS << 1];
+            byte[] bytes = new byte[RECORDS];
+            for (int i = 0; i < RECORDS; i++) {
+                shifts[i << 1] = east[i];
+                shifts[(i << 1) + 1] = north[i];
+                bytes[i] = (byte) flags[i];
+            }
+            return new FixedPointShiftGrid(shifts, geoid, bytes,
+                    MappedShiftGrid.readValidity(channel));
+        } finally {
+            file.close();
+        }
+    }
+}
@@ -1,10 +1,8 @@
 package old;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.DoubleBuffer;
 
 /**
  *  This class is designed to convert Latitude and Longitude values on the GRS80
@@ -14,53 +12,84 @@ import java.io.IOException;
  * found at: 
  * http://www.ordnancesurvey.co.uk/oswebsite/gps/osnetfreeservices/furtherinfo/questdeveloper.html
  * 
+ * <p>Concurrency: a GPSConverter is immutable and every method may be called
+ * from any number of threads at once without synchronization. No state is 
+ * kept between calls, the ellipsoid and projection constants are static and
+ * precomputed once, and the ShiftGrid implementations only read their data 
+ * (TiledShiftGrid synchronizes its tile loads internally). A single converter
+ * and grid should therefore be shared by all worker threads, e.g. through 
+ * getDefault(). The batch methods are safe to call concurrently as long as
+ * callers do not write to the same output ranges. A ConversionListener is 
+ * called on the converting thread and must be thread-safe if the converter
+ * is shared.</p>
+ * 
  * @author Nathan Collins
  */
 public class GPSConverter {
 
-    private BufferedReader in;
-    private final String src = "." + File.separator + "OSTN02" + File.separator + "OSTN02_OSGM02_GB.txt";
-    private int fileSize = 876951;
-    private int columns = 7;
-    private double[][] OSTN02Data;
+    // Built without string concatenation, whose first use costs a cold JVM
+    // tens of milliseconds:
+    private static final String src = new File(new File(".", "OSTN02"), "OSTN02_OSGM02_GB.txt").getPath();
+    private static final String bin = new File(new File(".", "OSTN02"), "OSTN02_OSGM02_GB.bin").getPath();
+    private final ShiftGrid grid;
+    private final ConversionListener listener;
+    private final BatchEngine engine;
+    private final ConverterMetrics metrics;
+    /** The most iterations OSGB36toETRS89 makes to invert the OSTN02 shift. */
+    public static final int MAX_SHIFT_ITERATIONS = 10;
+    private static final double SHIFT_TOLERANCE = 0.0001; // meters
+    /** The smallest batch that ETRS89toOSGB36Sorted sorts. */
+    public static final int SORT_THRESHOLD = 1024;
     // Conversion constants:
-    public final int AIRY1820 = 0;
-    public final int GRS80 = 1;
-    public final int NATIONAL_GRID = 0;
-    public final int ITM = 1;
-    // Ellipsoid constants:
-    private double[][] ELLIPSOID;
-    // - AIRY830:
-    private final double AIRY_a = 6377563.396;  //Semi-major axis a (meters)
-    private final double AIRY_b = 6356256.910;  //Semi-minor axis b (meters)
-    // - GRS80:
-    private final double GRS80_a = 6378137.000; //Semi-major axis a (meters)
-    private final double GRS80_b = 6356752.3141;//Semi-minor axis b (meters)
+    public static final int AIRY1820 = 0;
+    public static final int GRS80 = 1;
+    public static final int NATIONAL_GRID = 0;
+    public static final int ITM = 1;
+    // Grid layouts (see loadGrid):
+    /** One entry per node: the smallest grid. */
+    public static final int NODE_LAYOUT = 0;
+    /** One block of coefficients per cell: the fastest shift (see CellShiftGrid). */
+    public static final int CELL_LAYOUT = 1;
+    // Projection tiers (see gratToGrid):
+    /** The Ordnance Survey series: the reference results. */
+    public static final int EXACT_PROJECTION = 0;
+    /**
+     * Interpolated from a lattice of exact results, without trigonometry: 
+     * within ProjectionLattice.MAX_ERROR (0.5m) of EXACT_PROJECTION.
+     */
+    public static final int FAST_PROJECTION = 1;
+    // Ellipsoid constants (see Ellipsoid):
+    private static final double[][] ELLIPSOID;
     // Projection constants:
-    private double[][] PROJECTION;
+    private static final double[][] PROJECTION;
     // - National Grid:
-    private final double NG_F0 = 0.9996012717;  // Scale factor on central maridian
-    private final double NG_lat = 0.8552113334/*772213*/;  // True origin - lat in radians (49"N)
-    private final double NG_long = -0.03490658503/*988659*/; // True origin - long in radians (2"W)
-    private final double NG_E0 = 400000;        // Easting of true origin (meters)
-    private final double NG_N0 = -100000;       // Northing of true origin (meters)
+    private static final double NG_F0 = 0.9996012717;  // Scale factor on central maridian
+    private static final double NG_lat = 0.8552113334/*772213*/;  // True origin - lat in radians (49"N)
+    private static final double NG_long = -0.03490658503/*988659*/; // True origin - long in radians (2"W)
+    private static final double NG_E0 = 400000;        // Easting of true origin (meters)
+    private static final double NG_N0 = -100000;       // Northing of true origin (meters)
     // - ITM:
-    private final double ITM_F0 = 0.99982;      // Scale factor on central maridian
-    private final double ITM_lat = 0.9337511498169663;  // True origin - lat in radians (53"30'N)
-    private final double ITM_long = -0.13962634015954636;// True origin - long in radians (8"W)
-    private final double ITM_E0 = 600000;       // Easting of true origin (meters)
-    private final double ITM_N0 = 750000;       // Northing of true origin (meters)
+    private static final double ITM_F0 = 0.99982;      // Scale factor on central maridian
+    private static final double ITM_lat = 0.9337511498169663;  // True origin - lat in radians (53"30'N)
+    private static final double ITM_long = -0.13962634015954636;// True origin - long in radians (8"W)
+    private static final double ITM_E0 = 600000;       // Easting of true origin (meters)
+    private static final double ITM_N0 = 750000;       // Northing of true origin (meters)
+    // Precomputed projections, indexed [ellipsoid][projection]:
+    private static final TransverseMercator[][] kernels;
+    // Their lattices for FAST_PROJECTION, built when first used. The race to
+    // build one is benign: ProjectionLattice has only final fields.
+    private static final ProjectionLattice[][] lattices;
 
-    /**
-     *  The constructor fills the arrays with their values, and is also 
-     * responsible for reading the OSTN02 data file.
+    /*
+     *  The constant tables and projections are filled in once and shared by
+     * every converter.
      */
-    public GPSConverter() {
+    static {
         ELLIPSOID = new double[2][2];
-        ELLIPSOID[0][0] = AIRY_a;
-        ELLIPSOID[0][1] = AIRY_b;
-        ELLIPSOID[1][0] = GRS80_a;
-        ELLIPSOID[1][1] = GRS80_b;
+        ELLIPSOID[0][0] = Ellipsoid.AIRY_1830.getA();
+        ELLIPSOID[0][1] = Ellipsoid.AIRY_1830.getB();
+        ELLIPSOID[1][0] = Ellipsoid.GRS80.getA();
+        ELLIPSOID[1][1] = Ellipsoid.GRS80.getB();
         PROJECTION = new double[2][5];
         PROJECTION[0][0] = NG_F0;
         PROJECTION[0][1] = NG_lat;
@@ -72,7 +101,211 @@ public class GPSConverter {
         PROJECTION[1][2] = ITM_long;
         PROJECTION[1][3] = ITM_E0;
         PROJECTION[1][4] = ITM_N0;
-//        OSTN02Data = readTable();
+        kernels = new TransverseMercator[ELLIPSOID.length][PROJECTION.length];
+        lattices = new ProjectionLattice[ELLIPSOID.length][PROJECTION.length];
+        for (int a = 0; a < ELLIPSOID.length; a++) {
+            for (int b = 0; b < PROJECTION.length; b++) {
+                kernels[a][b] = new TransverseMercator(ELLIPSOID[a][0],
+                        ELLIPSOID[a][1], PROJECTION[b][0], PROJECTION[b][1],
+                        PROJECTION[b][2], PROJECTION[b][3], PROJECTION[b][4]);
+            }
+        }
+    }
+
+    /**
+     * @return - The precomputed projection for an ellipsoid and projection 
+     * constant, shared with CrsRegistry.
+     */
+    static TransverseMercator kernel(int ellipsoid, int projection) {
+        return kernels[ellipsoid][projection];
+    }
+
+    /**
+     * @return - The lattice approximating the projection for an ellipsoid and
+     * projection constant, built the first time it is needed.
+     */
+    static ProjectionLattice lattice(int ellipsoid, int projection) {
+        ProjectionLattice lattice = lattices[ellipsoid][projection];
+        if (lattice == null) {
+            lattice = new ProjectionLattice(kernels[ellipsoid][projection]);
+            lattices[ellipsoid][projection] = lattice;
+        }
+        return lattice;
+    }
+
+    /**
+     *  Creates a converter without an OSTN02 grid. Only the projection methods
+     * (gratToGrid) may be used.
+     */
+    public GPSConverter() {
+        this(null, null);
+    }
+
+    /**
+     * @param grid - The OSTN02 grid used by ETRS89toOSGB36, see loadGrid().
+     */
+    public GPSConverter(ShiftGrid grid) {
+        this(grid, null);
+    }
+
+    /**
+     *  Creates a converter. This is cheap: the constant tables are shared by
+     * every converter, and the grid is only referenced, so any number of 
+     * converters may share one grid.
+     * 
+     * @param grid - The OSTN02 grid used by ETRS89toOSGB36, see loadGrid().
+     * @param listener - Receives the projection terms and errors of every 
+     * conversion, or null for none. It must be thread-safe if the converter
+     * is shared between threads.
+     */
+    public GPSConverter(ShiftGrid grid, ConversionListener listener) {
+        this(grid, listener, null);
+    }
+
+    /**
+     *  Creates a converter whose batch methods run on a BatchEngine, e.g. the
+     * Vector API engine from BatchEngine.load(). The engine is only used for
+     * the 2D batch conversions, and not while a listener is set, since the
+     * listener is called per point.
+     * 
+     * @param grid - The OSTN02 grid used by ETRS89toOSGB36, see loadGrid().
+     * @param listener - Receives the projection terms and errors of every 
+     * conversion, or null for none.
+     * @param engine - Runs the batch conversions, or null to convert each 
+     * point exactly as the scalar methods do.
+     */
+    public GPSConverter(ShiftGrid grid, ConversionListener listener, BatchEngine engine) {
+        this(grid, listener, engine, null);
+    }
+
+    /**
+     *  Creates a converter that records what it does into a ConverterMetrics:
+     * the points it converts, those outside the OSTN02 boundary, and the 
+     * time each batch spends in the projection and the shift.
+     * 
+     * @param grid - The OSTN02 grid used by ETRS89toOSGB36, see loadGrid().
+     * @param listener - Receives the projection terms and errors of every 
+     * conversion, or null for none.
+     * @param engine - Runs the batch conversions, or null to convert each 
+     * point exactly as the scalar methods do.
+     * @param metrics - Receives the counts and timings, or null for none.
+     */
+    public GPSConverter(ShiftGrid grid, ConversionListener listener, BatchEngine engine,
+            ConverterMetrics metrics) {
+        this.grid = grid;
+        this.listener = listener;
+        this.engine = engine;
+        this.metrics = metrics;
+    }
+
+    /** @return - The metrics this converter records into, or null. */
+    public ConverterMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** @return - The metrics to record into, or null when not recording. */
+    private ConverterMetrics recording() {
+        ConverterMetrics m = metrics;
+        return m != null && m.isEnabled() ? m : null;
+    }
+
+    /**
+     *  Returns a converter over the default OSTN02 grid (see loadGrid), 
+     * loading the grid the first time this is called. The same converter is
+     * returned to every caller and may be used by any number of threads.
+     * 
+     * <p>The converter is complete when it is returned: its grid's validity
+     * map is loaded too, so the first conversion does no one-off work. 
+     * Nothing is loaded until this is first called, so GPSConverter itself
+     * (whose static state is only the precomputed constants) may be 
+     * initialized at build time by GraalVM native-image, and a process that
+     * calls this before an AppCDS archive is dumped or a CRaC checkpoint is
+     * taken restores with the grid ready (see bench.StartupBenchmark). The 
+     * grid file is closed once it is mapped, so no file is left open.</p>
+     * 
+     * @return - The shared converter. Its grid is null if the OSTN02 data 
+     * could not be loaded.
+     */
+    public static GPSConverter getDefault() {
+        return DefaultConverter.INSTANCE;
+    }
+
+    /**
+     *  Holds the default converter, so that the grid is loaded on first use
+     * and by exactly one thread.
+     */
+    private static class DefaultConverter {
+
+        static final GPSConverter INSTANCE = create();
+
+        private static GPSConverter create() {
+            ShiftGrid grid = loadGrid(null);
+            if (grid != null) {
+                grid.getValidity();
+            }
+            return new GPSConverter(grid);
+        }
+    }
+
+    /**
+     *  Loads the OSTN02 grid from the OSTN02 directory. The compiled binary 
+     * grid (see util.CompileGrid) is memory-mapped if present, otherwise the 
+     * OSTN02_OSGM02_GB.txt file is read and held in fixed point (see 
+     * FixedPointShiftGrid).
+     * 
+     * @param listener - Receives progress and errors, or null for none.
+     * @return - The grid, or null if neither file could be read.
+     */
+    public static ShiftGrid loadGrid(ConversionListener listener) {
+        return loadGrid(listener, null);
+    }
+
+    /**
+     *  Loads the OSTN02 grid as loadGrid(ConversionListener) does, recording
+     * how long it took.
+     * 
+     * @param listener - Receives progress and errors, or null for none.
+     * @param metrics - Receives the load time, or null for none.
+     * @return - The grid, or null if neither file could be read.
+     */
+    public static ShiftGrid loadGrid(ConversionListener listener, ConverterMetrics metrics) {
+        return loadGrid(listener, metrics, NODE_LAYOUT);
+    }
+
+    /**
+     *  Loads the OSTN02 grid as loadGrid(ConversionListener) does, in the 
+     * given layout: NODE_LAYOUT for the least memory, or CELL_LAYOUT to 
+     * spend another 28MB of heap on a faster shift.
+     * 
+     * @param listener - Receives progress and errors, or null for none.
+     * @param metrics - Receives the load time, or null for none.
+     * @param layout - NODE_LAYOUT or CELL_LAYOUT.
+     * @return - The grid, or null if neither file could be read.
+     */
+    public static ShiftGrid loadGrid(ConversionListener listener, ConverterMetrics metrics,
+            int layout) {
+        long start = System.nanoTime();
+        ShiftGrid grid = null;
+        if (new File(bin).exists()) {
+            try {
+                grid = MappedShiftGrid.open(bin);
+            } catch (IOException ex) {
+                if (listener != null) {
+                    listener.error("Unable to map the OSTN02 grid file!", ex);
+                }
+            }
+        }
+        if (grid == null) {
+            TableShiftGrid table = TableShiftGrid.readTable(src, listener);
+            grid = table == null ? null : FixedPointShiftGrid.of(table);
+        }
+        if (grid != null && layout == CELL_LAYOUT) {
+            grid = CellShiftGrid.of(grid);
+        }
+        if (grid != null && metrics != null) {
+            metrics.recordGridLoad(System.nanoTime() - start);
+        }
+        return grid;
     }
 
     /** This method enables the user to convert from Latitude and Longitude to
@@ -84,11 +317,17 @@ public class GPSConverter {
      * or GPSConverter.GRS80
      * @param projection - The projection constants to use: 
      * GPSConverter.NATIONAL_GRID or GPSConverter.ITM
-     * @return - A double array with two values: [0] = Easting, [1] = Northing
-     * @throws OutsideTransformationBoundaryException 
+     * @return - A double array with two values: [0] = Easting, [1] = Northing.
+     * Both are 0 when the point is outside the OSTN02 transformation 
+     * boundary, which is reported to the listener as an 
+     * OutsideTransformationBoundaryException.
      */
     public double[] convertToOSGB36(double latitude, double longitude, int ellipsoid, int projection) {
-        return ETRS89toOSGB36(gratToGrid(latitude, longitude, ellipsoid, projection));
+        double[] results = new double[2];
+        gratToGrid(latitude, longitude, ellipsoid, projection, results, 0, results, 1);
+        ETRS89toOSGB36(results[0], results[1], results, 0, results, 1);
+        count(1);
+        return results;
 
         /*  Test values and expected results:
          * Lat:     51:50:6.2584
@@ -100,54 +339,36 @@ public class GPSConverter {
          */
     }
 
+    /**
+     *  Converts a single Latitude and Longitude to an OSGB36 grid reference, 
+     * storing the result at the given indexes rather than allocating an 
+     * array (see ConversionCache).
+     */
+    void convertToOSGB36(double latitude, double longitude, int ellipsoid,
+            int projection, double[] eastings, int eastAt, double[] northings,
+            int northAt) {
+        gratToGrid(latitude, longitude, ellipsoid, projection, eastings, eastAt,
+                northings, northAt);
+        ETRS89toOSGB36(eastings[eastAt], northings[northAt], eastings, eastAt,
+                northings, northAt);
+        count(1);
+    }
+
     /**
      *  This method converts from ETRS89 Easting/Northing to OSGB36 Easting/
      * Northing.
      * 
      * @param input - A double array with two values: [0] = Easting, 
      * [1] = Northing to be converted.
-     * @return - A double array with two values: [0] = Easting, [1] = Northing
-     * @throws OutsideTransformationBoundaryException - Thrown when the input 
-     * values do not reside within the OSGB36 map area.
+     * @return - A double array with two values: [0] = Easting, [1] = Northing.
+     * Both are 0 when the input values do not reside within the OSTN02 
+     * transformation boundary, which is reported to the listener as an 
+     * OutsideTransformationBoundaryException.
      */
     public double[] ETRS89toOSGB36(double[] input) {
         double[] results = new double[2];
-        int eastIndex = (int) input[0] / 1000;
-        int northIndex = (int) input[1] / 1000;
-        int recordNumber = eastIndex + (northIndex * 701) + 1;
-//            System.out.println("Record Number: " + recordNumber);
-
-        // Compute shifts:
-        double se0, se1, se2, se3, sn0, sn1, sn2, sn3;
-        try {
-            se0 = getEastShift(eastIndex, northIndex);
-            se1 = getEastShift(eastIndex + 1, northIndex);
-            se2 = getEastShift(eastIndex + 1, northIndex + 1);
-            se3 = getEastShift(eastIndex, northIndex + 1);
-
-            sn0 = getNorthShift(eastIndex, northIndex);
-            sn1 = getNorthShift(eastIndex + 1, northIndex);
-            sn2 = getNorthShift(eastIndex + 1, northIndex + 1);
-            sn3 = getNorthShift(eastIndex, northIndex + 1);
-        } catch (OutsideTransformationBoundaryException ex) {
-            System.err.println("OutsideTransformationBoundaryException!");
-            return new double[]{0, 0};
-        }
-
-        // Compute offsets:
-        double dx = input[0] - OSTN02Data[recordNumber][1];
-        double dy = input[1] - OSTN02Data[recordNumber][2];
-
-        double t = dx / 1000;
-        double u = dy / 1000;
-
-        double se = (1 - t) * (1 - u) * se0 + t * (1 - u) * se1
-                + t * u * se2 + (1 - t) * u * se3;
-        double sn = (1 - t) * (1 - u) * sn0 + t * (1 - u) * sn1
-                + t * u * sn2 + (1 - t) * u * sn3;
-
-        results[0] = input[0] + se;
-        results[1] = input[1] + sn;
+        ETRS89toOSGB36(input[0], input[1], results, 0, results, 1);
+        count(1);
         return results;
 
         /*  Tested with values from the OSTN02 Test Data supplied with documentation.
@@ -156,40 +377,512 @@ public class GPSConverter {
          */
     }
 
-    /** A private method to return the east shift value for a given pair of 
-     * indexes.
+    /**
+     *  Converts a batch of Latitude and Longitude values to OSGB36 grid 
+     * references. No objects are allocated per point, and the results are 
+     * identical to calling convertToOSGB36 for each point (to well under a 
+     * micrometer when running on the Vector API engine).
      * 
-     * @param x - The east index.
-     * @param y - The north index.
-     * @return - The value to shift the easting value by.
-     * @throws OutsideTransformationBoundaryException - Thrown when the input 
-     * values do not reside within the OSGB36 map area.
+     * @param latitudes - The Latitudes to convert from.
+     * @param longitudes - The Longitudes to convert from.
+     * @param eastings - Receives the Eastings.
+     * @param northings - Receives the Northings.
+     * @param offset - The index of the first point in every array.
+     * @param length - The number of points to convert.
+     * @param ellipsoid - GPSConverter.AIRY1830 or GPSConverter.GRS80
+     * @param projection - GPSConverter.NATIONAL_GRID or GPSConverter.ITM
      */
-    private double getEastShift(int x, int y) throws OutsideTransformationBoundaryException {
-        int recordNumber = x + (y * 701) + 1;
-//        if (OSTN02Data[recordNumber][3] == 0) {
-//            throw new OutsideTransformationBoundaryException();
-//        } else {
-        return OSTN02Data[recordNumber][3];
-//        }
+    public void convertToOSGB36(double[] latitudes, double[] longitudes,
+            double[] eastings, double[] northings, int offset, int length,
+            int ellipsoid, int projection) {
+        gratToGrid(latitudes, longitudes, eastings, northings, offset, length,
+                ellipsoid, projection);
+        ETRS89toOSGB36(eastings, northings, eastings, northings, offset, length);
     }
 
-    /** A private method to return the north shift value for a given pair of 
-     * indexes.
+    /**
+     *  Converts a batch of Latitude and Longitude values to OSGB36 grid 
+     * references, reading and writing the buffers by absolute index so their
+     * positions are left unchanged. The points are projected into the output
+     * buffers and then shifted there, so that each stage is timed as the 
+     * array batches time it.
      * 
-     * @param x - The east index.
-     * @param y - The north index.
-     * @return - The value to shift the northing value by.
-     * @throws OutsideTransformationBoundaryException - Thrown when the input 
-     * values do not reside within the OSGB36 map area.
+     * @see #convertToOSGB36(double[], double[], double[], double[], int, int, int, int)
      */
-    private double getNorthShift(int x, int y) throws OutsideTransformationBoundaryException {
-        int recordNumber = x + (y * 701) + 1;
-//        if (OSTN02Data[recordNumber][4] == 0) {
-//            throw new OutsideTransformationBoundaryException();
-//        } else {
-        return OSTN02Data[recordNumber][4];
-//        }
+    public void convertToOSGB36(DoubleBuffer latitudes, DoubleBuffer longitudes,
+            DoubleBuffer eastings, DoubleBuffer northings, int offset, int length,
+            int ellipsoid, int projection) {
+        ConverterMetrics m = recording();
+        long start = m != null ? System.nanoTime() : 0;
+        double[] results = new double[2];
+        for (int i = offset; i < offset + length; i++) {
+            gratToGrid(latitudes.get(i), longitudes.get(i), ellipsoid, projection,
+                    results, 0, results, 1);
+            eastings.put(i, results[0]);
+            northings.put(i, results[1]);
+        }
+        long projected = m != null ? System.nanoTime() : 0;
+        for (int i = offset; i < offset + length; i++) {
+            ETRS89toOSGB36(eastings.get(i), northings.get(i), results, 0, results, 1);
+            eastings.put(i, results[0]);
+            northings.put(i, results[1]);
+        }
+        if (m != null) {
+            m.record(ConverterMetrics.PROJECTION, projected - start, length);
+            m.record(ConverterMetrics.SHIFT, System.nanoTime() - projected, length);
+            m.countPoints(length);
+        }
+    }
+
+    /**
+     *  Converts a batch of ETRS89 Easting/Northing values to OSGB36. The output
+     * arrays may be the input arrays.
+     * 
+     * @param eastings - The ETRS89 Eastings.
+     * @param northings - The ETRS89 Northings.
+     * @param resultEastings - Receives the OSGB36 Eastings.
+     * @param resultNorthings - Receives the OSGB36 Northings.
+     * @param offset - The index of the first point in every array.
+     * @param length - The number of points to convert.
+     */
+    public void ETRS89toOSGB36(double[] eastings, double[] northings,
+            double[] resultEastings, double[] resultNorthings, int offset, int length) {
+        ConverterMetrics m = recording();
+        long start = m != null ? System.nanoTime() : 0;
+        if (engine != null && listener == null
+                && valid(eastings, northings, offset, length)) {
+            engine.shift(grid, eastings, northings, resultEastings, resultNorthings,
+                    offset, length);
+        } else {
+            for (int i = offset; i < offset + length; i++) {
+                ETRS89toOSGB36(eastings[i], northings[i], resultEastings, i,
+                        resultNorthings, i);
+            }
+        }
+        if (m != null) {
+            m.record(ConverterMetrics.SHIFT, System.nanoTime() - start, length);
+            m.countPoints(length);
+        }
+    }
+
+    /**
+     *  Checks a batch against the validity map of the grid, as the engine 
+     * does not; a batch with any point that cannot be transformed is 
+     * converted one point at a time instead.
+     * 
+     * @return - true if every point can be transformed.
+     */
+    private boolean valid(double[] eastings, double[] northings, int offset, int length) {
+        ValidityMap validity = grid.getValidity();
+        for (int i = offset; i < offset + length; i++) {
+            if (validity.check(eastings[i], northings[i]) != ConversionStatus.OK) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     *  Converts a batch of Latitude and Longitude values to OSGB36 grid 
+     * references as convertToOSGB36 does, but shifts the points in the order
+     * of their grid cells (see ETRS89toOSGB36Sorted). The results are the 
+     * same, in the caller's order.
+     * 
+     * @see #convertToOSGB36(double[], double[], double[], double[], int, int, int, int)
+     */
+    public void convertToOSGB36Sorted(double[] latitudes, double[] longitudes,
+            double[] eastings, double[] northings, int offset, int length,
+            int ellipsoid, int projection) {
+        gratToGrid(latitudes, longitudes, eastings, northings, offset, length,
+                ellipsoid, projection);
+        ETRS89toOSGB36Sorted(eastings, northings, eastings, northings, offset, length);
+    }
+
+    /**
+     *  Converts a batch of ETRS89 Easting/Northing values to OSGB36 as 
+     * ETRS89toOSGB36 does, but shifts the points in the Morton order of their
+     * grid cells (see SpatialSort) rather than in the order given, writing 
+     * each result back at the point's own index. Points spread at random over
+     * the country then read the grid a region at a time, which keeps the grid
+     * records in the CPU cache; batches that already arrive grouped by region
+     * gain nothing and pay for the sort. This allocates two int and two 
+     * double arrays the size of the batch, and the counting sort's table of
+     * 16385 ints (64KB) whatever the size, so batches smaller than 
+     * SORT_THRESHOLD are converted in order. The output arrays may be the 
+     * input arrays.
+     * 
+     * @see #ETRS89toOSGB36(double[], double[], double[], double[], int, int)
+     */
+    public void ETRS89toOSGB36Sorted(double[] eastings, double[] northings,
+            double[] resultEastings, double[] resultNorthings, int offset, int length) {
+        if (length < SORT_THRESHOLD) {
+            ETRS89toOSGB36(eastings, northings, resultEastings, resultNorthings,
+                    offset, length);
+            return;
+        }
+        double[] sortedEastings = new double[length];
+        double[] sortedNorthings = new double[length];
+        int[] order = SpatialSort.sort(eastings, northings, offset, length,
+                sortedEastings, sortedNorthings);
+        ETRS89toOSGB36(sortedEastings, sortedNorthings, sortedEastings,
+                sortedNorthings, 0, length);
+        for (int i = 0; i < length; i++) {
+            resultEastings[order[i]] = sortedEastings[i];
+            resultNorthings[order[i]] = sortedNorthings[i];
+        }
+    }
+
+    /**
+     *  Converts a batch of ETRS89 Easting/Northing values to OSGB36, checking
+     * every point against the validity map of the grid (see 
+     * ShiftGrid.getValidity()) first. Points that cannot be transformed are 
+     * given NaN results and a status other than ConversionStatus.OK; no 
+     * exception is thrown and the listener is not called for them. The output
+     * arrays may be the input arrays.
+     * 
+     * @param eastings - The ETRS89 Eastings.
+     * @param northings - The ETRS89 Northings.
+     * @param resultEastings - Receives the OSGB36 Eastings.
+     * @param resultNorthings - Receives the OSGB36 Northings.
+     * @param status - Receives the ConversionStatus of each point.
+     * @param offset - The index of the first point in every array.
+     * @param length - The number of points to convert.
+     * @return - The number of points that could not be transformed.
+     */
+    public int ETRS89toOSGB36(double[] eastings, double[] northings,
+            double[] resultEastings, double[] resultNorthings, int[] status,
+            int offset, int length) {
+        ConverterMetrics m = recording();
+        long start = m != null ? System.nanoTime() : 0;
+        int failed = shift(eastings, northings, resultEastings, resultNorthings,
+                status, offset, length);
+        if (m != null) {
+            record(m, start, status, failed, offset, length);
+        }
+        return failed;
+    }
+
+    /**
+     *  Records a batch through the OSTN02 shift: its time, its points and
+     * the reasons any failed.
+     */
+    private static void record(ConverterMetrics m, long start, int[] status,
+            int failed, int offset, int length) {
+        m.record(ConverterMetrics.SHIFT, System.nanoTime() - start, length);
+        m.countPoints(length);
+        if (failed != 0) {
+            m.countStatus(status, offset, length);
+        }
+    }
+
+    /**
+     *  The status form of ETRS89toOSGB36, without recording metrics.
+     */
+    private int shift(double[] eastings, double[] northings,
+            double[] resultEastings, double[] resultNorthings, int[] status,
+            int offset, int length) {
+        ValidityMap validity = grid.getValidity();
+        int failed = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int s = validity.check(eastings[i], northings[i]);
+            status[i] = s;
+            if (s != ConversionStatus.OK) {
+                failed++;
+            }
+        }
+        if (failed == 0 && engine != null && listener == null) {
+            engine.shift(grid, eastings, northings, resultEastings, resultNorthings,
+                    offset, length);
+            return 0;
+        }
+        for (int i = offset; i < offset + length; i++) {
+            if (status[i] == ConversionStatus.OK) {
+                grid.shift(eastings[i], northings[i], resultEastings, i, resultNorthings, i);
+            } else {
+                resultEastings[i] = Double.NaN;
+                resultNorthings[i] = Double.NaN;
+            }
+        }
+        return failed;
+    }
+
+    /**
+     *  Converts a batch of Latitude and Longitude values to OSGB36 grid 
+     * references, marking the points that cannot be transformed in a status
+     * array rather than failing (see the status form of ETRS89toOSGB36).
+     * 
+     * @param status - Receives the ConversionStatus of each point.
+     * @return - The number of points that could not be transformed.
+     * @see #convertToOSGB36(double[], double[], double[], double[], int, int, int, int)
+     */
+    public int convertToOSGB36(double[] latitudes, double[] longitudes,
+            double[] eastings, double[] northings, int[] status, int offset,
+            int length, int ellipsoid, int projection) {
+        return convertToOSGB36(latitudes, longitudes, eastings, northings,
+                status, offset, length, ellipsoid, projection, EXACT_PROJECTION);
+    }
+
+    /**
+     *  Converts a batch of Latitude and Longitude values to OSGB36 grid 
+     * references as above, projecting them with the given tier. With 
+     * FAST_PROJECTION the results are within ProjectionLattice.MAX_ERROR 
+     * (0.5m) of the exact ones, as the OSTN02 shift barely changes over
+     * that distance, and a point near the edge of the grid may rarely get
+     * the status of its neighbour.
+     * 
+     * @param tier - GPSConverter.EXACT_PROJECTION or GPSConverter.FAST_PROJECTION
+     * @return - The number of points that could not be transformed.
+     * @throws IllegalArgumentException - Thrown when the tier is neither.
+     * @see #gratToGrid(double[], double[], double[], double[], int, int, int, int, int)
+     */
+    public int convertToOSGB36(double[] latitudes, double[] longitudes,
+            double[] eastings, double[] northings, int[] status, int offset,
+            int length, int ellipsoid, int projection, int tier) {
+        gratToGrid(latitudes, longitudes, eastings, northings, offset, length,
+                ellipsoid, projection, tier);
+        return ETRS89toOSGB36(eastings, northings, eastings, northings, status,
+                offset, length);
+    }
+
+    /**
+     *  Converts a batch of Latitude and Longitude text values, e.g. the 
+     * columns of an import, to OSGB36 grid references. The text is parsed by
+     * AngleParser straight into the result arrays, which then go through the
+     * batch conversion, so nothing is allocated per point.
+     * 
+     * @param latitudes - The Latitudes to convert from.
+     * @param longitudes - The Longitudes to convert from.
+     * @param status - Receives the ConversionStatus of each point: 
+     * INVALID_INPUT when either value is malformed.
+     * @return - The number of points that could not be converted.
+     * @see #convertToOSGB36(double[], double[], double[], double[], int[], int, int, int, int)
+     */
+    public int convertToOSGB36(CharSequence[] latitudes, CharSequence[] longitudes,
+            double[] eastings, double[] northings, int[] status, int offset,
+            int length, int ellipsoid, int projection) {
+        ConverterMetrics m = recording();
+        long start = m != null ? System.nanoTime() : 0;
+        for (int i = offset; i < offset + length; i++) {
+            eastings[i] = AngleParser.parse(latitudes[i], AngleParser.LATITUDE);
+            northings[i] = AngleParser.parse(longitudes[i], AngleParser.LONGITUDE);
+        }
+        if (m != null) {
+            m.record(ConverterMetrics.IO, System.nanoTime() - start, length);
+        }
+        gratToGrid(eastings, northings, eastings, northings, offset, length,
+                ellipsoid, projection);
+        start = m != null ? System.nanoTime() : 0;
+        int failed = shift(eastings, northings, eastings, northings, status,
+                offset, length);
+        if (failed != 0) {
+            // Tell malformed text apart from points off the grid:
+            for (int i = offset; i < offset + length; i++) {
+                if (status[i] != ConversionStatus.OK
+                        && (Double.isNaN(AngleParser.parse(latitudes[i], AngleParser.LATITUDE))
+                        || Double.isNaN(AngleParser.parse(longitudes[i], AngleParser.LONGITUDE)))) {
+                    status[i] = ConversionStatus.INVALID_INPUT;
+                }
+            }
+        }
+        if (m != null) {
+            record(m, start, status, failed, offset, length);
+        }
+        return failed;
+    }
+
+    /**
+     *  Converts a single ETRS89 Easting/Northing, storing the result at the 
+     * given indexes rather than allocating an array. A point that cannot be
+     * transformed is reported to the listener and given a result of 0, 0.
+     */
+    private void ETRS89toOSGB36(double easting, double northing,
+            double[] eastings, int eastAt, double[] northings, int northAt) {
+        int status = grid.getValidity().check(easting, northing);
+        if (status != ConversionStatus.OK) {
+            ConverterMetrics m = recording();
+            if (m != null) {
+                m.countStatus(status);
+            }
+            if (listener != null) {
+                listener.error("Point outside the OSTN02 transformation boundary: "
+                        + easting + "," + northing,
+                        new OutsideTransformationBoundaryException());
+            }
+            eastings[eastAt] = 0;
+            northings[northAt] = 0;
+            return;
+        }
+        grid.shift(easting, northing, eastings, eastAt, northings, northAt);
+    }
+
+    /**
+     *  This method converts an ETRS89 Latitude, Longitude and ellipsoidal 
+     * height to an OSGB36 grid reference and an orthometric height, using 
+     * OSTN02 and the OSGM02 geoid model. The orthometric height is the 
+     * ellipsoidal height less the geoid height, which is interpolated from 
+     * the grid in the same way as the shifts. The height is relative to the 
+     * vertical datum of the nearest grid node: Ordnance Datum Newlyn on the 
+     * mainland, or the local datum of an island.
+     * 
+     * @param latitude - The ETRS89 Latitude.
+     * @param longitude - The ETRS89 Longitude.
+     * @param height - The height above the GRS80 ellipsoid (meters).
+     * @return - A double array with four values: [0] = Easting, 
+     * [1] = Northing, [2] = orthometric height, [3] = the vertical datum flag
+     * (see VerticalDatum). The height is NaN when the flag is 
+     * VerticalDatum.OUTSIDE.
+     */
+    public double[] convertToOSGB36(double latitude, double longitude, double height) {
+        double[] results = new double[4];
+        gratToGrid(latitude, longitude, GRS80, NATIONAL_GRID, results, 0, results, 1);
+        results[3] = ETRS89toODN(results[0], results[1], height, results, 2);
+        ETRS89toOSGB36(results[0], results[1], results, 0, results, 1);
+        count(1);
+        return results;
+    }
+
+    /**
+     *  Converts a batch of ETRS89 Latitudes, Longitudes and ellipsoidal 
+     * heights to OSGB36 grid references and orthometric heights. No objects
+     * are allocated per point, and the results are identical to calling 
+     * convertToOSGB36(latitude, longitude, height) for each point.
+     * 
+     * @param latitudes - The ETRS89 Latitudes.
+     * @param longitudes - The ETRS89 Longitudes.
+     * @param heights - The heights above the GRS80 ellipsoid.
+     * @param eastings - Receives the Eastings.
+     * @param northings - Receives the Northings.
+     * @param orthometricHeights - Receives the orthometric heights. This may
+     * be the heights array.
+     * @param datums - Receives the vertical datum flags, or null if they are
+     * not needed.
+     * @param offset - The index of the first point in every array.
+     * @param length - The number of points to convert.
+     */
+    public void convertToOSGB36(double[] latitudes, double[] longitudes,
+            double[] heights, double[] eastings, double[] northings,
+            double[] orthometricHeights, int[] datums, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            gratToGrid(latitudes[i], longitudes[i], GRS80, NATIONAL_GRID,
+                    eastings, i, northings, i);
+            int datum = ETRS89toODN(eastings[i], northings[i], heights[i],
+                    orthometricHeights, i);
+            if (datums != null) {
+                datums[i] = datum;
+            }
+            ETRS89toOSGB36(eastings[i], northings[i], eastings, i, northings, i);
+        }
+        count(length);
+    }
+
+    /**
+     *  Converts a batch of ETRS89 Latitudes, Longitudes and ellipsoidal
+     * heights to OSGB36 grid references and orthometric heights, marking the
+     * points that cannot be transformed in a status array rather than
+     * failing. The projection and the shift run as the batch conversions do
+     * (on the engine, if there is one), so this is the form for bulk jobs.
+     *
+     * @param latitudes - The ETRS89 Latitudes.
+     * @param longitudes - The ETRS89 Longitudes.
+     * @param heights - The heights above the GRS80 ellipsoid.
+     * @param eastings - Receives the Eastings.
+     * @param northings - Receives the Northings.
+     * @param orthometricHeights - Receives the orthometric heights, NaN
+     * where the OSGM02 model does not reach. This may be the heights array.
+     * @param datums - Receives the vertical datum flags, or null if they are
+     * not needed.
+     * @param status - Receives the ConversionStatus of each point.
+     * @param offset - The index of the first point in every array.
+     * @param length - The number of points to convert.
+     * @return - The number of points that could not be transformed.
+     */
+    public int convertToOSGB36(double[] latitudes, double[] longitudes,
+            double[] heights, double[] eastings, double[] northings,
+            double[] orthometricHeights, int[] datums, int[] status, int offset,
+            int length) {
+        gratToGrid(latitudes, longitudes, eastings, northings, offset, length,
+                GRS80, NATIONAL_GRID);
+        // The geoid is read at the ETRS89 position, before the shift:
+        for (int i = offset; i < offset + length; i++) {
+            int datum = ETRS89toODN(eastings[i], northings[i], heights[i],
+                    orthometricHeights, i);
+            if (datums != null) {
+                datums[i] = datum;
+            }
+        }
+        return ETRS89toOSGB36(eastings, northings, eastings, northings, status,
+                offset, length);
+    }
+
+    /**
+     *  Converts a batch of ETRS89 Easting/Northing values and ellipsoidal 
+     * heights to OSGB36 and orthometric heights. The output arrays may be the
+     * input arrays.
+     * 
+     * @param eastings - The ETRS89 Eastings.
+     * @param northings - The ETRS89 Northings.
+     * @param heights - The heights above the GRS80 ellipsoid.
+     * @param resultEastings - Receives the OSGB36 Eastings.
+     * @param resultNorthings - Receives the OSGB36 Northings.
+     * @param resultHeights - Receives the orthometric heights.
+     * @param datums - Receives the vertical datum flags, or null if they are
+     * not needed.
+     * @param offset - The index of the first point in every array.
+     * @param length - The number of points to convert.
+     */
+    public void ETRS89toOSGB36(double[] eastings, double[] northings,
+            double[] heights, double[] resultEastings, double[] resultNorthings,
+            double[] resultHeights, int[] datums, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            double easting = eastings[i];
+            double northing = northings[i];
+            int datum = ETRS89toODN(easting, northing, heights[i], resultHeights, i);
+            if (datums != null) {
+                datums[i] = datum;
+            }
+            ETRS89toOSGB36(easting, northing, resultEastings, i, resultNorthings, i);
+        }
+        count(length);
+    }
+
+    /**
+     *  Counts points converted one at a time, which are not timed as the 
+     * clock would cost as much as the conversion.
+     */
+    private void count(int points) {
+        ConverterMetrics m = recording();
+        if (m != null) {
+            m.countPoints(points);
+        }
+    }
+
+    /**
+     *  Converts a single ellipsoidal height at an ETRS89 Easting/Northing to
+     * an orthometric height, storing it at the given index.
+     * 
+     * @return - The vertical datum flag of the nearest grid node.
+     */
+    private int ETRS89toODN(double easting, double northing, double height,
+            double[] heights, int heightAt) {
+        if (grid.getValidity().check(easting, northing) != ConversionStatus.OK) {
+            heights[heightAt] = Double.NaN;
+            return VerticalDatum.OUTSIDE;
+        }
+        int eastIndex = (int) easting / 1000;
+        int northIndex = (int) northing / 1000;
+
+        double t = (easting - eastIndex * ShiftGrid.SPACING) / 1000;
+        double u = (northing - northIndex * ShiftGrid.SPACING) / 1000;
+
+        double sg = (1 - t) * (1 - u) * grid.getGeoidShift(eastIndex, northIndex)
+                + t * (1 - u) * grid.getGeoidShift(eastIndex + 1, northIndex)
+                + t * u * grid.getGeoidShift(eastIndex + 1, northIndex + 1)
+                + (1 - t) * u * grid.getGeoidShift(eastIndex, northIndex + 1);
+        heights[heightAt] = height - sg;
+
+        // The datum is not interpolated: it is that of the nearest node.
+        return grid.getDatumFlag(eastIndex + (t < 0.5 ? 0 : 1),
+                northIndex + (u < 0.5 ? 0 : 1));
     }
 
     /**
@@ -205,94 +898,8 @@ public class GPSConverter {
      */
     public double[] gratToGrid(double latitude, double longitude, int ellipsoid,
             int projection) {
-        int a = ellipsoid;
-        int b = projection;
-        // Convert to radians:
-        latitude = Math.toRadians(latitude);
-        longitude = Math.toRadians(longitude);
-
-        // B1
-        double e2 = Math.pow(ELLIPSOID[a][0], 2) - Math.pow(ELLIPSOID[a][1], 2);
-        e2 = e2 / Math.pow(ELLIPSOID[a][0], 2);
-
-        // B2
-        double n = ELLIPSOID[a][0] - ELLIPSOID[a][1];
-        double ni = ELLIPSOID[a][0] + ELLIPSOID[a][1];
-        n = n / ni;
-
-        // B3
-        double vi = 1 - e2 * Math.pow(Math.sin(latitude), 2);
-        double v = ELLIPSOID[a][0] * PROJECTION[b][0] * Math.pow(vi, -0.5);
-        System.out.println("v = " + v);
-
-        // B4
-        double p = ELLIPSOID[a][0] * PROJECTION[b][0] * (1 - e2) * Math.pow(vi, -1.5);
-        System.out.println("p = " + p);
-
-        // B5
-        double eta2 = (v / p) - 1;
-        System.out.println("eta2 = " + eta2);
-
-        // B6
-        double x1 = 1 + n + (5.0 / 4.0) * Math.pow(n, 2) + (5.0 / 4.0) * Math.pow(n, 3);
-        x1 = x1 * (latitude - PROJECTION[b][1]);
-        double x2 = 3 * n + 3 * Math.pow(n, 2) + (21.0 / 8.0) * Math.pow(n, 3);
-        x2 = x2 * Math.sin(latitude - PROJECTION[b][1]) * Math.cos(latitude + PROJECTION[b][1]);
-        double x3 = (15.0 / 8.0) * Math.pow(n, 2) + (15.0 / 8.0) * Math.pow(n, 3);
-        x3 = x3 * Math.sin(2 * (latitude - PROJECTION[b][1]))
-                * Math.cos(2 * (latitude + PROJECTION[b][1]));
-        double x4 = (35.0 / 24.0) * Math.pow(n, 3);
-        x4 = x4 * Math.sin(3 * (latitude - PROJECTION[b][1]))
-                * Math.cos(3 * (latitude + PROJECTION[b][1]));
-
-        double M = ELLIPSOID[a][1] * PROJECTION[b][0] * (x1 - x2 + x3 - x4);
-        System.out.println("M = " + M);
-
-        double I = M + PROJECTION[b][4];
-        System.out.println("I = " + I);
-
-        double II = (v / 2) * Math.sin(latitude) * Math.cos(latitude);
-        System.out.println("II = " + II);
-
-        double III = 5 - Math.pow(Math.tan(latitude), 2) + 9 * eta2;
-        III = (v / 24) * Math.sin(latitude) * Math.pow(Math.cos(latitude), 3)
-                * III;
-        System.out.println("III = " + III);
-
-        double IIIA = 61 - 58 * Math.pow(Math.tan(latitude), 2)
-                + Math.pow(Math.tan(latitude), 4);
-        IIIA = (v / 720) * Math.sin(latitude) * Math.pow(Math.cos(latitude), 5)
-                * IIIA;
-        System.out.println("IIIA = " + IIIA);
-
-        double IV = v * Math.cos(latitude);
-        System.out.println("IV = " + IV);
-
-        double V = (v / 6) * Math.pow(Math.cos(latitude), 3) * ((v / p)
-                - Math.pow(Math.tan(latitude), 2));
-        System.out.println("V = " + V);
-
-        double VI = 5 - 18 * Math.pow(Math.tan(latitude), 2)
-                + Math.pow(Math.tan(latitude), 4) + 14 * eta2
-                - 58 * Math.pow(Math.tan(latitude), 2) * eta2;
-        VI = (v / 120) * Math.pow(Math.cos(latitude), 5) * VI;
-        System.out.println("VI = " + VI);
-
-        // B7
         double[] results = new double[2];
-
-        results[1] = I + II * Math.pow((longitude - PROJECTION[b][2]), 2)
-                + III * Math.pow((longitude - PROJECTION[b][2]), 4)
-                + IIIA * Math.pow((longitude - PROJECTION[b][2]), 6);
-
-
-        // B8
-        results[0] = PROJECTION[b][3] + IV * (longitude - PROJECTION[b][2])
-                + V * Math.pow((longitude - PROJECTION[b][2]), 3)
-                + VI * Math.pow((longitude - PROJECTION[b][2]), 5);
-
-        System.out.println("\nE = " + results[0]);
-        System.out.println("N = " + results[1]);
+        gratToGrid(latitude, longitude, ellipsoid, projection, results, 0, results, 1);
         return results;
 
         /*  Testing values and results:
@@ -321,53 +928,324 @@ public class GPSConverter {
     }
 
     /**
-     *  A simple method to convert Longitude/Latitude to a decimal format.
-     * @param value Must be of the format DD:MM:SS.SSSS
-     * @return the decimal format as a double
+     *  Converts a batch of Latitude and Longitude values to ETRS89 Easting 
+     * and Northing without allocating per point. The results are identical
+     * to calling gratToGrid for each point (to well under a micrometer when 
+     * running on the Vector API engine).
+     * 
+     * @param latitudes - The Latitudes to convert from.
+     * @param longitudes - The Longitudes to convert from.
+     * @param eastings - Receives the Eastings.
+     * @param northings - Receives the Northings.
+     * @param offset - The index of the first point in every array.
+     * @param length - The number of points to convert.
+     * @param ellipsoid - GPSConverter.AIRY1830 or GPSConverter.GRS80
+     * @param projection - GPSConverter.NATIONAL_GRID or GPSConverter.ITM
      */
-    public double stringToDecimal(String value) {
-        String[] s = value.split(":");
-        return Double.parseDouble(s[0]) + Double.parseDouble(s[1])
-                / 60 + Double.parseDouble(s[2]) / 3600;
-    }
-
-    /**
-     *  This utility method is responsible for reading the OSTN02 transformation
-     * data and loading it to system memory.
-     * 
-     * @return - The 2D double array full of transformation values. Returns null
-     * if the file is unable to be read or found.
-     */
-    private double[][] readTable() {
-        /* TODO: Break this table down into smaller chunks for Android */
-        System.out.println("Reading table...");
-        double[][] results = new double[fileSize][columns];
-        try {
-            in = new BufferedReader(new FileReader(src));
-            int i = 0;
-            String temp = in.readLine();
-            while (temp != null && i < results.length) {
-                String[] s = temp.split(",");
-                for (int j = 0; j < columns; j++) {
-                    results[i][j] = Double.parseDouble(s[j]);
-                }
-                temp = in.readLine();
-                i++;
+    public void gratToGrid(double[] latitudes, double[] longitudes,
+            double[] eastings, double[] northings, int offset, int length,
+            int ellipsoid, int projection) {
+        gratToGrid(latitudes, longitudes, eastings, northings, offset, length,
+                ellipsoid, projection, EXACT_PROJECTION);
+    }
+
+    /**
+     *  Converts a batch of Latitude and Longitude values to ETRS89 Easting 
+     * and Northing with the given tier of accuracy. EXACT_PROJECTION is the
+     * batch conversion above. FAST_PROJECTION interpolates the results from
+     * a ProjectionLattice, several times faster, within 
+     * ProjectionLattice.MAX_ERROR (0.5m) of the exact results between 
+     * 49.5 and 61.25N and 9.5W and 3.75E, which covers the whole OSTN02 
+     * grid; points outside it are projected exactly. The ConversionListener
+     * is not told of points projected from the lattice, which has no terms.
+     * 
+     * @param tier - GPSConverter.EXACT_PROJECTION or GPSConverter.FAST_PROJECTION
+     * @throws IllegalArgumentException - Thrown when the tier is neither.
+     * @see #gratToGrid(double[], double[], double[], double[], int, int, int, int)
+     */
+    public void gratToGrid(double[] latitudes, double[] longitudes,
+            double[] eastings, double[] northings, int offset, int length,
+            int ellipsoid, int projection, int tier) {
+        if (tier != EXACT_PROJECTION && tier != FAST_PROJECTION) {
+            throw new IllegalArgumentException("Invalid projection tier: " + tier);
+        }
+        ConverterMetrics m = recording();
+        long start = m != null ? System.nanoTime() : 0;
+        if (tier == FAST_PROJECTION) {
+            lattice(ellipsoid, projection).project(latitudes, longitudes,
+                    eastings, northings, offset, length);
+        } else if (engine != null && listener == null) {
+            engine.project(kernels[ellipsoid][projection], latitudes, longitudes,
+                    eastings, northings, offset, length);
+        } else {
+            for (int i = offset; i < offset + length; i++) {
+                gratToGrid(latitudes[i], longitudes[i], ellipsoid, projection,
+                        eastings, i, northings, i);
             }
-        } catch (FileNotFoundException ex) {
-            System.err.println("OSTN02 data file not found!");
-            results = null;
-        } catch (IOException ex) {
-            System.err.println("Unable to read file!");
-            results = null;
-        } finally {
-            try {
-                in.close();
-            } catch (IOException ex) {
-                System.err.println("Unable to close the OSTN02 file reader!");
+        }
+        if (m != null) {
+            m.record(ConverterMetrics.PROJECTION, System.nanoTime() - start, length);
+        }
+    }
+
+    /**
+     *  Projects a single point, storing the Easting and Northing at the given
+     * indexes rather than allocating an array.
+     */
+    private void gratToGrid(double latitude, double longitude, int ellipsoid,
+            int projection, double[] eastings, int eastAt, double[] northings, int northAt) {
+        kernels[ellipsoid][projection].project(latitude, longitude, eastings,
+                eastAt, northings, northAt);
+        if (listener != null) {
+            listener.projected(kernels[ellipsoid][projection].terms(latitude, longitude));
+        }
+    }
+
+    /**
+     *  This method converts OSGB36 grid references back to Latitude and 
+     * Longitude: the inverse of convertToOSGB36.
+     * 
+     * @param easting - The OSGB36 Easting.
+     * @param northing - The OSGB36 Northing.
+     * @param ellipsoid - GPSConverter.AIRY1830 or GPSConverter.GRS80
+     * @param projection - GPSConverter.NATIONAL_GRID or GPSConverter.ITM
+     * @return - A double array with two values: [0] = Latitude, 
+     * [1] = Longitude. Both are NaN when the point cannot be transformed
+     * (see OSGB36toETRS89), which is reported to the listener.
+     */
+    public double[] convertFromOSGB36(double easting, double northing,
+            int ellipsoid, int projection) {
+        double[] results = new double[2];
+        OSGB36toETRS89(easting, northing, results, 0, results, 1);
+        if (!Double.isNaN(results[0])) {
+            kernels[ellipsoid][projection].unproject(results[0], results[1],
+                    results, 0, results, 1);
+        }
+        return results;
+    }
+
+    /**
+     *  Converts a batch of OSGB36 grid references back to Latitude and 
+     * Longitude without allocating per point.
+     * 
+     * @param eastings - The OSGB36 Eastings.
+     * @param northings - The OSGB36 Northings.
+     * @param latitudes - Receives the Latitudes.
+     * @param longitudes - Receives the Longitudes.
+     * @param offset - The index of the first point in every array.
+     * @param length - The number of points to convert.
+     * @param ellipsoid - GPSConverter.AIRY1830 or GPSConverter.GRS80
+     * @param projection - GPSConverter.NATIONAL_GRID or GPSConverter.ITM
+     */
+    public void convertFromOSGB36(double[] eastings, double[] northings,
+            double[] latitudes, double[] longitudes, int offset, int length,
+            int ellipsoid, int projection) {
+        TransverseMercator kernel = kernels[ellipsoid][projection];
+        for (int i = offset; i < offset + length; i++) {
+            OSGB36toETRS89(eastings[i], northings[i], latitudes, i, longitudes, i);
+            if (!Double.isNaN(latitudes[i])) {
+                kernel.unproject(latitudes[i], longitudes[i], latitudes, i, longitudes, i);
+            }
+        }
+    }
+
+    /**
+     *  Converts a batch of OSGB36 grid references back to Latitude and 
+     * Longitude, marking the points that cannot be transformed in a status
+     * array rather than failing (see the status form of OSGB36toETRS89): 
+     * the inverse of the status form of convertToOSGB36.
+     * 
+     * @param status - Receives the ConversionStatus of each point.
+     * @return - The number of points that could not be transformed.
+     * @see #convertFromOSGB36(double[], double[], double[], double[], int, int, int, int)
+     */
+    public int convertFromOSGB36(double[] eastings, double[] northings,
+            double[] latitudes, double[] longitudes, int[] status, int offset,
+            int length, int ellipsoid, int projection) {
+        int failed = OSGB36toETRS89(eastings, northings, latitudes, longitudes,
+                status, offset, length);
+        TransverseMercator kernel = kernels[ellipsoid][projection];
+        for (int i = offset; i < offset + length; i++) {
+            if (status[i] == ConversionStatus.OK) {
+                kernel.unproject(latitudes[i], longitudes[i], latitudes, i, longitudes, i);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     *  This method converts from OSGB36 Easting/Northing to ETRS89 Easting/
+     * Northing. The OSTN02 shift is a function of the ETRS89 position, so it
+     * is inverted by iteration: starting from the OSGB36 position, the 
+     * estimate is moved by the difference between its forward transformation
+     * and the input until that difference is below 0.1mm. This takes a 
+     * handful of iterations and never more than MAX_SHIFT_ITERATIONS.
+     * 
+     * @param input - A double array with two values: [0] = Easting, 
+     * [1] = Northing to be converted.
+     * @return - A double array with two values: [0] = Easting, [1] = Northing.
+     * Both are NaN when an estimate leaves the OSTN02 transformation 
+     * boundary or the iteration does not converge, which is reported to the
+     * listener as an OutsideTransformationBoundaryException.
+     */
+    public double[] OSGB36toETRS89(double[] input) {
+        double[] results = new double[2];
+        OSGB36toETRS89(input[0], input[1], results, 0, results, 1);
+        return results;
+    }
+
+    /**
+     *  Converts a batch of OSGB36 Easting/Northing values to ETRS89. Points 
+     * that cannot be transformed are given NaN results and reported to the 
+     * listener, as by OSGB36toETRS89(double[]). The output arrays may be the
+     * input arrays.
+     * 
+     * @param eastings - The OSGB36 Eastings.
+     * @param northings - The OSGB36 Northings.
+     * @param resultEastings - Receives the ETRS89 Eastings.
+     * @param resultNorthings - Receives the ETRS89 Northings.
+     * @param offset - The index of the first point in every array.
+     * @param length - The number of points to convert.
+     */
+    public void OSGB36toETRS89(double[] eastings, double[] northings,
+            double[] resultEastings, double[] resultNorthings, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            OSGB36toETRS89(eastings[i], northings[i], resultEastings, i, resultNorthings, i);
+        }
+    }
+
+    /**
+     *  Converts a batch of OSGB36 Easting/Northing values to ETRS89, marking
+     * the points that cannot be transformed in a status array rather than 
+     * failing: OUTSIDE_GRID or OUTSIDE_MODEL when an estimate leaves the 
+     * OSTN02 transformation boundary, or NOT_CONVERGED. Those points are 
+     * given NaN results and the listener is not called for them. The output
+     * arrays may be the input arrays.
+     * 
+     * @param eastings - The OSGB36 Eastings.
+     * @param northings - The OSGB36 Northings.
+     * @param resultEastings - Receives the ETRS89 Eastings.
+     * @param resultNorthings - Receives the ETRS89 Northings.
+     * @param status - Receives the ConversionStatus of each point.
+     * @param offset - The index of the first point in every array.
+     * @param length - The number of points to convert.
+     * @return - The number of points that could not be transformed.
+     */
+    public int OSGB36toETRS89(double[] eastings, double[] northings,
+            double[] resultEastings, double[] resultNorthings, int[] status,
+            int offset, int length) {
+        int failed = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int s = unshift(eastings[i], northings[i], resultEastings, i,
+                    resultNorthings, i);
+            status[i] = s;
+            if (s != ConversionStatus.OK) {
+                failed++;
             }
         }
-        System.out.print(" Complete!");
+        return failed;
+    }
+
+    /**
+     *  Converts a single OSGB36 Easting/Northing to ETRS89, storing the 
+     * result at the given indexes. A point that cannot be transformed is
+     * reported to the listener and given a result of NaN, NaN.
+     */
+    private void OSGB36toETRS89(double easting, double northing,
+            double[] eastings, int eastAt, double[] northings, int northAt) {
+        int status = unshift(easting, northing, eastings, eastAt, northings, northAt);
+        if (status != ConversionStatus.OK && listener != null) {
+            listener.error("Unable to invert the OSTN02 shift at " + easting + ","
+                    + northing + ": " + ConversionStatus.getName(status),
+                    new OutsideTransformationBoundaryException());
+        }
+    }
+
+    /**
+     *  Inverts the OSTN02 shift at a single point by iteration (see 
+     * OSGB36toETRS89), storing the result at the given indexes: NaN, NaN
+     * unless the status returned is OK. Every estimate is checked against 
+     * the validity map, as the shift of a point off the grid is meaningless.
+     * 
+     * @return - The ConversionStatus of the point.
+     */
+    private int unshift(double easting, double northing,
+            double[] eastings, int eastAt, double[] northings, int northAt) {
+        ValidityMap validity = grid.getValidity();
+        double e = easting;
+        double n = northing;
+        int status = ConversionStatus.NOT_CONVERGED;
+        for (int i = 0; i < MAX_SHIFT_ITERATIONS; i++) {
+            status = validity.check(e, n);
+            if (status != ConversionStatus.OK) {
+                break;
+            }
+            grid.shift(e, n, eastings, eastAt, northings, northAt);
+            double de = easting - eastings[eastAt];
+            double dn = northing - northings[northAt];
+            e += de;
+            n += dn;
+            if (Math.abs(de) < SHIFT_TOLERANCE && Math.abs(dn) < SHIFT_TOLERANCE) {
+                eastings[eastAt] = e;
+                northings[northAt] = n;
+                return ConversionStatus.OK;
+            }
+            status = ConversionStatus.NOT_CONVERGED;
+        }
+        eastings[eastAt] = Double.NaN;
+        northings[northAt] = Double.NaN;
+        return status;
+    }
+
+    /**
+     *  This method converts Easting and Northing back to Latitude and 
+     * Longitude: the inverse of gratToGrid.
+     * 
+     * @param easting
+     * @param northing
+     * @param ellipsoid - Use either GPSConverter.ARIY1920 or GPSConverter.GRS80
+     * @param projection - Use either GPSConverter.NATIONAL_GRID or GPSConverter.ITM
+     * @return The latitude and longitude values results[0] = latitude, 
+     * results[1] = longitude
+     */
+    public double[] gridToGrat(double easting, double northing, int ellipsoid,
+            int projection) {
+        double[] results = new double[2];
+        kernels[ellipsoid][projection].unproject(easting, northing, results, 0,
+                results, 1);
         return results;
     }
+
+    /**
+     *  Converts a batch of Easting and Northing values back to Latitude and 
+     * Longitude without allocating per point.
+     * 
+     * @param eastings - The Eastings.
+     * @param northings - The Northings.
+     * @param latitudes - Receives the Latitudes.
+     * @param longitudes - Receives the Longitudes.
+     * @param offset - The index of the first point in every array.
+     * @param length - The number of points to convert.
+     * @param ellipsoid - GPSConverter.AIRY1830 or GPSConverter.GRS80
+     * @param projection - GPSConverter.NATIONAL_GRID or GPSConverter.ITM
+     */
+    public void gridToGrat(double[] eastings, double[] northings,
+            double[] latitudes, double[] longitudes, int offset, int length,
+            int ellipsoid, int projection) {
+        TransverseMercator kernel = kernels[ellipsoid][projection];
+        for (int i = offset; i < offset + length; i++) {
+            kernel.unproject(eastings[i], northings[i], latitudes, i, longitudes, i);
+        }
+    }
+
+    /**
+     *  A simple method to convert Longitude/Latitude to a decimal format.
+     * The sign applies to the whole value, and hemisphere letters and the 
+     * other forms read by AngleParser are accepted.
+     * @param value Of the format DD:MM:SS.SSSS
+     * @return the decimal format as a double, or NaN if the value is malformed
+     */
+    public double stringToDecimal(String value) {
+        return AngleParser.parse(value, AngleParser.ANGLE);
+    }
 }
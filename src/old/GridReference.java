@@ -0,0 +1,36 @@
+package old;
+
+/**
+ *  An OSGB36 Easting and Northing produced by a StreamingConverter, carrying
+ * the id of the Coordinate it was converted from and its ConversionStatus:
+ * a fix that could not be transformed has NaN Easting and Northing and a 
+ * status other than ConversionStatus.OK.
+ * 
+ * @author Nathan Collins
+ */
+public final class GridReference {
+
+    public final long id;
+    public final double easting;
+    public final double northing;
+    public final int status;
+
+    public GridReference(long id, double easting, double northing) {
+        this(id, easting, northing, ConversionStatus.OK);
+    }
+
+    public GridReference(long id, double easting, double northing, int status) {
+        this.id = id;
+        this.easting = easting;
+        this.northing = northing;
+        this.status = status;
+    }
+
+    @Override
+    public String toString() {
+        if (status != ConversionStatus.OK) {
+            return id + ": " + ConversionStatus.getName(status);
+        }
+        return id + ": " + easting + "," + northing;
+    }
+}
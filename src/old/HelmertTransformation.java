@@ -0,0 +1,115 @@
+package old;
+
+/**
+ *  A seven parameter Helmert transformation between two geodetic datums, 
+ * applied to latitudes and longitudes: each point is converted to earth
+ * centred cartesian coordinates on the source ellipsoid, translated, rotated
+ * and scaled, and converted back on the target ellipsoid. Points are taken 
+ * to lie on the source ellipsoid (zero height), which moves the horizontal
+ * result by well under a millimeter for the heights of the British Isles.
+ * 
+ * <p>The rotations follow the position vector convention (EPSG method 
+ * 9606, as used by the PROJ towgs84 parameters). The inverse applies the 
+ * negated parameters, which is exact to first order - well within the 
+ * meter or so that a Helmert fit to a national datum is good for.</p>
+ * 
+ * <p>Instances are immutable and may be shared between threads.</p>
+ *
+ * @author Nathan Collins
+ */
+public final class HelmertTransformation extends Transformation {
+
+    private static final double ARC_SECONDS = Math.PI / (180 * 3600);
+    private final Ellipsoid source;
+    private final Ellipsoid target;
+    private final double tx;
+    private final double ty;
+    private final double tz;
+    private final double rx;
+    private final double ry;
+    private final double rz;
+    private final double s;
+
+    /**
+     * @param source - The ellipsoid of the source datum.
+     * @param target - The ellipsoid of the target datum.
+     * @param tx - The X translation (meters).
+     * @param ty - The Y translation (meters).
+     * @param tz - The Z translation (meters).
+     * @param rx - The X rotation (arc seconds).
+     * @param ry - The Y rotation (arc seconds).
+     * @param rz - The Z rotation (arc seconds).
+     * @param s - The scale change (parts per million).
+     */
+    public HelmertTransformation(Ellipsoid source, Ellipsoid target, double tx,
+            double ty, double tz, double rx, double ry, double rz, double s) {
+        this.source = source;
+        this.target = target;
+        this.tx = tx;
+        this.ty = ty;
+        this.tz = tz;
+        this.rx = rx * ARC_SECONDS;
+        this.ry = ry * ARC_SECONDS;
+        this.rz = rz * ARC_SECONDS;
+        this.s = s * 1e-6;
+    }
+
+    @Override
+    public void forward(double[] latitudes, double[] longitudes,
+            double[] resultLatitudes, double[] resultLongitudes, int offset, int length) {
+        transform(latitudes, longitudes, resultLatitudes, resultLongitudes,
+                offset, length, source, target, 1);
+    }
+
+    @Override
+    public void inverse(double[] latitudes, double[] longitudes,
+            double[] resultLatitudes, double[] resultLongitudes, int offset, int length) {
+        transform(latitudes, longitudes, resultLatitudes, resultLongitudes,
+                offset, length, target, source, -1);
+    }
+
+    private void transform(double[] latitudes, double[] longitudes,
+            double[] resultLatitudes, double[] resultLongitudes, int offset,
+            int length, Ellipsoid from, Ellipsoid to, int sign) {
+        double a1 = from.getA();
+        double e21 = from.getE2();
+        double a2 = to.getA();
+        double b2 = to.getB();
+        double e22 = to.getE2();
+        double ep22 = e22 / (1 - e22);
+        double scale = 1 + sign * s;
+        double x0 = sign * tx;
+        double y0 = sign * ty;
+        double z0 = sign * tz;
+        double rX = sign * rx;
+        double rY = sign * ry;
+        double rZ = sign * rz;
+        for (int i = offset; i < offset + length; i++) {
+            // To cartesian on the source ellipsoid:
+            double lat = Math.toRadians(latitudes[i]);
+            double lon = Math.toRadians(longitudes[i]);
+            double sinLat = Math.sin(lat);
+            double cosLat = Math.cos(lat);
+            double v = a1 / Math.sqrt(1 - e21 * sinLat * sinLat);
+            double x = v * cosLat * Math.cos(lon);
+            double y = v * cosLat * Math.sin(lon);
+            double z = (1 - e21) * v * sinLat;
+
+            // Position vector rotation:
+            double x2 = x0 + scale * (x - rZ * y + rY * z);
+            double y2 = y0 + scale * (rZ * x + y - rX * z);
+            double z2 = z0 + scale * (-rY * x + rX * y + z);
+
+            // Back to latitude and longitude on the target ellipsoid, by 
+            // Bowring's formula (sub-millimeter near the surface):
+            double p = Math.sqrt(x2 * x2 + y2 * y2);
+            double t = z2 * a2 / (p * b2);
+            double cosTheta = 1 / Math.sqrt(1 + t * t);
+            double sinTheta = t * cosTheta;
+            double phi = Math.atan2(z2 + ep22 * b2 * sinTheta * sinTheta * sinTheta,
+                    p - e22 * a2 * cosTheta * cosTheta * cosTheta);
+            resultLatitudes[i] = Math.toDegrees(phi);
+            resultLongitudes[i] = Math.toDegrees(Math.atan2(y2, x2));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package old;
+
+/**
+ *  The ellipsoidal Lambert azimuthal equal area projection (EPSG method 
+ * 9820), as used by ETRS89-LAEA (EPSG:3035) for pan-European statistics. 
+ * The formulae are those of IOGP Guidance Note 7-2; the inverse uses the 
+ * series for the latitude from the authalic latitude, which is good to 
+ * well under a millimeter.
+ * 
+ * <p>Instances are immutable and may be shared between threads.</p>
+ *
+ * @author Nathan Collins
+ */
+public final class LambertAzimuthalEqualArea extends Transformation {
+
+    private final double a;
+    private final double e;
+    private final double e2;
+    private final double lat0;
+    private final double long0;
+    private final double E0;
+    private final double N0;
+    private final double qP;
+    private final double Rq;
+    private final double D;
+    private final double sinBeta0;
+    private final double cosBeta0;
+    // The authalic to geodetic latitude series:
+    private final double c2;
+    private final double c4;
+    private final double c6;
+
+    /**
+     * @param ellipsoid - The ellipsoid.
+     * @param lat0 - The latitude of the natural origin in degrees.
+     * @param long0 - The longitude of the natural origin in degrees.
+     * @param E0 - The false Easting (meters).
+     * @param N0 - The false Northing (meters).
+     */
+    public LambertAzimuthalEqualArea(Ellipsoid ellipsoid, double lat0,
+            double long0, double E0, double N0) {
+        this.a = ellipsoid.getA();
+        this.e2 = ellipsoid.getE2();
+        this.e = Math.sqrt(e2);
+        this.lat0 = Math.toRadians(lat0);
+        this.long0 = Math.toRadians(long0);
+        this.E0 = E0;
+        this.N0 = N0;
+        this.qP = q(1);
+        this.Rq = a * Math.sqrt(qP / 2);
+        double sin0 = Math.sin(this.lat0);
+        double beta0 = Math.asin(q(sin0) / qP);
+        this.sinBeta0 = Math.sin(beta0);
+        this.cosBeta0 = Math.cos(beta0);
+        this.D = a * (Math.cos(this.lat0) / Math.sqrt(1 - e2 * sin0 * sin0))
+                / (Rq * cosBeta0);
+        double e4 = e2 * e2;
+        double e6 = e4 * e2;
+        this.c2 = e2 / 3 + 31 * e4 / 180 + 517 * e6 / 5040;
+        this.c4 = 23 * e4 / 360 + 251 * e6 / 3780;
+        this.c6 = 761 * e6 / 45360;
+    }
+
+    /** @return - q for a latitude with the given sine. */
+    private double q(double sin) {
+        return (1 - e2) * (sin / (1 - e2 * sin * sin)
+                - Math.log((1 - e * sin) / (1 + e * sin)) / (2 * e));
+    }
+
+    @Override
+    public void forward(double[] latitudes, double[] longitudes,
+            double[] eastings, double[] northings, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            double sin = Math.sin(Math.toRadians(latitudes[i]));
+            double L = Math.toRadians(longitudes[i]) - long0;
+            double sinBeta = q(sin) / qP;
+            double cosBeta = Math.sqrt(1 - sinBeta * sinBeta);
+            double cosL = Math.cos(L);
+            double B = Rq * Math.sqrt(2 / (1 + sinBeta0 * sinBeta + cosBeta0 * cosBeta * cosL));
+            double easting = E0 + B * D * cosBeta * Math.sin(L);
+            double northing = N0 + (B / D) * (cosBeta0 * sinBeta - sinBeta0 * cosBeta * cosL);
+            eastings[i] = easting;
+            northings[i] = northing;
+        }
+    }
+
+    @Override
+    public void inverse(double[] eastings, double[] northings,
+            double[] latitudes, double[] longitudes, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            double dE = eastings[i] - E0;
+            double dN = northings[i] - N0;
+            double rho = Math.sqrt((dE / D) * (dE / D) + (D * dN) * (D * dN));
+            if (rho == 0) {
+                latitudes[i] = Math.toDegrees(lat0);
+                longitudes[i] = Math.toDegrees(long0);
+                continue;
+            }
+            double C = 2 * Math.asin(rho / (2 * Rq));
+            double sinC = Math.sin(C);
+            double cosC = Math.cos(C);
+            double beta = Math.asin(cosC * sinBeta0 + D * dN * sinC * cosBeta0 / rho);
+            double L = Math.atan2(dE * sinC,
+                    D * rho * cosBeta0 * cosC - D * D * dN * sinBeta0 * sinC);
+            double lat = beta + c2 * Math.sin(2 * beta) + c4 * Math.sin(4 * beta)
+                    + c6 * Math.sin(6 * beta);
+            latitudes[i] = Math.toDegrees(lat);
+            longitudes[i] = Math.toDegrees(long0 + L);
+        }
+    }
+}
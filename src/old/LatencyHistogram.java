@@ -0,0 +1,152 @@
+package old;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  A histogram of latencies in nanoseconds with a fixed relative precision,
+ * in the manner of HdrHistogram: values below 64 have a bucket each, and
+ * every power of two above that is split into 32 equal buckets, so any
+ * value is reported to within about 3% whatever its magnitude. The buckets
+ * are a fixed array of counters, so recording allocates nothing and never
+ * blocks, and any number of threads may record at once.
+ *
+ * <p>Percentiles are read from a Snapshot, a copy of the counts at one
+ * moment that may be read at leisure while recording carries on.</p>
+ *
+ * @author Nathan Collins
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param nanos - A latency; negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(index(nanos));
+        total.add(nanos);
+        long m = max.get();
+        while (nanos > m && !max.compareAndSet(m, nanos)) {
+            m = max.get();
+        }
+    }
+
+    /** Clears the histogram. Values recorded meanwhile may or may not survive. */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.reset();
+        max.set(0);
+    }
+
+    /** @return - A copy of the histogram as it is now. */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, total.sum(), max.get());
+    }
+
+    /** @return - The bucket of a value. */
+    static int index(long value) {
+        if (value < (SUB_BUCKETS << 1)) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /** @return - The largest value that falls in a bucket. */
+    static long highestValue(int index) {
+        if (index < (SUB_BUCKETS << 1)) {
+            return index;
+        }
+        int shift = (index >>> SUB_BITS) - 1;
+        long sub = (index & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+        long highest = ((sub + 1) << shift) - 1;
+        return highest < 0 ? Long.MAX_VALUE : highest;
+    }
+
+    /**
+     *  The counts of a LatencyHistogram at one moment.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long total;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long total, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+        }
+
+        /** @return - The number of values recorded. */
+        public long getCount() {
+            return count;
+        }
+
+        /** @return - The sum of the values recorded, in nanoseconds. */
+        public long getTotal() {
+            return total;
+        }
+
+        /** @return - The mean value in nanoseconds, or 0 if there are none. */
+        public double getMean() {
+            return count == 0 ? 0 : (double) total / count;
+        }
+
+        /** @return - The largest value recorded, in nanoseconds. */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @param percentile - The percentile, 0 to 100.
+         * @return - The value in nanoseconds that the given percentage of the
+         * values are at or below, to within the precision of the buckets, or
+         * 0 if there are none.
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percentile / 100 * count);
+            if (rank < 1) {
+                rank = 1;
+            }
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValue(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.0fns p50=%dns p99=%dns max=%dns",
+                    count, getMean(), getValueAtPercentile(50),
+                    getValueAtPercentile(99), max);
+        }
+    }
+}
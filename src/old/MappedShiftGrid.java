@@ -0,0 +1,276 @@
+package old;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32C;
+
+/**
+ *  A shift grid read from the compact binary form of the OSTN02 data, as 
+ * written by {@link #write(ShiftGrid, String)} (see util.CompileGrid). The 
+ * file is memory-mapped read-only, so opening it is near-instant, the shifts
+ * never touch the Java heap and every process on the host shares the same 
+ * page-cache copy. The buffer is only read by absolute index, so the grid 
+ * may be read by any number of threads at once.
+ * 
+ * <p>File layout (big-endian):</p>
+ * <pre>
+ * int  magic       "OSTN"
+ * int  version     3
+ * int  columns     701
+ * int  rows        1251
+ * int  checksum    CRC32C of everything after the header
+ * int  valid cells
+ * int[columns * rows]  east shifts (millimeters)
+ * int[columns * rows]  north shifts (millimeters)
+ * int[columns * rows]  geoid heights (millimeters)
+ * int[columns * rows]  vertical datum flags
+ * long[]               the ValidityMap cell bitmap
+ * </pre>
+ * Each plane is in record order, i.e. node (x, y) is entry x + y * columns.
+ * The OSTN02 values are published to the millimeter so the fixed-point form
+ * is exact, and dividing by 1000 gives the same double as parsing the text.
+ * The validity map is stored ready-built, so that a new process can convert
+ * its first point without reading every datum flag; the checksum lets a
+ * deployed file be verified (see open(String, boolean) and util.CompileGrid).
+ * Files of older versions are rejected and must be compiled again.
+ * 
+ * @author Nathan Collins
+ */
+public class MappedShiftGrid extends ShiftGrid {
+
+    public static final int MAGIC = 0x4F53544E;
+    public static final int VERSION = 3;
+    static final int HEADER_SIZE = 24;
+    static final double SCALE = 1000;
+    // Plane offsets:
+    private static final int EAST = HEADER_SIZE;
+    private static final int NORTH = EAST + RECORDS * 4;
+    private static final int GEOID = NORTH + RECORDS * 4;
+    private static final int FLAG = GEOID + RECORDS * 4;
+    private static final int VALIDITY = FLAG + RECORDS * 4;
+    private static final int VALIDITY_LONGS = 
+            (ValidityMap.CELL_COLUMNS * ValidityMap.CELL_ROWS + 63) >>> 6;
+    private static final int FILE_SIZE = VALIDITY + VALIDITY_LONGS * 8;
+    static final int PLANES = 4;
+    private final ByteBuffer buffer;
+
+    private MappedShiftGrid(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public double getEastShift(int x, int y) {
+        return buffer.getInt(EAST + ((x + y * COLUMNS) << 2)) / SCALE;
+    }
+
+    @Override
+    public double getNorthShift(int x, int y) {
+        return buffer.getInt(NORTH + ((x + y * COLUMNS) << 2)) / SCALE;
+    }
+
+    @Override
+    public double getGeoidShift(int x, int y) {
+        return buffer.getInt(GEOID + ((x + y * COLUMNS) << 2)) / SCALE;
+    }
+
+    @Override
+    public int getDatumFlag(int x, int y) {
+        return buffer.getInt(FLAG + ((x + y * COLUMNS) << 2));
+    }
+
+    /**
+     *  Reads the validity map stored in the file rather than building it.
+     */
+    @Override
+    protected ValidityMap createValidity() {
+        long[] cells = new long[VALIDITY_LONGS];
+        ByteBuffer section = buffer.duplicate();
+        section.position(VALIDITY);
+        section.asLongBuffer().get(cells);
+        return ValidityMap.ofCells(cells);
+    }
+
+    /**
+     *  Maps a compiled grid file into memory without verifying its checksum,
+     * so that only the pages used are ever read.
+     * 
+     * @param path - The path of the compiled grid file.
+     * @return - The mapped grid.
+     * @throws IOException - Thrown when the file cannot be read or is not a 
+     * compiled OSTN02 grid.
+     */
+    public static MappedShiftGrid open(String path) throws IOException {
+        return open(path, false);
+    }
+
+    /**
+     *  Maps a compiled grid file into memory.
+     * 
+     * @param path - The path of the compiled grid file.
+     * @param verify - Whether to check the whole file against its checksum
+     * first, which reads every page of it (a few milliseconds).
+     * @return - The mapped grid.
+     * @throws IOException - Thrown when the file cannot be read, is not a 
+     * compiled OSTN02 grid or does not match its checksum.
+     */
+    public static MappedShiftGrid open(String path, boolean verify) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            checkHeader(channel, path);
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, FILE_SIZE);
+            if (verify) {
+                verify(buffer, path);
+            }
+            // The mapping remains valid once the channel is closed.
+            return new MappedShiftGrid(buffer);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     *  Checks that the data of a whole compiled grid matches the checksum
+     * and valid cell count in its header.
+     * 
+     * @param buffer - The whole file.
+     * @param path - The path of the file, for error messages.
+     * @throws IOException - Thrown when the file is corrupt.
+     */
+    static void verify(ByteBuffer buffer, String path) throws IOException {
+        if (checksum(buffer) != buffer.getInt(16)) {
+            throw new IOException("Grid file checksum mismatch, compile it again: " + path);
+        }
+        long[] cells = new long[VALIDITY_LONGS];
+        ByteBuffer section = buffer.duplicate();
+        section.position(VALIDITY);
+        section.asLongBuffer().get(cells);
+        if (ValidityMap.ofCells(cells).getValidCells() != buffer.getInt(20)) {
+            throw new IOException("Grid file validity map is corrupt: " + path);
+        }
+    }
+
+    /**
+     *  Reads the validity map stored in a compiled grid file.
+     * 
+     * @param channel - The open file, whose header has been checked.
+     * @return - The map.
+     * @throws IOException - Thrown when the file cannot be read.
+     */
+    static ValidityMap readValidity(FileChannel channel) throws IOException {
+        ByteBuffer section = ByteBuffer.allocate(VALIDITY_LONGS * 8);
+        while (section.hasRemaining()) {
+            if (channel.read(section, VALIDITY + section.position()) < 0) {
+                throw new IOException("Unexpected end of grid file");
+            }
+        }
+        section.flip();
+        long[] cells = new long[VALIDITY_LONGS];
+        section.asLongBuffer().get(cells);
+        return ValidityMap.ofCells(cells);
+    }
+
+    /** @return - The CRC32C of everything after the header of a whole file. */
+    private static int checksum(ByteBuffer buffer) {
+        ByteBuffer data = buffer.duplicate();
+        data.position(HEADER_SIZE);
+        data.limit(FILE_SIZE);
+        CRC32C crc = new CRC32C();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    /**
+     *  Checks the size and header of a compiled grid file.
+     * 
+     * @param channel - The open file.
+     * @param path - The path of the file, for error messages.
+     * @throws IOException - Thrown when the file is not a compiled OSTN02 grid.
+     */
+    static void checkHeader(FileChannel channel, String path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException("Invalid grid file size: " + path);
+            }
+        }
+        checkHeader(header, path);
+        if (channel.size() != FILE_SIZE) {
+            throw new IOException("Invalid grid file size: " + path);
+        }
+    }
+
+    private static void checkHeader(ByteBuffer buffer, String path) throws IOException {
+        if (buffer.getInt(0) == MAGIC && buffer.getInt(4) != VERSION) {
+            throw new IOException("Grid file version " + buffer.getInt(4)
+                    + " is not supported, compile it again: " + path);
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(8) != COLUMNS 
+                || buffer.getInt(12) != ROWS) {
+            throw new IOException("Not a compiled OSTN02 grid: " + path);
+        }
+    }
+
+    /**
+     * @param plane - 0 for the east shifts, 1 north, 2 geoid, 3 datum flags.
+     * @return - The file offset of the first entry of the plane.
+     */
+    static long planeOffset(int plane) {
+        return HEADER_SIZE + (long) plane * RECORDS * 4;
+    }
+
+    /**
+     *  Writes a grid out in the compiled binary form.
+     * 
+     * @param grid - The grid to write.
+     * @param path - The path of the file to create.
+     * @throws IOException - Thrown when the file cannot be written.
+     */
+    public static void write(ShiftGrid grid, String path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(FILE_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(COLUMNS);
+        buffer.putInt(ROWS);
+        buffer.position(HEADER_SIZE);
+        for (int y = 0; y < ROWS; y++) {
+            for (int x = 0; x < COLUMNS; x++) {
+                buffer.putInt((int) Math.round(grid.getEastShift(x, y) * SCALE));
+            }
+        }
+        for (int y = 0; y < ROWS; y++) {
+            for (int x = 0; x < COLUMNS; x++) {
+                buffer.putInt((int) Math.round(grid.getNorthShift(x, y) * SCALE));
+            }
+        }
+        for (int y = 0; y < ROWS; y++) {
+            for (int x = 0; x < COLUMNS; x++) {
+                buffer.putInt((int) Math.round(grid.getGeoidShift(x, y) * SCALE));
+            }
+        }
+        for (int y = 0; y < ROWS; y++) {
+            for (int x = 0; x < COLUMNS; x++) {
+                buffer.putInt(grid.getDatumFlag(x, y));
+            }
+        }
+        ValidityMap validity = ValidityMap.of(grid);
+        for (long bits : validity.cells()) {
+            buffer.putLong(bits);
+        }
+        buffer.putInt(16, checksum(buffer));
+        buffer.putInt(20, validity.getValidCells());
+        buffer.flip();
+        FileOutputStream out = new FileOutputStream(path);
+        try {
+            FileChannel channel = out.getChannel();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package old;
+
+/**
+ *  The OSTN02 grid shift as a Transformation, from ETRS89 Eastings and 
+ * Northings on the National Grid projection to OSGB36 ones. It runs the
+ * batch methods of a GPSConverter, so the results are identical to its 
+ * ETRS89toOSGB36 and OSGB36toETRS89 and it runs on the converter's batch 
+ * engine, if any.
+ *
+ * @author Nathan Collins
+ */
+public final class OSTN02Shift extends Transformation {
+
+    private final GPSConverter converter;
+
+    /**
+     * @param converter - The converter whose OSTN02 grid is used.
+     */
+    public OSTN02Shift(GPSConverter converter) {
+        this.converter = converter;
+    }
+
+    @Override
+    public void forward(double[] eastings, double[] northings,
+            double[] resultEastings, double[] resultNorthings, int offset, int length) {
+        converter.ETRS89toOSGB36(eastings, northings, resultEastings,
+                resultNorthings, offset, length);
+    }
+
+    @Override
+    public void inverse(double[] eastings, double[] northings,
+            double[] resultEastings, double[] resultNorthings, int offset, int length) {
+        converter.OSGB36toETRS89(eastings, northings, resultEastings,
+                resultNorthings, offset, length);
+    }
+}
@@ -0,0 +1,118 @@
+package old;
+
+/**
+ *  A precomputed conversion from one coordinate system to another, as 
+ * returned by CrsRegistry.getPipeline: the steps of the source system 
+ * undone in reverse order, then the steps of the target system. Steps the
+ * two systems share at the start are left out, so e.g. Irish Grid to ITM 
+ * never passes through a needless round trip, and a system to itself does
+ * nothing at all.
+ * 
+ * <p>Geographic coordinates are (latitude, longitude) in degrees and 
+ * projected ones (Easting, Northing) in meters. A batch runs each step over
+ * the whole batch in turn, and allocates nothing.</p>
+ * 
+ * <p>Pipelines are immutable and may be shared between threads.</p>
+ *
+ * @author Nathan Collins
+ */
+public final class Pipeline {
+
+    private final CoordinateSystem source;
+    private final CoordinateSystem target;
+    private final Transformation[] steps;
+    private final boolean[] inverse;
+
+    Pipeline(CoordinateSystem source, CoordinateSystem target) {
+        this.source = source;
+        this.target = target;
+        Transformation[] from = source.getSteps();
+        Transformation[] to = target.getSteps();
+        int shared = 0;
+        while (shared < from.length && shared < to.length 
+                && from[shared] == to[shared]) {
+            shared++;
+        }
+        int count = from.length + to.length - 2 * shared;
+        steps = new Transformation[count];
+        inverse = new boolean[count];
+        int s = 0;
+        for (int i = from.length - 1; i >= shared; i--) {
+            steps[s] = from[i];
+            inverse[s++] = true;
+        }
+        for (int i = shared; i < to.length; i++) {
+            steps[s++] = to[i];
+        }
+    }
+
+    public CoordinateSystem getSource() {
+        return source;
+    }
+
+    public CoordinateSystem getTarget() {
+        return target;
+    }
+
+    /** @return - The number of steps the pipeline runs. */
+    public int getLength() {
+        return steps.length;
+    }
+
+    /**
+     *  Converts a single point.
+     * 
+     * @param x - The latitude or Easting in the source system.
+     * @param y - The longitude or Northing in the source system.
+     * @return - A double array with two values: the latitude or Easting and
+     * the longitude or Northing in the target system.
+     */
+    public double[] transform(double x, double y) {
+        double[] xs = { x };
+        double[] ys = { y };
+        transform(xs, ys, xs, ys, 0, 1);
+        return new double[] { xs[0], ys[0] };
+    }
+
+    /**
+     *  Converts a batch of points. The output arrays may be the input arrays.
+     * 
+     * @param xs - The latitudes or Eastings in the source system.
+     * @param ys - The longitudes or Northings in the source system.
+     * @param resultXs - Receives the latitudes or Eastings in the target 
+     * system.
+     * @param resultYs - Receives the longitudes or Northings in the target 
+     * system.
+     * @param offset - The index of the first point in every array.
+     * @param length - The number of points to convert.
+     */
+    public void transform(double[] xs, double[] ys, double[] resultXs,
+            double[] resultYs, int offset, int length) {
+        if (steps.length == 0) {
+            if (xs != resultXs) {
+                System.arraycopy(xs, offset, resultXs, offset, length);
+            }
+            if (ys != resultYs) {
+                System.arraycopy(ys, offset, resultYs, offset, length);
+            }
+            return;
+        }
+        // The first step reads the input, the rest work in place:
+        double[] inXs = xs;
+        double[] inYs = ys;
+        for (int s = 0; s < steps.length; s++) {
+            if (inverse[s]) {
+                steps[s].inverse(inXs, inYs, resultXs, resultYs, offset, length);
+            } else {
+                steps[s].forward(inXs, inYs, resultXs, resultYs, offset, length);
+            }
+            inXs = resultXs;
+            inYs = resultYs;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return source.getCode() + " -> " + target.getCode();
+    }
+}
@@ -0,0 +1,136 @@
+package old;
+
+/**
+ *  An approximation of a TransverseMercator projection over Great Britain
+ * that needs no trigonometry: the projection is evaluated exactly at every
+ * node of a 1/16&deg; lattice of latitudes and longitudes, and each lattice
+ * cell holds the bilinear coefficients of its Easting and Northing,
+ * <pre>
+ * E(t, u) = a + b * t + c * u + d * t * u
+ * </pre>
+ * where t and u are the position of the point across the cell (0 to 1). A
+ * point is projected from one 64-byte block with a few multiply-adds, as
+ * CellShiftGrid shifts it. This is GPSConverter.FAST_PROJECTION.
+ *
+ * <p>The lattice covers latitudes 49.5&deg; to 61.25&deg; and longitudes
+ * -9.5&deg; to 3.75&deg;, which contains the whole 700 x 1250km OSTN02 grid
+ * with a margin, in 188 x 212 cells (2.6MB, built in a few milliseconds).
+ * Within it the Easting and Northing are within MAX_ERROR of the exact
+ * projection, for either ellipsoid and either projection: the largest error
+ * found by a dense scan is 0.48m, near the middle of a cell. Halving the
+ * cell size would quarter the error, at four times the memory.
+ * old.Test checks the bound, as does bench.TierBenchmark over its 
+ * workloads. Points outside the lattice are projected exactly.</p>
+ *
+ * <p>The lattice is immutable once built and may be shared between
+ * threads.</p>
+ *
+ * @author Nathan Collins
+ */
+public final class ProjectionLattice {
+
+    /** The largest error in the Easting or Northing, in meters, in the lattice. */
+    public static final double MAX_ERROR = 0.5;
+    public static final double MIN_LATITUDE = 49.5;
+    public static final double MIN_LONGITUDE = -9.5;
+    /** Cells per degree, a power of two so the cell size is exact. */
+    public static final int CELLS_PER_DEGREE = 16;
+    public static final int COLUMNS = (int) ((3.75 - MIN_LONGITUDE) * CELLS_PER_DEGREE);
+    public static final int ROWS = (int) ((61.25 - MIN_LATITUDE) * CELLS_PER_DEGREE);
+    private static final int STRIDE = 8;
+    private final TransverseMercator kernel;
+    /** a, b, c, d of the Easting then of the Northing, per cell. */
+    private final double[] coefficients;
+
+    /**
+     *  Builds the lattice by projecting every node exactly.
+     *
+     * @param kernel - The projection to approximate.
+     */
+    public ProjectionLattice(TransverseMercator kernel) {
+        this.kernel = kernel;
+        this.coefficients = new double[COLUMNS * ROWS * STRIDE];
+        double[] eastings = new double[(COLUMNS + 1) * (ROWS + 1)];
+        double[] northings = new double[eastings.length];
+        for (int y = 0; y <= ROWS; y++) {
+            double latitude = MIN_LATITUDE + (double) y / CELLS_PER_DEGREE;
+            for (int x = 0; x <= COLUMNS; x++) {
+                int node = x + y * (COLUMNS + 1);
+                kernel.project(latitude, MIN_LONGITUDE + (double) x / CELLS_PER_DEGREE,
+                        eastings, node, northings, node);
+            }
+        }
+        for (int y = 0; y < ROWS; y++) {
+            for (int x = 0; x < COLUMNS; x++) {
+                int node = x + y * (COLUMNS + 1);
+                int i = (x + y * COLUMNS) * STRIDE;
+                fill(eastings, node, i);
+                fill(northings, node, i + 4);
+            }
+        }
+    }
+
+    /** Stores the bilinear coefficients of a cell from its corner nodes. */
+    private void fill(double[] nodes, int node, int at) {
+        double v00 = nodes[node];
+        double v10 = nodes[node + 1];
+        double v01 = nodes[node + COLUMNS + 1];
+        double v11 = nodes[node + COLUMNS + 2];
+        coefficients[at] = v00;
+        coefficients[at + 1] = v10 - v00;
+        coefficients[at + 2] = v01 - v00;
+        coefficients[at + 3] = v11 - v10 - v01 + v00;
+    }
+
+    /** @return - The projection this approximates. */
+    public TransverseMercator getKernel() {
+        return kernel;
+    }
+
+    /**
+     *  Projects a latitude and longitude approximately, storing the Easting
+     * and Northing at the given indexes.
+     *
+     * @param latitude - The latitude in degrees.
+     * @param longitude - The longitude in degrees.
+     * @param eastings - Receives the Easting at eastAt.
+     * @param eastAt - The index to store the Easting at.
+     * @param northings - Receives the Northing at northAt.
+     * @param northAt - The index to store the Northing at.
+     */
+    public void project(double latitude, double longitude, double[] eastings,
+            int eastAt, double[] northings, int northAt) {
+        double fx = (longitude - MIN_LONGITUDE) * CELLS_PER_DEGREE;
+        double fy = (latitude - MIN_LATITUDE) * CELLS_PER_DEGREE;
+        // Written so that NaN is projected exactly too:
+        if (!(fx >= 0 && fx < COLUMNS && fy >= 0 && fy < ROWS)) {
+            kernel.project(latitude, longitude, eastings, eastAt, northings, northAt);
+            return;
+        }
+        int x = (int) fx;
+        int y = (int) fy;
+        double t = fx - x;
+        double u = fy - y;
+        int i = (x + y * COLUMNS) * STRIDE;
+        double[] k = coefficients;
+        eastings[eastAt] = k[i] + t * k[i + 1] + u * (k[i + 2] + t * k[i + 3]);
+        northings[northAt] = k[i + 4] + t * k[i + 5] + u * (k[i + 6] + t * k[i + 7]);
+    }
+
+    /**
+     *  Projects a batch of latitudes and longitudes approximately.
+     *
+     * @param latitudes - The latitudes in degrees.
+     * @param longitudes - The longitudes in degrees.
+     * @param eastings - Receives the Eastings.
+     * @param northings - Receives the Northings.
+     * @param offset - The index of the first point in every array.
+     * @param length - The number of points to project.
+     */
+    public void project(double[] latitudes, double[] longitudes, double[] eastings,
+            double[] northings, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            project(latitudes[i], longitudes[i], eastings, i, northings, i);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package old;
+
+/**
+ *  The intermediate terms of a single transverse Mercator projection, named 
+ * after the formulae B1 - B8 of the Ordnance Survey guide.
+ * 
+ * @author Nathan Collins
+ */
+public final class ProjectionTerms {
+
+    public final double latitude;
+    public final double longitude;
+    public final double e2;     // B1
+    public final double n;      // B2
+    public final double v;      // B3
+    public final double p;      // B4
+    public final double eta2;   // B5
+    public final double M;      // B6
+    public final double I;
+    public final double II;
+    public final double III;
+    public final double IIIA;
+    public final double IV;
+    public final double V;
+    public final double VI;
+    public final double easting;    // B8
+    public final double northing;   // B7
+
+    ProjectionTerms(double latitude, double longitude, double e2, double n,
+            double v, double p, double eta2, double M, double I, double II,
+            double III, double IIIA, double IV, double V, double VI,
+            double easting, double northing) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.e2 = e2;
+        this.n = n;
+        this.v = v;
+        this.p = p;
+        this.eta2 = eta2;
+        this.M = M;
+        this.I = I;
+        this.II = II;
+        this.III = III;
+        this.IIIA = IIIA;
+        this.IV = IV;
+        this.V = V;
+        this.VI = VI;
+        this.easting = easting;
+        this.northing = northing;
+    }
+
+    @Override
+    public String toString() {
+        return "v = " + v + "\np = " + p + "\neta2 = " + eta2 + "\nM = " + M
+                + "\nI = " + I + "\nII = " + II + "\nIII = " + III
+                + "\nIIIA = " + IIIA + "\nIV = " + IV + "\nV = " + V
+                + "\nVI = " + VI + "\n\nE = " + easting + "\nN = " + northing;
+    }
+}
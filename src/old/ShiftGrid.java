@@ -0,0 +1,125 @@
+package old;
+
+/**
+ *  The OSTN02 transformation grid. The grid covers the area 0-700km east and
+ * 0-1250km north of the National Grid false origin with a node every 1km,
+ * giving 701 x 1251 nodes. Each node holds the east, north and geoid height
+ * shifts (in meters) to apply at that point, and the OSGM02 vertical datum 
+ * flag of the point (see VerticalDatum).
+ * 
+ * <p>Nodes are addressed by their east and north index, so node (x, y) lies
+ * at Easting x * 1000, Northing y * 1000.</p>
+ * 
+ * <p>Implementations must allow any number of threads to read the grid at 
+ * once, as one grid is shared by every GPSConverter using it.</p>
+ * 
+ * @author Nathan Collins
+ */
+public abstract class ShiftGrid {
+
+    public static final int COLUMNS = 701;
+    public static final int ROWS = 1251;
+    public static final int RECORDS = COLUMNS * ROWS;
+    public static final double SPACING = 1000;
+    private volatile ValidityMap validity;
+
+    /**
+     * @param x - The east index.
+     * @param y - The north index.
+     * @return - The value to shift the easting value by.
+     */
+    public abstract double getEastShift(int x, int y);
+
+    /**
+     * @param x - The east index.
+     * @param y - The north index.
+     * @return - The value to shift the northing value by.
+     */
+    public abstract double getNorthShift(int x, int y);
+
+    /**
+     * @param x - The east index.
+     * @param y - The north index.
+     * @return - The geoid height at the node.
+     */
+    public abstract double getGeoidShift(int x, int y);
+
+    /**
+     * @param x - The east index.
+     * @param y - The north index.
+     * @return - The vertical datum flag at the node, see VerticalDatum.
+     */
+    public abstract int getDatumFlag(int x, int y);
+
+    /**
+     *  Applies the bilinearly interpolated east and north shifts to a point 
+     * that is known to be in a valid cell (see getValidity). By default the 
+     * four corners are read through getEastShift and getNorthShift; grids 
+     * that can interpolate their own representation more cheaply override 
+     * this.
+     * 
+     * @param easting - The ETRS89 Easting.
+     * @param northing - The ETRS89 Northing.
+     * @param eastings - Receives the OSGB36 Easting.
+     * @param eastAt - The index to store the Easting at.
+     * @param northings - Receives the OSGB36 Northing.
+     * @param northAt - The index to store the Northing at.
+     */
+    protected void shift(double easting, double northing,
+            double[] eastings, int eastAt, double[] northings, int northAt) {
+        int eastIndex = (int) easting / 1000;
+        int northIndex = (int) northing / 1000;
+
+        // Compute shifts:
+        double se0 = getEastShift(eastIndex, northIndex);
+        double se1 = getEastShift(eastIndex + 1, northIndex);
+        double se2 = getEastShift(eastIndex + 1, northIndex + 1);
+        double se3 = getEastShift(eastIndex, northIndex + 1);
+
+        double sn0 = getNorthShift(eastIndex, northIndex);
+        double sn1 = getNorthShift(eastIndex + 1, northIndex);
+        double sn2 = getNorthShift(eastIndex + 1, northIndex + 1);
+        double sn3 = getNorthShift(eastIndex, northIndex + 1);
+
+        // Compute offsets:
+        double dx = easting - eastIndex * SPACING;
+        double dy = northing - northIndex * SPACING;
+
+        double t = dx / 1000;
+        double u = dy / 1000;
+
+        double se = (1 - t) * (1 - u) * se0 + t * (1 - u) * se1
+                + t * u * se2 + (1 - t) * u * se3;
+        double sn = (1 - t) * (1 - u) * sn0 + t * (1 - u) * sn1
+                + t * u * sn2 + (1 - t) * u * sn3;
+
+        eastings[eastAt] = easting + se;
+        northings[northAt] = northing + sn;
+    }
+
+    /**
+     *  Returns the bitmap of the cells points may be transformed in, building
+     * it from the datum flags the first time it is needed. Two threads may 
+     * race to build it, in which case both get an identical map.
+     * 
+     * @return - The validity map of the grid.
+     */
+    public ValidityMap getValidity() {
+        ValidityMap map = validity;
+        if (map == null) {
+            map = createValidity();
+            validity = map;
+        }
+        return map;
+    }
+
+    /**
+     *  Builds the validity map. By default every datum flag is read through 
+     * getDatumFlag; grids that can read the flags more cheaply override this.
+     * 
+     * @return - A new validity map.
+     */
+    protected ValidityMap createValidity() {
+        return ValidityMap.of(this);
+    }
+}
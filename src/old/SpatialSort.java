@@ -0,0 +1,85 @@
+package old;
+
+/**
+ *  Orders points by the Morton (Z-order) key of the block of OSTN02 grid 
+ * cells they fall in, so that points in the same or neighbouring blocks are
+ * next to each other. Converting a batch in this order reads the grid a 
+ * region at a time rather than at random, so the records it needs are mostly
+ * still in the CPU cache.
+ *
+ * <p>Blocks are 16 x 16 cells (16km square): the records of one block fit 
+ * easily in the L1 cache, and the 44 x 79 blocks give a 14-bit key, so the
+ * points are ordered by a single counting sort pass. The sort is stable, so
+ * points in the same block keep their original order.</p>
+ *
+ * @author Nathan Collins
+ */
+final class SpatialSort {
+
+    private static final int BLOCK_SHIFT = 4;
+    private static final int BITS = 7;
+    private static final int MAX_BLOCK = (1 << BITS) - 1;
+    private static final int KEYS = 1 << (2 * BITS);
+
+    private SpatialSort() {
+    }
+
+    /**
+     * @param easting - An ETRS89 Easting.
+     * @param northing - An ETRS89 Northing.
+     * @return - The Morton key of the block. Points off the grid are given 
+     * the key of the nearest block.
+     */
+    static int key(double easting, double northing) {
+        return spread(block(easting)) | (spread(block(northing)) << 1);
+    }
+
+    /**
+     *  Sorts a range of points into Morton order, copying their Eastings and
+     * Northings into that order as it goes.
+     *
+     * @param eastings - The ETRS89 Eastings.
+     * @param northings - The ETRS89 Northings.
+     * @param offset - The index of the first point.
+     * @param length - The number of points.
+     * @param sortedEastings - Receives the Eastings in Morton order, from 0.
+     * @param sortedNorthings - Receives the Northings in Morton order, from 0.
+     * @return - The indexes of the points (offset to offset + length - 1) in
+     * Morton order.
+     */
+    static int[] sort(double[] eastings, double[] northings, int offset, int length,
+            double[] sortedEastings, double[] sortedNorthings) {
+        int[] keys = new int[length];
+        int[] starts = new int[KEYS + 1];
+        for (int i = 0; i < length; i++) {
+            int key = key(eastings[offset + i], northings[offset + i]);
+            keys[i] = key;
+            starts[key + 1]++;
+        }
+        for (int k = 0; k < KEYS; k++) {
+            starts[k + 1] += starts[k];
+        }
+        int[] order = new int[length];
+        for (int i = 0; i < length; i++) {
+            int at = starts[keys[i]]++;
+            order[at] = offset + i;
+            sortedEastings[at] = eastings[offset + i];
+            sortedNorthings[at] = northings[offset + i];
+        }
+        return order;
+    }
+
+    /** @return - The block index of a coordinate, clamped to the key range. */
+    private static int block(double coordinate) {
+        int block = ((int) coordinate / 1000) >> BLOCK_SHIFT;
+        return block < 0 ? 0 : block > MAX_BLOCK ? MAX_BLOCK : block;
+    }
+
+    /** @return - The bits of a 7-bit value, moved to the even bit positions. */
+    private static int spread(int v) {
+        v = (v | (v << 4)) & 0x0F0F;
+        v = (v | (v << 2)) & 0x3333;
+        v = (v | (v << 1)) & 0x5555;
+        return v;
+    }
+}
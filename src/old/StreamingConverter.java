@@ -0,0 +1,396 @@
+package old;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ *  Converts a stream of Coordinates to OSGB36 GridReferences in micro-batches
+ * through a GPSConverter. It can be used as a Flow.Processor between a
+ * publisher of fixes and its consumers, or to convert an Iterator lazily.
+ *
+ * <p>Memory is bounded however long the stream runs. As a processor, at most
+ * capacity coordinates are requested from upstream that have not yet been
+ * converted, and a batch is only converted once downstream has demand for
+ * it, so a slow consumer holds back the publisher (backpressure) instead of
+ * filling a queue. Conversion and delivery downstream run on an Executor, 
+ * and each batch is formed from whatever has arrived by the time the 
+ * previous one is done, up to batchSize: under load batches fill up and 
+ * amortise the per-call overhead, while a trickle of fixes is converted as
+ * soon as it arrives rather than waiting for a batch to fill.</p>
+ *
+ * <p>Fixes that cannot be transformed, e.g. off the OSTN02 grid, are emitted
+ * with NaN results and their ConversionStatus (see GridReference) rather 
+ * than failing the stream.</p>
+ *
+ * <p>The counters (received, emitted, batches) and the latency totals are
+ * updated once per batch and may be read at any time.</p>
+ *
+ * @author Nathan Collins
+ */
+public class StreamingConverter implements Flow.Processor<Coordinate, GridReference> {
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final int DEFAULT_CAPACITY = 4096;
+    private final GPSConverter converter;
+    private final int ellipsoid;
+    private final int projection;
+    private final int batchSize;
+    private final Executor executor;
+    // Input ring: written by onNext, read by drain.
+    private final Coordinate[] ring;
+    private final long[] arrivals;
+    private final int mask;
+    private volatile long tail;
+    private long head;
+    // The batch being emitted:
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] eastings;
+    private final double[] northings;
+    private final int[] status;
+    private final long[] ids;
+    private int batchCount;
+    private int batchIndex;
+    // Flow state:
+    private final AtomicReference<Flow.Subscription> upstream = new AtomicReference<Flow.Subscription>();
+    private final AtomicReference<Flow.Subscriber<? super GridReference>> downstream =
+            new AtomicReference<Flow.Subscriber<? super GridReference>>();
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private long upstreamRequested;
+    private volatile boolean done;
+    private volatile Throwable error;
+    private volatile boolean cancelled;
+    // Metrics:
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong emitted = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong convertNanos = new AtomicLong();
+    private final AtomicLong queueNanos = new AtomicLong();
+    private final AtomicLong maxQueueNanos = new AtomicLong();
+
+    /**
+     *  Creates a streaming converter with the default batch size and capacity,
+     * converting on the common fork-join pool.
+     *
+     * @param converter - The converter to convert with.
+     * @param ellipsoid - GPSConverter.AIRY1830 or GPSConverter.GRS80
+     * @param projection - GPSConverter.NATIONAL_GRID or GPSConverter.ITM
+     */
+    public StreamingConverter(GPSConverter converter, int ellipsoid, int projection) {
+        this(converter, ellipsoid, projection, DEFAULT_BATCH_SIZE,
+                DEFAULT_CAPACITY, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param converter - The converter to convert with.
+     * @param ellipsoid - GPSConverter.AIRY1830 or GPSConverter.GRS80
+     * @param projection - GPSConverter.NATIONAL_GRID or GPSConverter.ITM
+     * @param batchSize - The most coordinates converted in one batch.
+     * @param capacity - The most coordinates buffered, rounded up to a power
+     * of two and to at least batchSize.
+     * @param executor - Runs the conversion and delivers the results.
+     */
+    public StreamingConverter(GPSConverter converter, int ellipsoid,
+            int projection, int batchSize, int capacity, Executor executor) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+        }
+        this.converter = converter;
+        this.ellipsoid = ellipsoid;
+        this.projection = projection;
+        this.batchSize = batchSize;
+        this.executor = executor;
+        int size = Integer.highestOneBit(Math.max(Math.max(capacity, batchSize), 2) - 1) << 1;
+        ring = new Coordinate[size];
+        arrivals = new long[size];
+        mask = size - 1;
+        latitudes = new double[batchSize];
+        longitudes = new double[batchSize];
+        eastings = new double[batchSize];
+        northings = new double[batchSize];
+        status = new int[batchSize];
+        ids = new long[batchSize];
+    }
+
+    /**
+     *  Lazily converts the coordinates of an Iterator. Coordinates are pulled
+     * a batch at a time as the returned iterator is consumed, so only one
+     * batch is ever held. The returned iterator must be used by one thread,
+     * and this converter must not also be used as a processor.
+     *
+     * @param coordinates - The coordinates to convert.
+     * @return - The converted grid references, in the same order.
+     */
+    public Iterator<GridReference> convert(final Iterator<Coordinate> coordinates) {
+        return new Iterator<GridReference>() {
+
+            public boolean hasNext() {
+                if (batchIndex < batchCount) {
+                    return true;
+                }
+                int n = 0;
+                while (n < batchSize && coordinates.hasNext()) {
+                    Coordinate c = coordinates.next();
+                    ids[n] = c.id;
+                    latitudes[n] = c.latitude;
+                    longitudes[n] = c.longitude;
+                    n++;
+                }
+                if (n == 0) {
+                    return false;
+                }
+                received.addAndGet(n);
+                convertBatch(n, System.nanoTime());
+                return true;
+            }
+
+            public GridReference next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                emitted.incrementAndGet();
+                int i = batchIndex++;
+                return new GridReference(ids[i], eastings[i], northings[i], status[i]);
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    public void subscribe(Flow.Subscriber<? super GridReference> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException();
+        }
+        if (!downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                public void request(long n) {
+                }
+
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException(
+                    "A StreamingConverter only supports one subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            public void request(long n) {
+                if (n <= 0) {
+                    error = new IllegalArgumentException("Non-positive request: " + n);
+                    done = true;
+                } else {
+                    long current;
+                    do {
+                        current = demand.get();
+                    } while (!demand.compareAndSet(current, addCap(current, n)));
+                }
+                drain();
+            }
+
+            public void cancel() {
+                cancelled = true;
+                Flow.Subscription s = upstream.get();
+                if (s != null) {
+                    s.cancel();
+                }
+            }
+        });
+        drain();
+    }
+
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (!upstream.compareAndSet(null, subscription) || cancelled) {
+            subscription.cancel();
+            return;
+        }
+        drain();
+    }
+
+    public void onNext(Coordinate item) {
+        long t = tail;
+        int slot = (int) t & mask;
+        ring[slot] = item;
+        arrivals[slot] = System.nanoTime();
+        tail = t + 1;
+        drain();
+    }
+
+    public void onError(Throwable throwable) {
+        error = throwable;
+        done = true;
+        drain();
+    }
+
+    public void onComplete() {
+        done = true;
+        drain();
+    }
+
+    /** @return - The number of coordinates received. */
+    public long getReceived() {
+        return received.get();
+    }
+
+    /** @return - The number of grid references emitted. */
+    public long getEmitted() {
+        return emitted.get();
+    }
+
+    /** @return - The number of batches converted. */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /** @return - The mean number of coordinates per batch. */
+    public double getMeanBatchSize() {
+        long b = batches.get();
+        return b == 0 ? 0 : (double) received.get() / b;
+    }
+
+    /** @return - The mean time spent converting a coordinate (ns). */
+    public double getMeanConvertNanos() {
+        long n = received.get();
+        return n == 0 ? 0 : (double) convertNanos.get() / n;
+    }
+
+    /** @return - The mean time a coordinate waited to be converted (ns). */
+    public double getMeanQueueNanos() {
+        long n = received.get();
+        return n == 0 ? 0 : (double) queueNanos.get() / n;
+    }
+
+    /** @return - The longest time a coordinate waited to be converted (ns). */
+    public long getMaxQueueNanos() {
+        return maxQueueNanos.get();
+    }
+
+    /**
+     *  Schedules the drain loop unless it is already scheduled or running, in
+     * which case it goes round again.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() == 0) {
+            executor.execute(drainLoop);
+        }
+    }
+
+    /**
+     *  Emits converted results while there is demand, converts the next batch
+     * once the current one has been emitted, and requests more coordinates
+     * from upstream as buffer space frees. Only one thread runs the loop at a
+     * time.
+     */
+    private final Runnable drainLoop = new Runnable() {
+        public void run() {
+            int missed = 1;
+            do {
+                Flow.Subscriber<? super GridReference> subscriber = downstream.get();
+                Flow.Subscription subscription = upstream.get();
+                if (subscriber != null && subscription != null && !cancelled) {
+                    emit(subscriber);
+                    if (!cancelled) {
+                        long buffered = upstreamRequested - head;
+                        long free = ring.length - buffered;
+                        if (!done && free >= Math.min(batchSize, ring.length / 2)) {
+                            upstreamRequested += free;
+                            subscription.request(free);
+                        }
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    };
+
+    private void emit(Flow.Subscriber<? super GridReference> subscriber) {
+        while (true) {
+            if (error != null) {
+                // Also stops the publisher when the error is downstream's:
+                cancelled = true;
+                upstream.get().cancel();
+                subscriber.onError(error);
+                return;
+            }
+            long requested = demand.get();
+            long sent = 0;
+            while (batchIndex < batchCount && sent < requested) {
+                int i = batchIndex++;
+                subscriber.onNext(new GridReference(ids[i], eastings[i], northings[i],
+                        status[i]));
+                sent++;
+                if (cancelled) {
+                    return;
+                }
+            }
+            if (sent > 0) {
+                emitted.addAndGet(sent);
+                if (requested != Long.MAX_VALUE) {
+                    demand.addAndGet(-sent);
+                }
+            }
+            if (batchIndex < batchCount) {
+                // Waiting for demand.
+                return;
+            }
+            boolean finished = done;
+            long available = tail - head;
+            if (available == 0) {
+                if (finished) {
+                    cancelled = true;
+                    subscriber.onComplete();
+                }
+                return;
+            }
+            if (demand.get() == 0) {
+                // Leave the coordinates buffered until there is demand.
+                return;
+            }
+            int n = (int) Math.min(available, batchSize);
+            long start = System.nanoTime();
+            long waited = 0;
+            long longest = 0;
+            for (int i = 0; i < n; i++) {
+                int slot = (int) head & mask;
+                Coordinate c = ring[slot];
+                ring[slot] = null;
+                long wait = start - arrivals[slot];
+                waited += wait;
+                longest = Math.max(longest, wait);
+                ids[i] = c.id;
+                latitudes[i] = c.latitude;
+                longitudes[i] = c.longitude;
+                head++;
+            }
+            received.addAndGet(n);
+            queueNanos.addAndGet(waited);
+            long max;
+            while (longest > (max = maxQueueNanos.get())
+                    && !maxQueueNanos.compareAndSet(max, longest)) {
+            }
+            convertBatch(n, start);
+        }
+    }
+
+    private void convertBatch(int n, long start) {
+        converter.convertToOSGB36(latitudes, longitudes, eastings, northings,
+                status, 0, n, ellipsoid, projection);
+        convertNanos.addAndGet(System.nanoTime() - start);
+        batches.incrementAndGet();
+        batchCount = n;
+        batchIndex = 0;
+    }
+
+    private static long addCap(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+}
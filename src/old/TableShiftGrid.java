@@ -0,0 +1,97 @@
+package old;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ *  A shift grid held in memory exactly as it is laid out in the
+ * OSTN02_OSGM02_GB.txt file: one double array per record of the form 
+ * [record number, easting, northing, east shift, north shift, geoid height, 
+ * datum flag].
+ * 
+ * @author Nathan Collins
+ */
+public class TableShiftGrid extends ShiftGrid {
+
+    private static final int columns = 7;
+    private final double[][] OSTN02Data;
+
+    private TableShiftGrid(double[][] data) {
+        OSTN02Data = data;
+    }
+
+    @Override
+    public double getEastShift(int x, int y) {
+        return OSTN02Data[x + (y * COLUMNS)][3];
+    }
+
+    @Override
+    public double getNorthShift(int x, int y) {
+        return OSTN02Data[x + (y * COLUMNS)][4];
+    }
+
+    @Override
+    public double getGeoidShift(int x, int y) {
+        return OSTN02Data[x + (y * COLUMNS)][5];
+    }
+
+    @Override
+    public int getDatumFlag(int x, int y) {
+        return (int) OSTN02Data[x + (y * COLUMNS)][6];
+    }
+
+    /**
+     *  This utility method is responsible for reading the OSTN02 transformation
+     * data and loading it to system memory. The file is parsed as bytes by a
+     * CsvReader, which gives exactly the values Double.parseDouble would.
+     * 
+     * @param src - The path of the OSTN02_OSGM02_GB.txt file.
+     * @param listener - Receives progress and errors, or null for none.
+     * @return - The grid full of transformation values. Returns null if the 
+     * file is unable to be read or found.
+     */
+    public static TableShiftGrid readTable(String src, ConversionListener listener) {
+        if (listener != null) {
+            listener.message("Reading table...");
+        }
+        double[][] results = new double[RECORDS][columns];
+        FileChannel in = null;
+        try {
+            in = new FileInputStream(src).getChannel();
+            CsvReader reader = new CsvReader(in, 1 << 16);
+            int i = 0;
+            while (i < results.length && reader.nextRow()) {
+                for (int j = 0; j < columns; j++) {
+                    results[i][j] = reader.getDouble(j);
+                }
+                i++;
+            }
+        } catch (FileNotFoundException ex) {
+            if (listener != null) {
+                listener.error("OSTN02 data file not found!", ex);
+            }
+            return null;
+        } catch (IOException ex) {
+            if (listener != null) {
+                listener.error("Unable to read file!", ex);
+            }
+            return null;
+        } finally {
+            try {
+                if (in != null) {
+                    in.close();
+                }
+            } catch (IOException ex) {
+                if (listener != null) {
+                    listener.error("Unable to close the OSTN02 file reader!", ex);
+                }
+            }
+        }
+        if (listener != null) {
+            listener.message("Complete!");
+        }
+        return new TableShiftGrid(results);
+    }
+}
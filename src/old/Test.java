@@ -2,17 +2,376 @@ package old;
 
 public class Test {
 
+	private static int failures;
+
 	/**
 	 * @param args
 	 */
 	public static void main(String[] args) {
-		GPSConverter c = new GPSConverter();
+		GPSConverter c = new GPSConverter(null, new ConsoleListener(true));
 		
 		String Lat =  "52:39:27.2531";
 		String Long = "1:43:4.5177";
 		
-		c.gratToGrid(c.stringToDecimal(Lat), c.stringToDecimal(Long), c.AIRY1820, c.NATIONAL_GRID);
+		double[] results = c.gratToGrid(c.stringToDecimal(Lat), c.stringToDecimal(Long), GPSConverter.AIRY1820, GPSConverter.NATIONAL_GRID);
+		// Expected: E = 651409.903, N = 313177.270
+		check("E", results[0], 651409.903, 0.001);
+		check("N", results[1], 313177.270, 0.001);
+
+		// The inverse of the same example (C-series):
+		double[] inverse = c.gridToGrat(651409.903, 313177.270, GPSConverter.AIRY1820, GPSConverter.NATIONAL_GRID);
+		System.out.println("Lat = " + inverse[0]);
+		System.out.println("Long = " + inverse[1]);
+		check("Lat", inverse[0], c.stringToDecimal(Lat), 0.0001 / 3600);
+		check("Long", inverse[1], c.stringToDecimal(Long), 0.0001 / 3600);
+
+		// The sign applies to the whole angle, from a '-' or a hemisphere letter:
+		check("-2:12:0.4806", c.stringToDecimal("-2:12:0.4806"), -(2 + 12 / 60.0 + 0.4806 / 3600), 1e-12);
+		check("1:43:4.5177 W", AngleParser.parse("1:43:4.5177 W", AngleParser.LONGITUDE), -c.stringToDecimal(Long), 0);
+		check("52:60:00", Double.isNaN(c.stringToDecimal("52:60:00")) ? 1 : 0, 1, 0);
+		// Fields longer than the fast path holds exactly are still parsed as the JDK does:
+		check("17 digits", c.stringToDecimal("0.12345678901234567"), Double.parseDouble("0.12345678901234567"), 0);
+
+		// ETRS89-LAEA from the registry, the IOGP Guidance Note 7-2 example:
+		CrsRegistry registry = new CrsRegistry(c);
+		double[] laea = registry.getPipeline(CrsRegistry.ETRS89, CrsRegistry.ETRS89_LAEA).transform(50, 5);
+		check("E (LAEA)", laea[0], 3962799.45, 0.005);
+		check("N (LAEA)", laea[1], 2999718.85, 0.005);
+
+		// Time the projection over the same point, without a listener:
+		c = new GPSConverter();
+		checkProjectionTiers(c);
+		double lat = c.stringToDecimal(Lat);
+		double lon = c.stringToDecimal(Long);
+		int points = 1000000;
+		double[] eastings = new double[points];
+		double[] northings = new double[points];
+		double[] lats = new double[points];
+		double[] lons = new double[points];
+		java.util.Arrays.fill(lats, lat);
+		java.util.Arrays.fill(lons, lon);
+		for (int i = 0; i < 5; i++) {
+			long start = System.nanoTime();
+			c.gratToGrid(lats, lons, eastings, northings, 0, points, GPSConverter.AIRY1820, GPSConverter.NATIONAL_GRID);
+			long time = System.nanoTime() - start;
+			System.out.println("gratToGrid: " + (time / points) + " ns/point");
+		}
+		for (int i = 0; i < 5; i++) {
+			long start = System.nanoTime();
+			c.gridToGrat(eastings, northings, lats, lons, 0, points, GPSConverter.AIRY1820, GPSConverter.NATIONAL_GRID);
+			long time = System.nanoTime() - start;
+			System.out.println("gridToGrat: " + (points * 1000000000L / time) + " points/sec");
+		}
+
+		// The OSTN02 inverse needs the grid, so is only timed when it exists:
+		ShiftGrid grid = GPSConverter.loadGrid(null);
+		if (grid != null) {
+			c = new GPSConverter(grid);
+			// The height conversion gives the same grid reference as the 2D one:
+			double[] en = c.convertToOSGB36(lat, lon, GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+			double[] enh = c.convertToOSGB36(lat, lon, 108.05);
+			check("E (with height)", enh[0], en[0], 0);
+			check("N (with height)", enh[1], en[1], 0);
+			System.out.println("H = " + enh[2] + " (" + VerticalDatum.getName((int) enh[3]) + ")");
+			// Points off the grid are marked in the status array, not thrown:
+			double[] outside = { -1000, 350000, 800000, Double.NaN };
+			int[] status = new int[outside.length];
+			double[] shifted = new double[outside.length];
+			int failed = c.ETRS89toOSGB36(outside, outside, shifted, shifted, status, 0, outside.length);
+			check("Points outside", failed, outside.length - 1, 0);
+			check("Status", status[1], ConversionStatus.OK, 0);
+			check("Status (off the grid)", status[0], ConversionStatus.OUTSIDE_GRID, 0);
+			// The batch on an engine checks the points too, rather than shifting them:
+			GPSConverter engine = new GPSConverter(grid, null, BatchEngine.load());
+			engine.ETRS89toOSGB36(outside, outside, shifted, shifted, 0, outside.length);
+			check("Engine (off the grid)", shifted[0], 0, 0);
+			check("Engine (outside model)", shifted[2], 0, 0);
+			// And counts them in its metrics:
+			ConverterMetrics metrics = new ConverterMetrics();
+			engine = new GPSConverter(grid, null, BatchEngine.load(), metrics);
+			engine.ETRS89toOSGB36(outside, outside, shifted, shifted, 0, outside.length);
+			check("Engine points outside", metrics.getOutsideGrid() + metrics.getOutsideModel(), outside.length - 1, 0);
+			// The buffer batch times both stages, and converts as the array batch does:
+			metrics = new ConverterMetrics();
+			GPSConverter timed = new GPSConverter(grid, null, null, metrics);
+			double[] bufferLats = { 52.5, 53.1 };
+			double[] bufferLons = { -1.5, -2.2 };
+			java.nio.DoubleBuffer bufferEastings = java.nio.DoubleBuffer.allocate(2);
+			java.nio.DoubleBuffer bufferNorthings = java.nio.DoubleBuffer.allocate(2);
+			timed.convertToOSGB36(java.nio.DoubleBuffer.wrap(bufferLats), java.nio.DoubleBuffer.wrap(bufferLons),
+					bufferEastings, bufferNorthings, 0, 2, GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+			check("Buffer projection timed", metrics.getLatency(ConverterMetrics.PROJECTION).snapshot().getCount(), 1, 0);
+			check("Buffer shift timed", metrics.getLatency(ConverterMetrics.SHIFT).snapshot().getCount(), 1, 0);
+			check("Buffer points", metrics.getPointsConverted(), 2, 0);
+			double[] arrayEastings = new double[2];
+			double[] arrayNorthings = new double[2];
+			c.convertToOSGB36(bufferLats, bufferLons, arrayEastings, arrayNorthings, 0, 2, GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+			check("Buffer E", bufferEastings.get(1), arrayEastings[1], 0);
+			check("Buffer N", bufferNorthings.get(1), arrayNorthings[1], 0);
+			// The inverse shift fails the same way, rather than drifting:
+			double[] back = c.OSGB36toETRS89(new double[] { 50000, 50000 });
+			check("Inverse (outside model)", Double.isNaN(back[0]) ? 1 : 0, 1, 0);
+			failed = c.OSGB36toETRS89(outside, outside, shifted, shifted, status, 0, outside.length);
+			check("Inverse points outside", failed, outside.length - 1, 0);
+			check("Inverse status", status[1], ConversionStatus.OK, 0);
+			checkStreaming(c);
+			checkCsv(new String[0]);
+			checkCsv(new String[] { "-parallel", "2" });
+			java.util.Random random = new java.util.Random(0);
+			for (int i = 0; i < points; i++) {
+				eastings[i] = 100000 + random.nextDouble() * 500000;
+				northings[i] = 100000 + random.nextDouble() * 900000;
+			}
+			for (int i = 0; i < 5; i++) {
+				long start = System.nanoTime();
+				c.convertFromOSGB36(eastings, northings, lats, lons, 0, points, GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+				long time = System.nanoTime() - start;
+				System.out.println("convertFromOSGB36: " + (points * 1000000000L / time) + " points/sec");
+			}
+		}
+		if (failures > 0) {
+			System.err.println(failures + " checks failed!");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Converts a small UoB Mapper file with UoBConverter, with the given
+	 * options before the file, and checks that a row off the grid is written
+	 * with empty Easting and Northing fields rather than 0,0, and that a short
+	 * row and a blank line are written empty rather than failing the file.
+	 */
+	private static void checkCsv(String[] options) {
+		try {
+			java.io.File in = java.io.File.createTempFile("uob", ".csv");
+			java.io.File out = new java.io.File(in.getPath().replace(".csv", "-converted.csv"));
+			java.nio.file.Files.write(in.toPath(), java.util.Arrays.asList(
+					"id,Date,Latitude,Longitude,Dip_Azimuth,Dip,LocalityId,Easting,Northing",
+					"0,2012-01-01,52.500000,-1.500000,10,20,3,,",
+					"1,2012-01-01,45.000000,-1.500000,10,20,3,,",
+					"2,2012-01-01,52.500000",
+					""));
+			String[] args = java.util.Arrays.copyOf(options, options.length + 1);
+			args[options.length] = in.getPath();
+			UoBConverter.main(args);
+			java.util.List<String> rows = java.nio.file.Files.readAllLines(out.toPath());
+			String name = "CSV " + String.join(" ", options);
+			check(name + " rows", rows.size(), 5, 0);
+			check(name + " (on the grid)", rows.get(1).endsWith("3,,,") ? 1 : 0, 0, 0);
+			check(name + " (off the grid)", rows.get(2).endsWith("3,,,") ? 1 : 0, 1, 0);
+			check(name + " (short row)", rows.get(3).equals("2,2012-01-01,52.500000,") ? 1 : 0, 1, 0);
+			check(name + " (blank line)", rows.get(4).equals(",") ? 1 : 0, 1, 0);
+			in.delete();
+			out.delete();
+		} catch (java.io.IOException ex) {
+			System.err.println("CSV conversion failed: " + ex);
+		}
+	}
+
+	/**
+	 * Checks that FAST_PROJECTION is within ProjectionLattice.MAX_ERROR of
+	 * EXACT_PROJECTION over a dense scan of the whole lattice, four points
+	 * across every cell (including the middle, where the interpolation is
+	 * furthest from the nodes), for every ellipsoid and projection; and that
+	 * an unknown tier is rejected.
+	 */
+	private static void checkProjectionTiers(GPSConverter c) {
+		final int steps = 4;
+		int columns = ProjectionLattice.COLUMNS * steps;
+		int rows = ProjectionLattice.ROWS * steps;
+		int n = columns * rows;
+		double[] lat = new double[n];
+		double[] lon = new double[n];
+		double step = 1.0 / (ProjectionLattice.CELLS_PER_DEGREE * steps);
+		for (int y = 0; y < rows; y++) {
+			for (int x = 0; x < columns; x++) {
+				lat[x + y * columns] = ProjectionLattice.MIN_LATITUDE + y * step;
+				lon[x + y * columns] = ProjectionLattice.MIN_LONGITUDE + x * step;
+			}
+		}
+		double[] exactEastings = new double[n];
+		double[] exactNorthings = new double[n];
+		double[] eastings = new double[n];
+		double[] northings = new double[n];
+		int[] ellipsoids = { GPSConverter.AIRY1820, GPSConverter.GRS80 };
+		int[] projections = { GPSConverter.NATIONAL_GRID, GPSConverter.ITM };
+		for (int ellipsoid : ellipsoids) {
+			for (int projection : projections) {
+				c.gratToGrid(lat, lon, exactEastings, exactNorthings, 0, n, ellipsoid,
+						projection, GPSConverter.EXACT_PROJECTION);
+				c.gratToGrid(lat, lon, eastings, northings, 0, n, ellipsoid, projection,
+						GPSConverter.FAST_PROJECTION);
+				double error = 0;
+				for (int i = 0; i < n; i++) {
+					error = Math.max(error, Math.max(Math.abs(eastings[i] - exactEastings[i]),
+							Math.abs(northings[i] - exactNorthings[i])));
+				}
+				check("Fast projection error " + ellipsoid + "," + projection, error, 0,
+						ProjectionLattice.MAX_ERROR);
+			}
+		}
+		boolean rejected = false;
+		try {
+			c.gratToGrid(lat, lon, eastings, northings, 0, 1, GPSConverter.GRS80,
+					GPSConverter.NATIONAL_GRID, 2);
+		} catch (IllegalArgumentException ex) {
+			rejected = true;
+		}
+		check("Unknown tier rejected", rejected ? 1 : 0, 1, 0);
+	}
+
+	/**
+	 * Streams fixes from a SubmissionPublisher through a StreamingConverter to
+	 * a subscriber that requests one at a time, checking that they arrive in
+	 * order with their statuses, that no more are held than the converter's
+	 * capacity and batch, and that it counts them; then that a non-positive
+	 * request fails the stream and cancels the publisher.
+	 */
+	private static void checkStreaming(GPSConverter c) {
+		final int fixes = 20000;
+		final int batch = 16;
+		final int capacity = 64;
+		java.util.concurrent.ExecutorService executor =
+				java.util.concurrent.Executors.newFixedThreadPool(2);
+		StreamingConverter converter = new StreamingConverter(c, GPSConverter.GRS80,
+				GPSConverter.NATIONAL_GRID, batch, capacity, executor);
+		final java.util.concurrent.atomic.AtomicLong delivered =
+				new java.util.concurrent.atomic.AtomicLong();
+		final java.util.concurrent.atomic.AtomicLong received =
+				new java.util.concurrent.atomic.AtomicLong();
+		final java.util.concurrent.atomic.AtomicLong held =
+				new java.util.concurrent.atomic.AtomicLong();
+		final java.util.concurrent.atomic.AtomicLong outOfOrder =
+				new java.util.concurrent.atomic.AtomicLong();
+		final java.util.concurrent.atomic.AtomicLong wrongStatus =
+				new java.util.concurrent.atomic.AtomicLong();
+		final java.util.concurrent.CountDownLatch complete =
+				new java.util.concurrent.CountDownLatch(1);
+		java.util.concurrent.SubmissionPublisher<Coordinate> publisher =
+				new java.util.concurrent.SubmissionPublisher<Coordinate>(executor, 16);
+		// Counts what the publisher hands the converter:
+		final StreamingConverter processor = converter;
+		publisher.subscribe(new java.util.concurrent.Flow.Subscriber<Coordinate>() {
+			public void onSubscribe(java.util.concurrent.Flow.Subscription subscription) {
+				processor.onSubscribe(subscription);
+			}
+
+			public void onNext(Coordinate item) {
+				delivered.incrementAndGet();
+				processor.onNext(item);
+			}
+
+			public void onError(Throwable throwable) {
+				processor.onError(throwable);
+			}
+
+			public void onComplete() {
+				processor.onComplete();
+			}
+		});
+		converter.subscribe(new java.util.concurrent.Flow.Subscriber<GridReference>() {
+			private java.util.concurrent.Flow.Subscription subscription;
+
+			public void onSubscribe(java.util.concurrent.Flow.Subscription subscription) {
+				this.subscription = subscription;
+				subscription.request(1);
+			}
+
+			public void onNext(GridReference item) {
+				long i = received.getAndIncrement();
+				held.set(Math.max(held.get(), delivered.get() - i));
+				if (item.id != i) {
+					outOfOrder.incrementAndGet();
+				}
+				boolean inside = i % 10 != 0;
+				if ((item.status == ConversionStatus.OK) != inside
+						|| Double.isNaN(item.easting) == inside) {
+					wrongStatus.incrementAndGet();
+				}
+				subscription.request(1);
+			}
+
+			public void onError(Throwable throwable) {
+				System.err.println("Streaming failed: " + throwable);
+				complete.countDown();
+			}
+
+			public void onComplete() {
+				complete.countDown();
+			}
+		});
+		for (int i = 0; i < fixes; i++) {
+			// Every tenth fix is off the grid, in the Bay of Biscay:
+			publisher.submit(new Coordinate(i, i % 10 == 0 ? 45 : 52 + i % 7 * 0.1, -1.5));
+		}
+		publisher.close();
+		try {
+			if (!complete.await(60, java.util.concurrent.TimeUnit.SECONDS)) {
+				System.err.println("Streaming did not complete");
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		check("Streamed", received.get(), fixes, 0);
+		check("Streamed out of order", outOfOrder.get(), 0, 0);
+		check("Streamed with the wrong status", wrongStatus.get(), 0, 0);
+		// The ring rounds the capacity up to a power of two (64 here):
+		check("Streamed fixes held", Math.min(held.get(), capacity + batch), held.get(), 0);
+		check("Streaming received", converter.getReceived(), fixes, 0);
+		check("Streaming emitted", converter.getEmitted(), fixes, 0);
+		check("Streaming batch size", Math.min(converter.getMeanBatchSize(), batch),
+				converter.getMeanBatchSize(), 0);
+		System.out.println("Streaming: " + converter.getBatches() + " batches of "
+				+ converter.getMeanBatchSize() + " on average, at most " + held.get()
+				+ " fixes held");
+
+		// A non-positive request is an error, and stops the publisher:
+		final boolean[] cancelled = new boolean[1];
+		final Throwable[] failure = new Throwable[1];
+		final java.util.concurrent.CountDownLatch failed =
+				new java.util.concurrent.CountDownLatch(1);
+		converter = new StreamingConverter(c, GPSConverter.GRS80,
+				GPSConverter.NATIONAL_GRID, batch, capacity, executor);
+		converter.onSubscribe(new java.util.concurrent.Flow.Subscription() {
+			public void request(long n) {
+			}
+
+			public void cancel() {
+				cancelled[0] = true;
+			}
+		});
+		converter.subscribe(new java.util.concurrent.Flow.Subscriber<GridReference>() {
+			public void onSubscribe(java.util.concurrent.Flow.Subscription subscription) {
+				subscription.request(0);
+			}
+
+			public void onNext(GridReference item) {
+			}
+
+			public void onError(Throwable throwable) {
+				failure[0] = throwable;
+				failed.countDown();
+			}
+
+			public void onComplete() {
+				failed.countDown();
+			}
+		});
+		try {
+			failed.await(10, java.util.concurrent.TimeUnit.SECONDS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		check("Request(0) fails", failure[0] instanceof IllegalArgumentException ? 1 : 0, 1, 0);
+		check("Request(0) cancels upstream", cancelled[0] ? 1 : 0, 1, 0);
+		executor.shutdown();
+	}
 
+	private static void check(String name, double value, double expected, double tolerance) {
+		if (Math.abs(value - expected) > tolerance) {
+			System.err.println(name + " = " + value + ", expected " + expected);
+			failures++;
+		}
 	}
 
 }
@@ -0,0 +1,246 @@
+package old;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  A shift grid that is loaded a tile at a time from a compiled grid file 
+ * (see MappedShiftGrid), for devices and small containers that only ever 
+ * convert points in one region. The grid is divided into square tiles of 
+ * tileSize x tileSize nodes (50 x 50km by default) which are read from the 
+ * file the first time a node in them is needed. Loaded tiles are kept within
+ * a memory budget: once it is reached, loading a tile evicts the least 
+ * recently used one, so memory use follows the working set rather than the
+ * whole country.
+ * 
+ * <p>Lookups of loaded tiles take no locks; loading and eviction are 
+ * synchronized. Recency is tracked per load rather than per lookup, so a 
+ * tile counts as used at the time of the most recent load before its last 
+ * lookup - enough to tell the working set from the rest without writing to 
+ * shared state on every lookup.</p>
+ * 
+ * @author Nathan Collins
+ */
+public class TiledShiftGrid extends ShiftGrid implements Closeable {
+
+    public static final int DEFAULT_TILE_SIZE = 50;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int tileSize;
+    private final int tilesAcross;
+    private final int maxTiles;
+    private final AtomicReferenceArray<Tile> tiles;
+    private int loadedTiles;
+    private volatile long clock;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private TiledShiftGrid(RandomAccessFile file, int tileSize, int maxTiles) {
+        this.file = file;
+        this.channel = file.getChannel();
+        this.tileSize = tileSize;
+        this.tilesAcross = (COLUMNS + tileSize - 1) / tileSize;
+        this.maxTiles = maxTiles;
+        int tilesDown = (ROWS + tileSize - 1) / tileSize;
+        this.tiles = new AtomicReferenceArray<Tile>(tilesAcross * tilesDown);
+    }
+
+    /**
+     *  Opens a compiled grid file for tiled loading. No tiles are read until 
+     * they are used.
+     * 
+     * @param path - The path of the compiled grid file.
+     * @param memoryBudget - The most memory (bytes) to hold tiles in. At least
+     * one tile is always held.
+     * @param tileSize - The width and height of a tile, in nodes (km).
+     * @return - The grid.
+     * @throws IOException - Thrown when the file cannot be read or is not a 
+     * compiled OSTN02 grid.
+     */
+    public static TiledShiftGrid open(String path, long memoryBudget, int tileSize)
+            throws IOException {
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("Invalid tile size: " + tileSize);
+        }
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            MappedShiftGrid.checkHeader(file.getChannel(), path);
+        } catch (IOException ex) {
+            file.close();
+            throw ex;
+        }
+        long tileBytes = Tile.bytes(tileSize);
+        int maxTiles = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBudget / tileBytes));
+        return new TiledShiftGrid(file, tileSize, maxTiles);
+    }
+
+    @Override
+    public double getEastShift(int x, int y) {
+        return tile(x, y).shifts[offset(x, y)] / MappedShiftGrid.SCALE;
+    }
+
+    @Override
+    public double getNorthShift(int x, int y) {
+        return tile(x, y).shifts[tileSize * tileSize + offset(x, y)] / MappedShiftGrid.SCALE;
+    }
+
+    @Override
+    public double getGeoidShift(int x, int y) {
+        return tile(x, y).shifts[2 * tileSize * tileSize + offset(x, y)] / MappedShiftGrid.SCALE;
+    }
+
+    @Override
+    public int getDatumFlag(int x, int y) {
+        return tile(x, y).shifts[3 * tileSize * tileSize + offset(x, y)];
+    }
+
+    /**
+     *  Reads the validity map stored in the file, so that no tiles are 
+     * loaded or evicted.
+     */
+    @Override
+    protected ValidityMap createValidity() {
+        try {
+            return MappedShiftGrid.readValidity(channel);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to read the OSTN02 validity map", ex);
+        }
+    }
+
+    /** @return - The number of lookups that found their tile loaded. */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /** @return - The number of lookups that had to load their tile. */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /** @return - The number of tiles evicted to stay within the budget. */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /** @return - The number of tiles currently held in memory. */
+    public synchronized int getLoadedTiles() {
+        return loadedTiles;
+    }
+
+    /** @return - The most tiles held in memory at once. */
+    public int getMaxTiles() {
+        return maxTiles;
+    }
+
+    /**
+     *  Closes the grid file. Tiles that are already loaded remain usable, as
+     * does the validity map if it has been built.
+     */
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private int offset(int x, int y) {
+        return (y % tileSize) * tileSize + x % tileSize;
+    }
+
+    private Tile tile(int x, int y) {
+        int index = (y / tileSize) * tilesAcross + x / tileSize;
+        Tile tile = tiles.get(index);
+        if (tile == null) {
+            return load(index);
+        }
+        hits.increment();
+        long now = clock;
+        if (tile.lastUsed != now) {
+            tile.lastUsed = now;
+        }
+        return tile;
+    }
+
+    private synchronized Tile load(int index) {
+        Tile tile = tiles.get(index);
+        if (tile != null) {
+            // Loaded by another thread while this one waited.
+            hits.increment();
+            return tile;
+        }
+        misses.increment();
+        if (loadedTiles >= maxTiles) {
+            evict();
+        }
+        try {
+            tile = read(index);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to read OSTN02 grid tile " + index, ex);
+        }
+        tile.lastUsed = ++clock;
+        tiles.set(index, tile);
+        loadedTiles++;
+        return tile;
+    }
+
+    private void evict() {
+        int oldest = -1;
+        long oldestUse = Long.MAX_VALUE;
+        for (int i = 0; i < tiles.length(); i++) {
+            Tile tile = tiles.get(i);
+            if (tile != null && tile.lastUsed < oldestUse) {
+                oldest = i;
+                oldestUse = tile.lastUsed;
+            }
+        }
+        tiles.set(oldest, null);
+        loadedTiles--;
+        evictions.increment();
+    }
+
+    private Tile read(int index) throws IOException {
+        int x0 = (index % tilesAcross) * tileSize;
+        int y0 = (index / tilesAcross) * tileSize;
+        int width = Math.min(tileSize, COLUMNS - x0);
+        int height = Math.min(tileSize, ROWS - y0);
+        Tile tile = new Tile(tileSize);
+        ByteBuffer row = ByteBuffer.allocate(width * 4);
+        for (int plane = 0; plane < MappedShiftGrid.PLANES; plane++) {
+            long start = MappedShiftGrid.planeOffset(plane);
+            for (int y = 0; y < height; y++) {
+                row.clear();
+                long position = start + ((long) (y0 + y) * COLUMNS + x0) * 4;
+                while (row.hasRemaining()) {
+                    if (channel.read(row, position + row.position()) < 0) {
+                        throw new IOException("Unexpected end of grid file");
+                    }
+                }
+                row.flip();
+                row.asIntBuffer().get(tile.shifts,
+                        (plane * tileSize + y) * tileSize, width);
+            }
+        }
+        return tile;
+    }
+
+    /**
+     *  The east, north and geoid planes of one tile, in millimeters, and its
+     * datum flags.
+     */
+    private static final class Tile {
+
+        final int[] shifts;
+        volatile long lastUsed;
+
+        Tile(int tileSize) {
+            shifts = new int[MappedShiftGrid.PLANES * tileSize * tileSize];
+        }
+
+        static long bytes(int tileSize) {
+            return (long) MappedShiftGrid.PLANES * tileSize * tileSize * 4 + 16;
+        }
+    }
+}
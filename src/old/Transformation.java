@@ -0,0 +1,39 @@
+package old;
+
+/**
+ *  One step of a conversion between coordinate systems: a map projection, a
+ * datum transformation or a grid shift (see Pipeline). Coordinates are held
+ * as pairs in two arrays: latitude and longitude in degrees for geographic
+ * coordinates, Easting and Northing in meters for projected ones.
+ * 
+ * <p>Implementations precompute everything that does not depend on the 
+ * point in their constructors, are immutable and may be shared between 
+ * threads.</p>
+ *
+ * @author Nathan Collins
+ */
+public abstract class Transformation {
+
+    /**
+     *  Applies the transformation to a batch of points. The output arrays 
+     * may be the input arrays.
+     * 
+     * @param xs - The first coordinates (latitude or Easting).
+     * @param ys - The second coordinates (longitude or Northing).
+     * @param resultXs - Receives the first coordinates.
+     * @param resultYs - Receives the second coordinates.
+     * @param offset - The index of the first point in every array.
+     * @param length - The number of points to transform.
+     */
+    public abstract void forward(double[] xs, double[] ys, double[] resultXs,
+            double[] resultYs, int offset, int length);
+
+    /**
+     *  Applies the inverse of the transformation to a batch of points. The 
+     * output arrays may be the input arrays.
+     * 
+     * @see #forward(double[], double[], double[], double[], int, int)
+     */
+    public abstract void inverse(double[] xs, double[] ys, double[] resultXs,
+            double[] resultYs, int offset, int length);
+}
@@ -0,0 +1,261 @@
+package old;
+
+/**
+ *  A transverse Mercator projection for one ellipsoid and one set of 
+ * projection constants, as described in Annexe B of the Ordnance Survey 
+ * "A guide to coordinate systems in Great Britain".
+ * 
+ * <p>Everything that depends only on the ellipsoid and projection (e2, n, 
+ * the meridional arc coefficients and the origin terms) is computed once by
+ * the constructor, so projecting a point costs one sine, one cosine and one
+ * square root. unproject implements the inverse, Annexe C, whose footpoint 
+ * latitude iteration is bounded by MAX_ITERATIONS (it converges in three or
+ * four). The meridional arc uses the identity 
+ * sin(k(lat - lat0)) * cos(k(lat + lat0)) = (sin(2k lat) - sin(2k lat0)) / 2
+ * so that the multiple-angle terms follow from sin(lat) and cos(lat), and the
+ * B7/B8 series are evaluated in Horner form.</p>
+ * 
+ * <p>As a Transformation, forward projects latitudes and longitudes to 
+ * Eastings and Northings and inverse unprojects them.</p>
+ * 
+ * <p>Instances are immutable and may be shared between threads.</p>
+ * 
+ * @author Nathan Collins
+ */
+public final class TransverseMercator extends Transformation {
+
+    /** The most iterations unproject makes to find the footpoint latitude. */
+    public static final int MAX_ITERATIONS = 10;
+    private static final double TOLERANCE = 0.00001; // meters (0.01mm)
+
+    // Package-private for the batch engines.
+    final double aF0;
+    final double e2;
+    final double n;
+    final double oneMinusE2;
+    final double lat0;
+    final double long0;
+    final double E0;
+    final double N0;
+    // Meridional arc: M = bF0 * (m1 * dLat - m2 * sin2 + m3 * sin4 - m4 * sin6) + M0
+    final double bF0m1;
+    final double bF0m2;
+    final double bF0m3;
+    final double bF0m4;
+    final double I0;
+
+    /**
+     * @param a - Semi-major axis a (meters)
+     * @param b - Semi-minor axis b (meters)
+     * @param F0 - Scale factor on central meridian
+     * @param lat0 - True origin latitude in radians
+     * @param long0 - True origin longitude in radians
+     * @param E0 - Easting of true origin (meters)
+     * @param N0 - Northing of true origin (meters)
+     */
+    public TransverseMercator(double a, double b, double F0, double lat0,
+            double long0, double E0, double N0) {
+        // B1, B2
+        this.n = (a - b) / (a + b);
+        double n2 = n * n;
+        double n3 = n2 * n;
+        this.aF0 = a * F0;
+        this.e2 = (a * a - b * b) / (a * a);
+        this.oneMinusE2 = 1 - e2;
+        this.lat0 = lat0;
+        this.long0 = long0;
+        this.E0 = E0;
+        this.N0 = N0;
+
+        // B6: the halves come from the product-to-sum identity.
+        double bF0 = b * F0;
+        this.bF0m1 = bF0 * (1 + n + (5.0 / 4.0) * n2 + (5.0 / 4.0) * n3);
+        this.bF0m2 = bF0 * (3 * n + 3 * n2 + (21.0 / 8.0) * n3) / 2;
+        this.bF0m3 = bF0 * ((15.0 / 8.0) * n2 + (15.0 / 8.0) * n3) / 2;
+        this.bF0m4 = bF0 * ((35.0 / 24.0) * n3) / 2;
+        this.I0 = N0 + bF0m2 * Math.sin(2 * lat0) - bF0m3 * Math.sin(4 * lat0)
+                + bF0m4 * Math.sin(6 * lat0);
+    }
+
+    /**
+     * @param ellipsoid - The ellipsoid.
+     * @param F0 - Scale factor on central meridian
+     * @param lat0 - True origin latitude in degrees
+     * @param long0 - True origin longitude in degrees
+     * @param E0 - Easting of true origin (meters)
+     * @param N0 - Northing of true origin (meters)
+     */
+    public TransverseMercator(Ellipsoid ellipsoid, double F0, double lat0,
+            double long0, double E0, double N0) {
+        this(ellipsoid.getA(), ellipsoid.getB(), F0, Math.toRadians(lat0),
+                Math.toRadians(long0), E0, N0);
+    }
+
+    @Override
+    public void forward(double[] latitudes, double[] longitudes,
+            double[] eastings, double[] northings, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            project(latitudes[i], longitudes[i], eastings, i, northings, i);
+        }
+    }
+
+    @Override
+    public void inverse(double[] eastings, double[] northings,
+            double[] latitudes, double[] longitudes, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            unproject(eastings[i], northings[i], latitudes, i, longitudes, i);
+        }
+    }
+
+    /**
+     *  Projects a latitude and longitude, storing the Easting and Northing at
+     * the given indexes.
+     * 
+     * @param latitude - The latitude in degrees.
+     * @param longitude - The longitude in degrees.
+     * @param eastings - Receives the Easting at eastAt.
+     * @param eastAt - The index to store the Easting at.
+     * @param northings - Receives the Northing at northAt.
+     * @param northAt - The index to store the Northing at.
+     */
+    public void project(double latitude, double longitude, double[] eastings,
+            int eastAt, double[] northings, int northAt) {
+        double lat = Math.toRadians(latitude);
+        double L = Math.toRadians(longitude) - long0;
+        double sin = Math.sin(lat);
+        double cos = Math.cos(lat);
+        double sin2 = sin * sin;
+        double cos2 = cos * cos;
+        double tan2 = sin2 / cos2;
+
+        // B3 - B5
+        double vi = 1 - e2 * sin2;
+        double v = aF0 / Math.sqrt(vi);
+        double eta2 = vi / oneMinusE2 - 1;
+
+        // B6: sin(2 lat), sin(4 lat), sin(6 lat)
+        double s2 = 2 * sin * cos;
+        double s4 = 2 * s2 * (cos2 - sin2);
+        double s6 = s2 * (3 - 4 * s2 * s2);
+        double I = bF0m1 * (lat - lat0) - bF0m2 * s2 + bF0m3 * s4 - bF0m4 * s6 + I0;
+
+        double vsc = v * sin * cos;
+        double II = vsc / 2;
+        double III = vsc * cos2 / 24 * (5 - tan2 + 9 * eta2);
+        double IIIA = vsc * cos2 * cos2 / 720 * (61 + tan2 * (tan2 - 58));
+        double IV = v * cos;
+        double V = IV * cos2 / 6 * (1 + eta2 - tan2);
+        double VI = IV * cos2 * cos2 / 120
+                * (5 + 14 * eta2 + tan2 * (tan2 - 18 - 58 * eta2));
+
+        // B7, B8
+        double L2 = L * L;
+        northings[northAt] = I + L2 * (II + L2 * (III + L2 * IIIA));
+        eastings[eastAt] = E0 + L * (IV + L2 * (V + L2 * VI));
+    }
+
+    /**
+     *  Projects a latitude and longitude exactly as project does, returning 
+     * all of the intermediate terms. This is only used for diagnostics.
+     * 
+     * @param latitude - The latitude in degrees.
+     * @param longitude - The longitude in degrees.
+     * @return - The projection terms, including the Easting and Northing.
+     */
+    public ProjectionTerms terms(double latitude, double longitude) {
+        double lat = Math.toRadians(latitude);
+        double L = Math.toRadians(longitude) - long0;
+        double sin = Math.sin(lat);
+        double cos = Math.cos(lat);
+        double sin2 = sin * sin;
+        double cos2 = cos * cos;
+        double tan2 = sin2 / cos2;
+
+        double vi = 1 - e2 * sin2;
+        double v = aF0 / Math.sqrt(vi);
+        double p = v * oneMinusE2 / vi;
+        double eta2 = vi / oneMinusE2 - 1;
+
+        double s2 = 2 * sin * cos;
+        double s4 = 2 * s2 * (cos2 - sin2);
+        double s6 = s2 * (3 - 4 * s2 * s2);
+        double I = bF0m1 * (lat - lat0) - bF0m2 * s2 + bF0m3 * s4 - bF0m4 * s6 + I0;
+
+        double vsc = v * sin * cos;
+        double II = vsc / 2;
+        double III = vsc * cos2 / 24 * (5 - tan2 + 9 * eta2);
+        double IIIA = vsc * cos2 * cos2 / 720 * (61 + tan2 * (tan2 - 58));
+        double IV = v * cos;
+        double V = IV * cos2 / 6 * (1 + eta2 - tan2);
+        double VI = IV * cos2 * cos2 / 120
+                * (5 + 14 * eta2 + tan2 * (tan2 - 18 - 58 * eta2));
+
+        double L2 = L * L;
+        double northing = I + L2 * (II + L2 * (III + L2 * IIIA));
+        double easting = E0 + L * (IV + L2 * (V + L2 * VI));
+        return new ProjectionTerms(latitude, longitude, e2, n, v, p, eta2,
+                I - N0, I, II, III, IIIA, IV, V, VI, easting, northing);
+    }
+
+    /**
+     *  Converts an Easting and Northing back to latitude and longitude using
+     * the C-series formulae, storing the results at the given indexes.
+     * 
+     * @param easting - The Easting (meters).
+     * @param northing - The Northing (meters).
+     * @param latitudes - Receives the latitude in degrees at latAt.
+     * @param latAt - The index to store the latitude at.
+     * @param longitudes - Receives the longitude in degrees at longAt.
+     * @param longAt - The index to store the longitude at.
+     */
+    public void unproject(double easting, double northing, double[] latitudes,
+            int latAt, double[] longitudes, int longAt) {
+        // C1 - C2: iterate the footpoint latitude until N - N0 - M < 0.01mm.
+        double lat = (northing - N0) / aF0 + lat0;
+        double sin = Math.sin(lat);
+        double cos = Math.cos(lat);
+        for (int i = 0; i < MAX_ITERATIONS; i++) {
+            double s2 = 2 * sin * cos;
+            double s4 = 2 * s2 * (cos * cos - sin * sin);
+            double s6 = s2 * (3 - 4 * s2 * s2);
+            double delta = northing - (bF0m1 * (lat - lat0) - bF0m2 * s2
+                    + bF0m3 * s4 - bF0m4 * s6 + I0);
+            if (Math.abs(delta) < TOLERANCE) {
+                break;
+            }
+            lat += delta / aF0;
+            sin = Math.sin(lat);
+            cos = Math.cos(lat);
+        }
+        double sin2 = sin * sin;
+        double tan = sin / cos;
+        double tan2 = tan * tan;
+        double sec = 1 / cos;
+
+        // B3 - B5 at the footpoint latitude
+        double vi = 1 - e2 * sin2;
+        double v = aF0 / Math.sqrt(vi);
+        double p = v * oneMinusE2 / vi;
+        double eta2 = vi / oneMinusE2 - 1;
+
+        // C3 - C10
+        double v2 = v * v;
+        double v3 = v2 * v;
+        double v5 = v3 * v2;
+        double VII = tan / (2 * p * v);
+        double VIII = tan / (24 * p * v3)
+                * (5 + 3 * tan2 + eta2 - 9 * tan2 * eta2);
+        double IX = tan / (720 * p * v5) * (61 + tan2 * (90 + 45 * tan2));
+        double X = sec / v;
+        double XI = sec / (6 * v3) * (v / p + 2 * tan2);
+        double XII = sec / (120 * v5) * (5 + tan2 * (28 + 24 * tan2));
+        double XIIA = sec / (5040 * v5 * v2)
+                * (61 + tan2 * (662 + tan2 * (1320 + 720 * tan2)));
+
+        double dE = easting - E0;
+        double dE2 = dE * dE;
+        latitudes[latAt] = Math.toDegrees(lat - dE2 * (VII - dE2 * (VIII - dE2 * IX)));
+        longitudes[longAt] = Math.toDegrees(long0
+                + dE * (X - dE2 * (XI - dE2 * (XII - dE2 * XIIA))));
+    }
+}
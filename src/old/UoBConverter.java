@@ -1,11 +1,21 @@
 package old;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import javax.management.JMException;
 
 /*
  * To change this template, choose Tools | Templates
@@ -16,81 +26,707 @@ import java.io.IOException;
  * by the UoB Mapper Android app. This app will read the Latitude and Longitude
  * values from the original file and generate new files with Easting and
  * Northings.
- * 
+ *
+ * Rows are parsed and written as bytes (see CsvReader and CsvWriter), and the
+ * Easting and Northing are written to the millimeter.
+ *
  * @author Nathan Collins
  */
 public class UoBConverter {
 
-	private static String fileIn = null;
-	private static BufferedReader in;
-	private static BufferedWriter out;
-	private static String validation = "id,Date,Latitude,Longitude,Dip_Azimuth,Dip,LocalityId,Easting,Northing";
+	private static final String validation = "id,Date,Latitude,Longitude,Dip_Azimuth,Dip,LocalityId,Easting,Northing";
+	private static final int BLOCK_SIZE = 1 << 22;
+	private static final int BUFFER_SIZE = 1 << 20;
+	private static final int DECIMALS = 3;
+	private static final String COLUMNS = ".cols";
 
 	/**
 	 * Checks that the correct arguments have been passed.
-	 * 
+	 *
 	 * @param args
-	 *            the command line arguments: Should only be the path of the
-	 *            file to convert.
+	 *            the command line arguments: the path of the file to convert,
+	 *            optionally preceded by -parallel and the number of threads to
+	 *            use (all processors if omitted). A leading -metrics records
+	 *            the conversion in a ConverterMetrics, published over JMX
+	 *            while it runs and printed at the end. Then -columns and a
+	 *            ColumnMapping, e.g. "-columns lat,lon,height", converts a
+	 *            file with other columns than the UoB Mapper's. A file
+	 *            ending in .cols is read and written as columns (see
+	 *            ColumnReader).
 	 */
 	public static void main(String[] args) {
-		if (args.length == 1) {
-			fileIn = args[0];
-			System.out.println("Converting file: " + fileIn);
-			convertFile();
-		} else {
+		ConverterMetrics metrics = null;
+		if (args.length > 0 && args[0].equals("-metrics")) {
+			metrics = new ConverterMetrics();
+			try {
+				metrics.register("UoBConverter");
+			} catch (JMException ex) {
+				System.err.println("Unable to register the metrics MBean! " + ex);
+			}
+			args = Arrays.copyOfRange(args, 1, args.length);
+		}
+		ColumnMapping mapping = null;
+		if (args.length > 1 && args[0].equals("-columns")) {
+			try {
+				mapping = ColumnMapping.parse(args[1]);
+			} catch (IllegalArgumentException ex) {
+				System.err.println(ex.getMessage());
+				System.exit(1);
+			}
+			args = Arrays.copyOfRange(args, 2, args.length);
+		}
+		int threads = 1;
+		if (args.length >= 2 && args.length <= 3 && args[0].equals("-parallel")) {
+			threads = Runtime.getRuntime().availableProcessors();
+			if (args.length == 3) {
+				try {
+					threads = Integer.parseInt(args[1]);
+				} catch (NumberFormatException ex) {
+					threads = 0;
+				}
+				if (threads < 1) {
+					System.err.println("Invalid number of threads: " + args[1]);
+					System.exit(1);
+				}
+			}
+		} else if (args.length != 1) {
 			System.err.println("Incorrect arguments passed!");
 			System.exit(1);
 		}
+		String fileIn = args[args.length - 1];
+		if (fileIn.endsWith(COLUMNS)) {
+			System.out.println("Converting columns: " + fileIn + " on " + threads + " threads");
+			convertColumns(fileIn, mapping == null ? ColumnMapping.UOB : mapping,
+					threads, metrics);
+		} else if (args.length == 1) {
+			System.out.println("Converting file: " + fileIn);
+			convertFile(fileIn, mapping, metrics);
+		} else {
+			System.out.println("Converting file: " + fileIn + " on " + threads + " threads");
+			convertFileParallel(fileIn, mapping, threads, metrics);
+		}
 	}
 
 	/**
 	 * This method reads in the file and checks that the column titles are
 	 * correct. If they are, the Latitude and Longitude are converted and a new
 	 * file is created, otherwise an error message is printed.
+	 *
+	 * @param fileIn
+	 *            the path of the file to convert.
+	 * @param mapping
+	 *            the columns to convert, or null for a UoB Mapper file.
+	 * @param metrics
+	 *            records the conversion, or null.
 	 */
-	private static void convertFile() {
+	private static void convertFile(String fileIn, ColumnMapping mapping,
+			ConverterMetrics metrics) {
+		FileChannel in = null;
+		CsvWriter out = null;
 		try {
-			in = new BufferedReader(new FileReader(fileIn));
+			in = new FileInputStream(fileIn).getChannel();
+			CsvReader reader = new CsvReader(in, BUFFER_SIZE);
 			String fileOut = fileIn.substring(0, fileIn.length() - 4);
 			fileOut += "-converted.csv";
-			out = new BufferedWriter(new FileWriter(fileOut));
+			out = new CsvWriter(new FileOutputStream(fileOut).getChannel(), BUFFER_SIZE);
 			// Directly copy the column titles:
-			String temp = in.readLine();
+			String temp = reader.nextRow() ? reader.getRow() : null;
 			System.out.println(temp);
-			if (!temp.equals(validation)) {
+			int[] columns = columns(temp, mapping);
+			if (columns == null) {
 				System.err.println("Invalid file passed!");
 				System.exit(2);
 			}
 			System.out.println("Writing to file: " + fileOut);
-			out.write(temp);
+			out.write(header(temp, mapping));
 			out.newLine();
-			temp = in.readLine();
-			GPSConverter c = new GPSConverter();
-			while (temp != null) {
-				String[] values = temp.split(",");
-				Double lat = Double.valueOf(values[2]);
-				Double lon = Double.valueOf(values[3]);
-				double[] results = c.convertToOSGB36(lat, lon, c.GRS80,
-						c.NATIONAL_GRID);
-				temp += results[0] + "," + results[1];
-				out.write(temp);
-				out.newLine();
-				temp = in.readLine();
-			}
-			System.out.println("\nConversion complete!");
+			GPSConverter c = new GPSConverter(GPSConverter.loadGrid(
+					new ConsoleListener(false), metrics), null, null, metrics);
+			double[] lat = new double[1];
+			double[] lon = new double[1];
+			double[] easting = new double[1];
+			double[] northing = new double[1];
+			double[] height = new double[1];
+			int[] status = new int[1];
+			long rows = 0;
+			long failed = 0;
+			long start = System.nanoTime();
+			long rowStart = start;
+			while (reader.nextRow()) {
+				if (hasFields(reader, columns)) {
+					lat[0] = getDouble(reader, columns[0]);
+					lon[0] = getDouble(reader, columns[1]);
+					if (columns[2] >= 0) {
+						height[0] = getDouble(reader, columns[2]);
+					}
+				} else {
+					lat[0] = lon[0] = Double.NaN;
+				}
+				long read = metrics != null ? System.nanoTime() : 0;
+				if (Double.isNaN(lat[0]) || Double.isNaN(lon[0])) {
+					status[0] = ConversionStatus.INVALID_INPUT;
+				} else if (columns[2] >= 0) {
+					c.convertToOSGB36(lat, lon, height, easting, northing, height,
+							null, status, 0, 1);
+				} else {
+					c.convertToOSGB36(lat, lon, easting, northing, status, 0, 1,
+							GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+				}
+				long converted = metrics != null ? System.nanoTime() : 0;
+				reader.copyRow(out);
+				write(out, mapping, easting[0], northing[0], height[0], status[0]);
+				if (status[0] != ConversionStatus.OK) {
+					failed++;
+				}
+				rows++;
+				if (metrics != null) {
+					long now = System.nanoTime();
+					metrics.record(ConverterMetrics.IO, read - rowStart + now - converted, 1);
+					rowStart = now;
+				}
+			}
+			System.out.println("\nConversion complete! " + failed
+					+ " points could not be converted.");
+			report(rows, System.nanoTime() - start, metrics);
 		} catch (FileNotFoundException ex) {
 			System.err.println("FileNotFound Exceoption: " + ex);
 		} catch (IOException ex) {
 			System.err.println("IOExceoption: " + ex);
 		} finally {
 			try {
-				in.close();
-				out.close();
+				if (in != null) {
+					in.close();
+				}
+				if (out != null) {
+					out.close();
+				}
 			} catch (IOException ex) {
 				System.err.println("IOExceoption: unable to close IO! " + ex);
 			}
 		}
 
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Converts the file as convertFile does, but on a pool of threads. The
+	 * file is read in blocks of whole rows of about BLOCK_SIZE bytes, each
+	 * block is converted on the pool using the batch conversion, and the
+	 * converted blocks are written in their original order. At most two
+	 * blocks per thread are held in memory at once.
+	 *
+	 * @param fileIn
+	 *            the path of the file to convert.
+	 * @param mapping
+	 *            the columns to convert, or null for a UoB Mapper file.
+	 * @param threads
+	 *            the number of threads to convert on.
+	 * @param metrics
+	 *            records the conversion, or null.
+	 */
+	private static void convertFileParallel(String fileIn, ColumnMapping mapping,
+			int threads, ConverterMetrics metrics) {
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		FileChannel in = null;
+		FileChannel out = null;
+		try {
+			in = new FileInputStream(fileIn).getChannel();
+			BlockReader blocks = new BlockReader(in);
+			String fileOut = fileIn.substring(0, fileIn.length() - 4);
+			fileOut += "-converted.csv";
+			out = new FileOutputStream(fileOut).getChannel();
+			ByteBuffer block = blocks.next();
+			String temp = block == null ? null : header(block);
+			System.out.println(temp);
+			int[] columns = columns(temp, mapping);
+			if (columns == null) {
+				System.err.println("Invalid file passed!");
+				System.exit(2);
+			}
+			System.out.println("Writing to file: " + fileOut);
+			write(out, (header(temp, mapping) + "\n").getBytes("US-ASCII"));
+			// GPSConverter is immutable, so one is shared by every thread:
+			GPSConverter c = new GPSConverter(GPSConverter.loadGrid(
+					new ConsoleListener(false), metrics), null, null, metrics);
+			ArrayDeque<Future<BlockConversion>> pending = new ArrayDeque<Future<BlockConversion>>();
+			long rows = 0;
+			long failed = 0;
+			long start = System.nanoTime();
+			while (block != null) {
+				if (pending.size() >= threads * 2) {
+					BlockConversion done = pending.poll().get();
+					rows += write(out, done, metrics);
+					failed += done.failed;
+				}
+				pending.add(pool.submit(new BlockConversion(block, c, columns, mapping,
+						metrics)));
+				long read = System.nanoTime();
+				block = blocks.next();
+				if (metrics != null) {
+					metrics.record(ConverterMetrics.IO, System.nanoTime() - read, 0);
+				}
+			}
+			while (!pending.isEmpty()) {
+				BlockConversion done = pending.poll().get();
+				rows += write(out, done, metrics);
+				failed += done.failed;
+			}
+			System.out.println("\nConversion complete! " + failed
+					+ " points could not be converted.");
+			report(rows, System.nanoTime() - start, metrics);
+		} catch (FileNotFoundException ex) {
+			System.err.println("FileNotFound Exceoption: " + ex);
+		} catch (IOException ex) {
+			System.err.println("IOExceoption: " + ex);
+		} catch (InterruptedException ex) {
+			System.err.println("Conversion interrupted! " + ex);
+		} catch (ExecutionException ex) {
+			System.err.println("Conversion failed! " + ex.getCause());
+		} finally {
+			pool.shutdownNow();
+			try {
+				if (in != null) {
+					in.close();
+				}
+				if (out != null) {
+					out.close();
+				}
+			} catch (IOException ex) {
+				System.err.println("IOExceoption: unable to close IO! " + ex);
+			}
+		}
+	}
+
+	/**
+	 * Converts a column file (see ColumnReader) to a new column file of
+	 * Easting, Northing, Height (if the mapping has heights) and Status (see
+	 * ConversionStatus) columns, with the same blocks of rows. Each block is
+	 * mapped and copied straight into the arrays of the batch conversion,
+	 * and the results are copied straight into the mapped output, so nothing
+	 * is parsed or formatted. With more than one thread, each block is split
+	 * between them.
+	 *
+	 * @param fileIn
+	 *            the path of the file to convert.
+	 * @param mapping
+	 *            the names (or indexes) of the columns to convert.
+	 * @param threads
+	 *            the number of threads to convert on.
+	 * @param metrics
+	 *            records the conversion, or null.
+	 */
+	private static void convertColumns(String fileIn, ColumnMapping mapping,
+			int threads, ConverterMetrics metrics) {
+		ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+		ColumnReader in = null;
+		ColumnWriter out = null;
+		try {
+			in = new ColumnReader(fileIn);
+			String[] names = in.getNames();
+			System.out.println(String.join(",", names));
+			int[] columns;
+			try {
+				columns = mapping.resolve(names);
+			} catch (IllegalArgumentException ex) {
+				System.err.println(ex.getMessage());
+				columns = null;
+			}
+			if (columns == null || in.getType(columns[0]) != ColumnWriter.DOUBLE
+					|| in.getType(columns[1]) != ColumnWriter.DOUBLE
+					|| (columns[2] >= 0 && in.getType(columns[2]) != ColumnWriter.DOUBLE)) {
+				System.err.println("Invalid file passed!");
+				System.exit(2);
+			}
+			final boolean heights = columns[2] >= 0;
+			String fileOut = fileIn.substring(0, fileIn.length() - COLUMNS.length());
+			fileOut += "-converted" + COLUMNS;
+			System.out.println("Writing to file: " + fileOut);
+			out = heights
+					? new ColumnWriter(fileOut, new String[] { "Easting", "Northing", "Height", "Status" },
+							new int[] { ColumnWriter.DOUBLE, ColumnWriter.DOUBLE, ColumnWriter.DOUBLE, ColumnWriter.INT })
+					: new ColumnWriter(fileOut, new String[] { "Easting", "Northing", "Status" },
+							new int[] { ColumnWriter.DOUBLE, ColumnWriter.DOUBLE, ColumnWriter.INT });
+			final GPSConverter c = new GPSConverter(GPSConverter.loadGrid(
+					new ConsoleListener(false), metrics), null, null, metrics);
+			double[] lat = new double[0];
+			double[] lon = new double[0];
+			double[] height = new double[0];
+			double[] easting = new double[0];
+			double[] northing = new double[0];
+			int[] status = new int[0];
+			long rows = 0;
+			long failed = 0;
+			long start = System.nanoTime();
+			while (true) {
+				long read = System.nanoTime();
+				if (!in.nextBlock()) {
+					break;
+				}
+				final int n = in.getRows();
+				if (n > lat.length) {
+					lat = new double[n];
+					lon = new double[n];
+					height = new double[heights ? n : 0];
+					easting = new double[n];
+					northing = new double[n];
+					status = new int[n];
+				}
+				in.get(columns[0], lat, 0);
+				in.get(columns[1], lon, 0);
+				if (heights) {
+					in.get(columns[2], height, 0);
+				}
+				long converted = System.nanoTime();
+				if (pool == null) {
+					failed += convert(c, lat, lon, heights ? height : null, easting,
+							northing, status, 0, n);
+				} else {
+					ArrayList<Callable<Integer>> parts = new ArrayList<Callable<Integer>>();
+					int part = (n + threads - 1) / threads;
+					for (int from = 0; from < n; from += part) {
+						final double[] la = lat, lo = lon, h = heights ? height : null;
+						final double[] e = easting, no = northing;
+						final int[] st = status;
+						final int offset = from;
+						final int length = Math.min(part, n - from);
+						parts.add(new Callable<Integer>() {
+							public Integer call() {
+								return convert(c, la, lo, h, e, no, st, offset, length);
+							}
+						});
+					}
+					for (Future<Integer> f : pool.invokeAll(parts)) {
+						failed += f.get();
+					}
+				}
+				long written = System.nanoTime();
+				out.beginBlock(n);
+				out.put(0, easting, 0);
+				out.put(1, northing, 0);
+				if (heights) {
+					out.put(2, height, 0);
+					out.put(3, status, 0);
+				} else {
+					out.put(2, status, 0);
+				}
+				rows += n;
+				if (metrics != null) {
+					metrics.record(ConverterMetrics.IO, converted - read
+							+ System.nanoTime() - written, n);
+				}
+			}
+			System.out.println("\nConversion complete! " + failed
+					+ " points could not be converted.");
+			report(rows, System.nanoTime() - start, metrics);
+		} catch (FileNotFoundException ex) {
+			System.err.println("FileNotFound Exceoption: " + ex);
+		} catch (IOException ex) {
+			System.err.println("IOExceoption: " + ex);
+		} catch (InterruptedException ex) {
+			System.err.println("Conversion interrupted! " + ex);
+		} catch (ExecutionException ex) {
+			System.err.println("Conversion failed! " + ex.getCause());
+		} finally {
+			if (pool != null) {
+				pool.shutdownNow();
+			}
+			try {
+				if (in != null) {
+					in.close();
+				}
+				if (out != null) {
+					out.close();
+				}
+			} catch (IOException ex) {
+				System.err.println("IOExceoption: unable to close IO! " + ex);
+			}
+		}
+	}
+
+	/**
+	 * Converts a range of the points of a column block, with heights if
+	 * heights is not null (in which case they are replaced by the orthometric
+	 * heights).
+	 *
+	 * @return the number of points that could not be converted.
+	 */
+	private static int convert(GPSConverter c, double[] lat, double[] lon,
+			double[] heights, double[] easting, double[] northing, int[] status,
+			int offset, int length) {
+		if (heights != null) {
+			return c.convertToOSGB36(lat, lon, heights, easting, northing, heights,
+					null, status, offset, length);
+		}
+		return c.convertToOSGB36(lat, lon, easting, northing, status, offset, length,
+				GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+	}
+
+	/**
+	 * Reads the column titles from the start of the first block, leaving the
+	 * block positioned at the first row of data.
+	 */
+	private static String header(ByteBuffer block) throws IOException {
+		CsvReader reader = new CsvReader(block);
+		if (!reader.nextRow()) {
+			return null;
+		}
+		String header = reader.getRow();
+		while (block.hasRemaining() && block.get() != '\n') {
+		}
+		return header;
+	}
+
+	/**
+	 * Checks the column titles and finds the columns to convert: those of the
+	 * UoB Mapper file when there is no mapping, whose titles must match
+	 * validation exactly, otherwise those of the mapping.
+	 *
+	 * @return the indexes of the Latitude, Longitude and height (-1 for none)
+	 *         columns, or null if the file is invalid.
+	 */
+	private static int[] columns(String header, ColumnMapping mapping) {
+		if (mapping == null) {
+			return validation.equals(header) ? new int[] { 2, 3, -1 } : null;
+		}
+		if (header == null) {
+			return null;
+		}
+		try {
+			return mapping.resolve(header.split(",", -1));
+		} catch (IllegalArgumentException ex) {
+			System.err.println(ex.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @return the column titles of the converted file. A UoB Mapper file
+	 *         already has Easting and Northing columns; the others gain them,
+	 *         and a Height column if heights are converted.
+	 */
+	private static String header(String header, ColumnMapping mapping) {
+		if (mapping == null) {
+			return header;
+		}
+		return header + ",Easting,Northing" + (mapping.hasHeight() ? ",Height" : "");
+	}
+
+	/**
+	 * Checks that the current row has every column to convert, reporting a
+	 * row that does not (e.g. a blank line) rather than failing the whole
+	 * file.
+	 *
+	 * @return whether the row has the columns.
+	 */
+	private static boolean hasFields(CsvReader reader, int[] columns) {
+		int fields = reader.getFieldCount();
+		if (columns[0] < fields && columns[1] < fields && columns[2] < fields) {
+			return true;
+		}
+		System.err.println("Missing fields in row: " + reader.getRow());
+		return false;
+	}
+
+	/**
+	 * Parses a field of the current row, reporting a field that is not a number
+	 * rather than failing the whole file.
+	 *
+	 * @return the value, or NaN when the field is not a number.
+	 */
+	private static double getDouble(CsvReader reader, int field) {
+		try {
+			return reader.getDouble(field);
+		} catch (NumberFormatException ex) {
+			System.err.println("Invalid number in row: " + reader.getRow());
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * Writes the converted values at the end of a row, and ends the row. The
+	 * values are left empty where the point could not be converted (its
+	 * ConversionStatus is not OK), and the height also where it is NaN,
+	 * outside the geoid model.
+	 */
+	private static void write(CsvWriter out, ColumnMapping mapping, double easting,
+			double northing, double height, int status) throws IOException {
+		boolean converted = status == ConversionStatus.OK;
+		if (mapping != null) {
+			out.write(',');
+		}
+		if (converted) {
+			out.writeFixed(easting, DECIMALS);
+		}
+		out.write(',');
+		if (converted) {
+			out.writeFixed(northing, DECIMALS);
+		}
+		if (mapping != null && mapping.hasHeight()) {
+			out.write(',');
+			if (converted && !Double.isNaN(height)) {
+				out.writeFixed(height, DECIMALS);
+			}
+		}
+		out.newLine();
+	}
+
+	private static int write(FileChannel out, BlockConversion block,
+			ConverterMetrics metrics) throws IOException {
+		long start = System.nanoTime();
+		write(out, block.output);
+		if (metrics != null) {
+			metrics.record(ConverterMetrics.IO, System.nanoTime() - start, 0);
+		}
+		return block.rows;
+	}
+
+	private static void write(FileChannel out, byte[] bytes) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
+
+	private static void report(long rows, long nanos, ConverterMetrics metrics) {
+		double seconds = nanos / 1e9;
+		System.out.println(rows + " rows in " + seconds + "s ("
+				+ (long) (rows / seconds) + " rows/sec)");
+		if (metrics != null) {
+			System.out.println(metrics.snapshot());
+		}
+	}
+
+	/**
+	 * Splits a file into blocks of whole rows.
+	 */
+	private static class BlockReader {
+
+		private final ReadableByteChannel channel;
+		private byte[] pending = new byte[0];
+		private boolean eof;
+
+		BlockReader(ReadableByteChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * @return the next block, ending at the end of a row, or null at the
+		 *         end of the file.
+		 */
+		ByteBuffer next() throws IOException {
+			if (eof && pending.length == 0) {
+				return null;
+			}
+			ByteBuffer buffer = ByteBuffer.allocate(pending.length + BLOCK_SIZE);
+			buffer.put(pending);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) {
+					eof = true;
+					break;
+				}
+			}
+			byte[] bytes = buffer.array();
+			int length = buffer.position();
+			int cut = length;
+			if (!eof) {
+				while (cut > 0 && bytes[cut - 1] != '\n') {
+					cut--;
+				}
+				if (cut == 0) {
+					// A row longer than a block: read on until it ends.
+					pending = Arrays.copyOf(bytes, length);
+					return next();
+				}
+			}
+			pending = Arrays.copyOfRange(bytes, cut, length);
+			if (cut == 0) {
+				return null;
+			}
+			return ByteBuffer.wrap(bytes, 0, cut);
+		}
+	}
+
+	/**
+	 * Converts one block of rows, producing the output bytes in the same
+	 * format as convertFile writes them.
+	 */
+	private static class BlockConversion implements Callable<BlockConversion> {
+
+		private final ByteBuffer block;
+		private final GPSConverter c;
+		private final int[] columns;
+		private final ColumnMapping mapping;
+		private final ConverterMetrics metrics;
+		int rows;
+		int failed;
+		byte[] output;
+
+		BlockConversion(ByteBuffer block, GPSConverter c, int[] columns,
+				ColumnMapping mapping, ConverterMetrics metrics) {
+			this.block = block;
+			this.c = c;
+			this.columns = columns;
+			this.mapping = mapping;
+			this.metrics = metrics;
+		}
+
+		public BlockConversion call() throws IOException {
+			long start = System.nanoTime();
+			double[] lat = new double[4096];
+			double[] lon = new double[4096];
+			double[] heights = new double[columns[2] >= 0 ? 4096 : 0];
+			CsvReader reader = new CsvReader(block.duplicate());
+			while (reader.nextRow()) {
+				if (rows == lat.length) {
+					lat = Arrays.copyOf(lat, rows * 2);
+					lon = Arrays.copyOf(lon, rows * 2);
+					if (columns[2] >= 0) {
+						heights = Arrays.copyOf(heights, rows * 2);
+					}
+				}
+				if (hasFields(reader, columns)) {
+					lat[rows] = getDouble(reader, columns[0]);
+					lon[rows] = getDouble(reader, columns[1]);
+					if (columns[2] >= 0) {
+						heights[rows] = getDouble(reader, columns[2]);
+					}
+				} else {
+					lat[rows] = lon[rows] = Double.NaN;
+				}
+				rows++;
+			}
+			double[] eastings = new double[rows];
+			double[] northings = new double[rows];
+			int[] status = new int[rows];
+			long read = System.nanoTime();
+			if (columns[2] >= 0) {
+				failed = c.convertToOSGB36(lat, lon, heights, eastings, northings,
+						heights, null, status, 0, rows);
+			} else {
+				failed = c.convertToOSGB36(lat, lon, eastings, northings, status, 0, rows,
+						GPSConverter.GRS80, GPSConverter.NATIONAL_GRID);
+			}
+			if (failed != 0) {
+				// Tell malformed rows apart from points off the grid:
+				for (int i = 0; i < rows; i++) {
+					if (Double.isNaN(lat[i]) || Double.isNaN(lon[i])) {
+						status[i] = ConversionStatus.INVALID_INPUT;
+					}
+				}
+			}
+			long converted = System.nanoTime();
+			CsvWriter out = new CsvWriter(block.remaining() + rows * 36);
+			reader = new CsvReader(block.duplicate());
+			for (int i = 0; reader.nextRow(); i++) {
+				reader.copyRow(out);
+				write(out, mapping, eastings[i], northings[i],
+						columns[2] >= 0 ? heights[i] : Double.NaN, status[i]);
+			}
+			output = out.toByteArray();
+			if (metrics != null) {
+				metrics.record(ConverterMetrics.IO, read - start + System.nanoTime()
+						- converted, rows);
+			}
+			return this;
+		}
+	}
+}
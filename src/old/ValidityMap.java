@@ -0,0 +1,139 @@
+package old;
+
+/**
+ *  A bitmap of the OSTN02 grid cells that a point may be transformed in, 
+ * built once from the datum flags of the grid (see ShiftGrid.getValidity()).
+ * A cell is valid when all four of its corner nodes are inside the model, 
+ * i.e. none has the flag VerticalDatum.OUTSIDE, so that the bilinear 
+ * interpolation only ever reads real shifts.
+ * 
+ * <p>The 700 x 1250 cells take one bit each (107KB), so checking a point 
+ * costs a range test and one lookup in a table that stays in the CPU cache.
+ * The map is immutable and may be shared between threads.</p>
+ *
+ * @author Nathan Collins
+ */
+public final class ValidityMap {
+
+    /** The number of cells across and down the grid. */
+    public static final int CELL_COLUMNS = ShiftGrid.COLUMNS - 1;
+    public static final int CELL_ROWS = ShiftGrid.ROWS - 1;
+    private static final double MAX_EASTING = CELL_COLUMNS * ShiftGrid.SPACING;
+    private static final double MAX_NORTHING = CELL_ROWS * ShiftGrid.SPACING;
+    private final long[] cells;
+    private final int validCells;
+
+    /**
+     * @param nodes - A bit per grid node (x + y * ShiftGrid.COLUMNS), set if
+     * the node is inside the model.
+     */
+    ValidityMap(long[] nodes) {
+        cells = new long[(CELL_COLUMNS * CELL_ROWS + 63) >>> 6];
+        int count = 0;
+        for (int y = 0; y < CELL_ROWS; y++) {
+            for (int x = 0; x < CELL_COLUMNS; x++) {
+                int node = x + y * ShiftGrid.COLUMNS;
+                if (isSet(nodes, node) && isSet(nodes, node + 1)
+                        && isSet(nodes, node + ShiftGrid.COLUMNS)
+                        && isSet(nodes, node + ShiftGrid.COLUMNS + 1)) {
+                    int cell = x + y * CELL_COLUMNS;
+                    cells[cell >>> 6] |= 1L << cell;
+                    count++;
+                }
+            }
+        }
+        validCells = count;
+    }
+
+    private ValidityMap(long[] cells, int validCells) {
+        this.cells = cells;
+        this.validCells = validCells;
+    }
+
+    /**
+     *  Wraps a cell bitmap that was built before, e.g. the one stored in a
+     * compiled grid file (see MappedShiftGrid).
+     * 
+     * @param cells - A bit per cell (x + y * CELL_COLUMNS), set if the cell is
+     * valid. The array is kept, not copied.
+     * @return - The map.
+     */
+    static ValidityMap ofCells(long[] cells) {
+        if (cells.length != (CELL_COLUMNS * CELL_ROWS + 63) >>> 6) {
+            throw new IllegalArgumentException("Invalid cell bitmap length: " + cells.length);
+        }
+        int count = 0;
+        for (long bits : cells) {
+            count += Long.bitCount(bits);
+        }
+        return new ValidityMap(cells, count);
+    }
+
+    /**
+     *  Builds the map by reading every datum flag of a grid.
+     * 
+     * @param grid - The OSTN02 grid.
+     * @return - The map.
+     */
+    static ValidityMap of(ShiftGrid grid) {
+        long[] nodes = new long[(ShiftGrid.RECORDS + 63) >>> 6];
+        for (int y = 0; y < ShiftGrid.ROWS; y++) {
+            for (int x = 0; x < ShiftGrid.COLUMNS; x++) {
+                if (grid.getDatumFlag(x, y) != VerticalDatum.OUTSIDE) {
+                    setNode(nodes, x + y * ShiftGrid.COLUMNS);
+                }
+            }
+        }
+        return new ValidityMap(nodes);
+    }
+
+    /**
+     * @param x - The east index of the cell (its south west node).
+     * @param y - The north index of the cell.
+     * @return - Whether points in the cell may be transformed. Cells off the
+     * grid are not valid.
+     */
+    public boolean isValid(int x, int y) {
+        if (x < 0 || x >= CELL_COLUMNS || y < 0 || y >= CELL_ROWS) {
+            return false;
+        }
+        int cell = x + y * CELL_COLUMNS;
+        return (cells[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * @param easting - An ETRS89 Easting.
+     * @param northing - An ETRS89 Northing.
+     * @return - ConversionStatus.OK if the point may be transformed, 
+     * otherwise OUTSIDE_GRID or OUTSIDE_MODEL.
+     */
+    public int check(double easting, double northing) {
+        // Written so that NaN fails the test too:
+        if (!(easting >= 0 && easting < MAX_EASTING 
+                && northing >= 0 && northing < MAX_NORTHING)) {
+            return ConversionStatus.OUTSIDE_GRID;
+        }
+        int cell = (int) easting / 1000 + ((int) northing / 1000) * CELL_COLUMNS;
+        return (cells[cell >>> 6] & (1L << cell)) != 0
+                ? ConversionStatus.OK : ConversionStatus.OUTSIDE_MODEL;
+    }
+
+    /** @return - The number of valid cells. */
+    public int getValidCells() {
+        return validCells;
+    }
+
+    /** @return - The cell bitmap itself, which must not be written. */
+    long[] cells() {
+        return cells;
+    }
+
+    /** Sets the bit of a node in a node bitmap. */
+    static void setNode(long[] nodes, int node) {
+        nodes[node >>> 6] |= 1L << node;
+    }
+
+    private static boolean isSet(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+}
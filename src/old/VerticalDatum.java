@@ -0,0 +1,47 @@
+package old;
+
+/**
+ *  The vertical datum flags of the OSGM02 geoid model, as held in the last
+ * column of the OSTN02_OSGM02_GB.txt file. The flag says which local datum
+ * an orthometric height from the model refers to: Ordnance Datum Newlyn on
+ * mainland Great Britain, and the island datums elsewhere.
+ *
+ * @author Nathan Collins
+ */
+public final class VerticalDatum {
+
+    public static final int OUTSIDE = 0;
+    public static final int NEWLYN = 1;
+    public static final int ST_MARYS = 2;
+    public static final int DOUGLAS = 3;
+    public static final int STORNOWAY = 4;
+    public static final int ST_KILDA = 5;
+    public static final int LERWICK = 6;
+    public static final int NEWLYN_ORKNEY = 7;
+    public static final int FAIR_ISLE = 8;
+    public static final int FLANNAN_ISLES = 9;
+    public static final int NORTH_RONA = 10;
+    public static final int SULE_SKERRY = 11;
+    public static final int FOULA = 12;
+    public static final int MALIN_HEAD = 13;
+    public static final int BELFAST = 14;
+    public static final int OFFSHORE = 15;
+    private static final String[] NAMES = {
+        "Outside model", "Newlyn", "St Marys", "Douglas02", "Stornoway",
+        "St Kilda", "Lerwick", "Newlyn (Orkney)", "Fair Isle", "Flannan Isles",
+        "North Rona", "Sule Skerry", "Foula", "Malin Head", "Belfast", "Offshore" };
+
+    private VerticalDatum() {
+    }
+
+    /**
+     * @param flag - A datum flag.
+     * @return - The name of the datum, e.g. "Newlyn" for 1.
+     */
+    public static String getName(int flag) {
+        if (flag < 0 || flag >= NAMES.length) {
+            return "Unknown datum " + flag;
+        }
+        return NAMES[flag];
+    }
+}
@@ -0,0 +1,51 @@
+package util;
+
+import java.io.IOException;
+
+import old.ConsoleListener;
+import old.MappedShiftGrid;
+import old.TableShiftGrid;
+
+/**
+ * Compiles the OSTN02_OSGM02_GB.txt file into the binary grid read by
+ * old.MappedShiftGrid and old.FixedPointShiftGrid. This only needs to be run
+ * once per copy of the data. With -verify it instead checks a compiled grid
+ * against its checksum, e.g. after copying it into a deployment image.
+ */
+public class CompileGrid {
+
+	/**
+	 * @param args
+	 *            the path of the OSTN02 text file and the path of the grid
+	 *            file to create, or -verify and the path of a grid file.
+	 */
+	public static void main(String[] args) {
+		if (args.length == 2 && args[0].equals("-verify")) {
+			try {
+				MappedShiftGrid.open(args[1], true);
+			} catch (IOException ex) {
+				System.err.println("Invalid grid file! " + ex.getMessage());
+				System.exit(4);
+			}
+			System.out.println("Grid verified: " + args[1]);
+			return;
+		}
+		if (args.length != 2) {
+			System.err.println("Usage: CompileGrid <OSTN02 txt file> <grid file>");
+			System.err.println("       CompileGrid -verify <grid file>");
+			System.exit(1);
+		}
+		TableShiftGrid table = TableShiftGrid.readTable(args[0], new ConsoleListener(false));
+		if (table == null) {
+			System.exit(2);
+		}
+		try {
+			MappedShiftGrid.write(table, args[1]);
+		} catch (IOException ex) {
+			System.err.println("Unable to write grid file! " + ex);
+			System.exit(3);
+		}
+		System.out.println("\nGrid written to: " + args[1]);
+	}
+
+}
@@ -2,111 +2,106 @@ package util;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 
+/**
+ * Writes the OSTN02_OSGM02_GB.txt records that lie inside the OSGM02 model
+ * (datum flag other than 0) as whole millimeters, dropping the Easting and
+ * Northing columns as they follow from the record number, and reports the
+ * range of each column. Each output row is: record number, east shift,
+ * north shift and geoid height (millimeters), datum flag.
+ *
+ * <p>This is for inspecting the data; the runtime grid is compiled with
+ * CompileGrid and read by old.MappedShiftGrid or old.FixedPointShiftGrid.</p>
+ */
 public class ModifyData {
 
-    private static final String src = File.separator + "home" + File.separator + "id3" + File.separator + "dev" 
-    + File.separator + "workspace" + File.separator + "Coordinate Transformations" + File.separatorChar 
-    + "data" + File.separator;
-    
-    private static String dataFileName = "OSTN02_OSGM02_GB.txt";
-    
-    private static BufferedReader in;
-    private static BufferedWriter out;
-	
 	/**
 	 * @param args
+	 *            the path of the OSTN02 text file and the path of the file to
+	 *            create.
 	 */
 	public static void main(String[] args) {
-		readData();
-
+		if (args.length != 2) {
+			System.err.println("Usage: ModifyData <OSTN02 txt file> <output file>");
+			System.exit(1);
+		}
+		if (!readData(args[0], args[1])) {
+			System.exit(2);
+		}
 	}
-	
-	private static void readData() {
-		System.out.println("Reading at: " + src);
-		System.out.println("Reading table...");
+
+	private static boolean readData(String src, String dst) {
+		System.out.println("Reading table: " + src);
 		int maxE = 0;
 		int maxN = 0;
 		double minX = Double.MAX_VALUE;
 		double minY = Double.MAX_VALUE;
 		double minH = Double.MAX_VALUE;
-		double maxX = Double.MIN_VALUE;
-		double maxY = Double.MIN_VALUE;
-		double maxH = Double.MIN_VALUE;
-        try {
-            in = new BufferedReader(new FileReader(src + dataFileName));
-            out = new BufferedWriter(new FileWriter(src + "out.txt"));
-            int i = 0;
-            String temp = in.readLine();
-            while (temp != null) {
-                String[] s = temp.split(",");
-                if (!(s[6].contentEquals(new StringBuffer("0")))) {
-                	i++;
-                	// Get data:
-                	int E = Integer.parseInt(s[1]);
-                	int N = Integer.parseInt(s[1]);
-                	double x = Double.parseDouble(s[3]);
-                	double y = Double.parseDouble(s[4]);
-                	double h = Double.parseDouble(s[5]);
-                	// Record min/max:
-                	if (E > maxE) { maxE = E; }
-                	if (N > maxN) { maxN = N; }
-                	if (x < minX) { minX = x; }
-                	if (y < minY) { minY = y; }
-                	if (h < minH) { minH = h; }
-                	if (x < maxX) { maxX = x; }
-                	if (y < maxY) { maxY = y; }
-                	if (h < maxH) { maxH = h; }
-                	// Modify data:
-                	E = E / 1000;
-                	s[1] = E + "";
-                	N = N / 1000;
-                	s[2] = N + "";
-                	int xi = (int)  (x * 1000);
-                	s[3] = xi + "";
-                	int yi = (int)  (y * 1000);
-                	s[4] = yi + "";
-                	int hi = (int)  (h * 1000);
-                	s[5] = hi + "";
-                	// Output data:
-                	StringBuilder sb = new StringBuilder();
-                	for (int idx = 1; idx < s.length; idx++) {
-                		sb.append(s[idx] + ",");
-                	}
-                	out.write(sb.toString());
-                	out.newLine();
-                	
-                }
-
-                temp = in.readLine();
-            }
-            String r1 = "maxE = " + maxE + " maxN = " + maxN;
-            String r2 = "minX = " + minX + " maxX = " + maxX 
-            		+ " minY = " + minY + " maxY = " + maxY + " minH = " + minH + " maxH = " + maxH 
-            		+" count = " + i;
-            System.out.println(r1);
-            System.out.println(r2);
-            out.write(r1);
-            out.newLine();
-            out.write(r2);
-        } catch (FileNotFoundException ex) {
-            System.err.println("OSTN02 data file not found!");
-        } catch (IOException ex) {
-            System.err.println("Unable to read file!");
-        } finally {
-            try {
-                in.close();
-                out.close();
-            } catch (IOException ex) {
-                System.err.println("Unable to close the OSTN02 file reader!");
-            }
-        }
-        System.out.print(" Complete!");
+		double maxX = -Double.MAX_VALUE;
+		double maxY = -Double.MAX_VALUE;
+		double maxH = -Double.MAX_VALUE;
+		BufferedReader in = null;
+		BufferedWriter out = null;
+		try {
+			in = new BufferedReader(new FileReader(src));
+			out = new BufferedWriter(new FileWriter(dst));
+			int i = 0;
+			String temp = in.readLine();
+			while (temp != null) {
+				String[] s = temp.split(",");
+				if (!s[6].equals("0")) {
+					i++;
+					// Get data:
+					int E = Integer.parseInt(s[1]);
+					int N = Integer.parseInt(s[2]);
+					double x = Double.parseDouble(s[3]);
+					double y = Double.parseDouble(s[4]);
+					double h = Double.parseDouble(s[5]);
+					// Record min/max:
+					if (E > maxE) { maxE = E; }
+					if (N > maxN) { maxN = N; }
+					if (x < minX) { minX = x; }
+					if (y < minY) { minY = y; }
+					if (h < minH) { minH = h; }
+					if (x > maxX) { maxX = x; }
+					if (y > maxY) { maxY = y; }
+					if (h > maxH) { maxH = h; }
+					// Output data, rounded as the values are not exact doubles:
+					out.write(s[0] + "," + Math.round(x * 1000) + ","
+							+ Math.round(y * 1000) + "," + Math.round(h * 1000)
+							+ "," + s[6]);
+					out.newLine();
+				}
+				temp = in.readLine();
+			}
+			System.out.println("maxE = " + maxE + " maxN = " + maxN);
+			System.out.println("minX = " + minX + " maxX = " + maxX
+					+ " minY = " + minY + " maxY = " + maxY + " minH = " + minH
+					+ " maxH = " + maxH + " count = " + i);
+		} catch (FileNotFoundException ex) {
+			System.err.println("OSTN02 data file not found!");
+			return false;
+		} catch (IOException ex) {
+			System.err.println("Unable to read file!");
+			return false;
+		} finally {
+			try {
+				if (in != null) {
+					in.close();
+				}
+				if (out != null) {
+					out.close();
+				}
+			} catch (IOException ex) {
+				System.err.println("Unable to close the OSTN02 file reader!");
+			}
+		}
+		System.out.println("Complete!");
+		return true;
 	}
 
 }